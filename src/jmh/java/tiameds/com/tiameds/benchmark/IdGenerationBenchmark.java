@@ -0,0 +1,174 @@
+package tiameds.com.tiameds.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import tiameds.com.tiameds.config.IdSequences;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Identity keys, which Hibernate has to insert one row per round trip, against pooled sequence keys inserted in
+ * JDBC batches. The workloads are a test catalog import and visit registration (patient, visit and billing per
+ * visit), on scratch tables shaped like the real ones; scores are rows per second.
+ * <p>
+ * Needs a Postgres database, given through the environment so the forked JVMs see it too:
+ * <pre>
+ * BENCHMARK_DB_URL="jdbc:postgresql://localhost:5432/tiameds?reWriteBatchedInserts=true" \
+ * BENCHMARK_DB_USERNAME=postgres BENCHMARK_DB_PASSWORD=root \
+ *     mvn -Pbenchmark test-compile exec:exec -Djmh.args="IdGeneration"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(IdGenerationBenchmark.BATCH_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGenerationBenchmark {
+
+    static final int BATCH_SIZE = 50;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void connect() {
+        String url = System.getenv("BENCHMARK_DB_URL");
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("Set BENCHMARK_DB_URL to a Postgres database for the scratch tables");
+        }
+        dataSource = new SingleConnectionDataSource(url, System.getenv().getOrDefault("BENCHMARK_DB_USERNAME", "postgres"),
+                System.getenv().getOrDefault("BENCHMARK_DB_PASSWORD", ""), true);
+        jdbc = new JdbcTemplate(dataSource);
+        createTables();
+    }
+
+    // keeps the tables small, so every iteration inserts into the same index depth
+    @Setup(Level.Iteration)
+    public void truncate() {
+        jdbc.execute("TRUNCATE bench_visits, bench_billing, bench_patients, bench_tests");
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() {
+        dropTables();
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public void csvImportIdentity() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            jdbc.queryForObject("INSERT INTO bench_tests (category, name, price) VALUES (?, ?, ?) RETURNING test_id",
+                    Long.class, "Category", "Test " + next++, BigDecimal.TEN);
+        }
+    }
+
+    @Benchmark
+    public void csvImportPooled() {
+        List<Long> ids = IdSequences.reserve(jdbc, "bench_tests_seq", BATCH_SIZE);
+        int first = next;
+        next += BATCH_SIZE;
+        batch("INSERT INTO bench_tests (test_id, category, name, price) VALUES (?, ?, ?, ?)", (ps, i) -> {
+            ps.setLong(1, ids.get(i));
+            ps.setString(2, "Category");
+            ps.setString(3, "Test " + (first + i));
+            ps.setBigDecimal(4, BigDecimal.TEN);
+        });
+    }
+
+    @Benchmark
+    public void visitRegistrationIdentity() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Long patientId = jdbc.queryForObject("INSERT INTO bench_patients (first_name) VALUES (?) RETURNING patient_id",
+                    Long.class, "Patient " + next++);
+            Long billingId = jdbc.queryForObject("INSERT INTO bench_billing (total_amount) VALUES (?) RETURNING billing_id",
+                    Long.class, BigDecimal.TEN);
+            jdbc.queryForObject("INSERT INTO bench_visits (patient_id, billing_id) VALUES (?, ?) RETURNING visit_id",
+                    Long.class, patientId, billingId);
+        }
+    }
+
+    @Benchmark
+    public void visitRegistrationPooled() {
+        List<Long> patientIds = IdSequences.reserve(jdbc, "bench_patients_seq", BATCH_SIZE);
+        List<Long> billingIds = IdSequences.reserve(jdbc, "bench_billing_seq", BATCH_SIZE);
+        List<Long> visitIds = IdSequences.reserve(jdbc, "bench_visits_seq", BATCH_SIZE);
+        int first = next;
+        next += BATCH_SIZE;
+        // one batch per table, as Hibernate sends them with ordered inserts
+        batch("INSERT INTO bench_patients (patient_id, first_name) VALUES (?, ?)", (ps, i) -> {
+            ps.setLong(1, patientIds.get(i));
+            ps.setString(2, "Patient " + (first + i));
+        });
+        batch("INSERT INTO bench_billing (billing_id, total_amount) VALUES (?, ?)", (ps, i) -> {
+            ps.setLong(1, billingIds.get(i));
+            ps.setBigDecimal(2, BigDecimal.TEN);
+        });
+        batch("INSERT INTO bench_visits (visit_id, patient_id, billing_id) VALUES (?, ?, ?)", (ps, i) -> {
+            ps.setLong(1, visitIds.get(i));
+            ps.setLong(2, patientIds.get(i));
+            ps.setLong(3, billingIds.get(i));
+        });
+    }
+
+    // each benchmark method runs in its own fork, so identity and sequence keys never share a table
+    private void createTables() {
+        dropTables();
+        for (String table : List.of("bench_tests", "bench_patients", "bench_billing", "bench_visits")) {
+            jdbc.execute("CREATE SEQUENCE " + table + "_seq START WITH " + IdSequences.ALLOCATION_SIZE
+                    + " INCREMENT BY " + IdSequences.ALLOCATION_SIZE);
+        }
+        jdbc.execute("CREATE TABLE bench_tests (test_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "category varchar(255) NOT NULL, name varchar(255) NOT NULL, price numeric(38, 2) NOT NULL)");
+        jdbc.execute("CREATE TABLE bench_patients (patient_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "first_name varchar(255))");
+        jdbc.execute("CREATE TABLE bench_billing (billing_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "total_amount numeric(38, 2))");
+        jdbc.execute("CREATE TABLE bench_visits (visit_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "patient_id bigint REFERENCES bench_patients, billing_id bigint REFERENCES bench_billing)");
+    }
+
+    private void dropTables() {
+        jdbc.execute("DROP TABLE IF EXISTS bench_visits, bench_billing, bench_patients, bench_tests");
+        jdbc.execute("DROP SEQUENCE IF EXISTS bench_visits_seq, bench_billing_seq, bench_patients_seq, bench_tests_seq");
+    }
+
+    private void batch(String sql, RowSetter setter) {
+        jdbc.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                setter.set(ps, i);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return BATCH_SIZE;
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement ps, int i) throws SQLException;
+    }
+}
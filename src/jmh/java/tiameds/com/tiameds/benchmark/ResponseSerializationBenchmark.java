@@ -0,0 +1,153 @@
+package tiameds.com.tiameds.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tiameds.com.tiameds.dto.lab.BillingDTO;
+import tiameds.com.tiameds.dto.lab.PatientDTO;
+import tiameds.com.tiameds.dto.lab.TestDTO;
+import tiameds.com.tiameds.dto.lab.VisitDTO;
+import tiameds.com.tiameds.utils.ApiResponseHelper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the response envelopes and writing them as JSON, for a page of patients and a lab test catalog.
+ * The ObjectMapper is built the way Spring Boot builds the one used by the message converters, with or
+ * without the Blackbird module of {@link tiameds.com.tiameds.config.JacksonConfig}. The {@code map*}
+ * benchmarks keep the HashMap envelope the helper used to build, as the baseline of the typed one;
+ * run with {@code -prof gc} to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"20", "500"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean blackbird;
+
+    private ObjectMapper objectMapper;
+    private List<PatientDTO> patients;
+    private List<TestDTO> tests;
+
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (blackbird) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        objectMapper = builder.build();
+        patients = new ArrayList<>(size);
+        tests = new ArrayList<>(size);
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 9, 30);
+        for (int i = 0; i < size; i++) {
+            patients.add(patient(i));
+            tests.add(new TestDTO(i, "Biochemistry", "Test " + i, BigDecimal.valueOf(250 + i), now, now));
+        }
+    }
+
+    @Benchmark
+    public Object successEnvelope() {
+        return ApiResponseHelper.successResponse("Tests retrieved successfully", tests);
+    }
+
+    @Benchmark
+    public Object typedEnvelope() {
+        return ApiResponseHelper.successResponseWithDataAndMessage("Patients retrieved successfully", HttpStatus.OK, patients);
+    }
+
+    @Benchmark
+    public Object mapEnvelope() {
+        return new ResponseEntity<>(mapEnvelope("Patients retrieved successfully", patients), HttpStatus.OK);
+    }
+
+    @Benchmark
+    public byte[] serializeTypedEnvelope() throws Exception {
+        return objectMapper.writeValueAsBytes(
+                ApiResponseHelper.successResponseWithDataAndMessage("Patients retrieved successfully", HttpStatus.OK, patients).getBody());
+    }
+
+    @Benchmark
+    public byte[] serializeMapEnvelope() throws Exception {
+        return objectMapper.writeValueAsBytes(mapEnvelope("Patients retrieved successfully", patients));
+    }
+
+    @Benchmark
+    public byte[] serializePatients() throws Exception {
+        return objectMapper.writeValueAsBytes(ApiResponseHelper.successResponse("Patients retrieved successfully", patients).getBody());
+    }
+
+    @Benchmark
+    public byte[] serializeTests() throws Exception {
+        return objectMapper.writeValueAsBytes(ApiResponseHelper.successResponse("Tests retrieved successfully", tests).getBody());
+    }
+
+    private static Map<String, Object> mapEnvelope(String message, Object data) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "success");
+        response.put("message", message);
+        response.put("data", data);
+        return response;
+    }
+
+    private static PatientDTO patient(int i) {
+        BillingDTO billing = new BillingDTO();
+        billing.setTotalAmount(BigDecimal.valueOf(1250 + i));
+        billing.setPaymentStatus("PAID");
+        billing.setPaymentMethod("UPI");
+        billing.setPaymentDate("2024-01-01");
+        billing.setDiscount(BigDecimal.ZERO);
+        billing.setNetAmount(BigDecimal.valueOf(1250 + i));
+
+        VisitDTO visit = new VisitDTO();
+        visit.setVisitDate(LocalDate.of(2024, 1, 1));
+        visit.setVisitType("OUT_PATIENT");
+        visit.setVisitStatus("COMPLETED");
+        visit.setVisitDescription("Routine check-up");
+        visit.setDoctorId(7L);
+        visit.setTestIds(List.of(11L, 12L, 13L, 14L));
+        visit.setPackageIds(List.of(3L));
+        visit.setInsuranceIds(List.of(1L));
+        visit.setBilling(billing);
+
+        PatientDTO patient = new PatientDTO();
+        patient.setFirstName("Patient" + i);
+        patient.setLastName("Kumar");
+        patient.setEmail("patient" + i + "@example.com");
+        patient.setPhone("98765" + i);
+        patient.setAddress("12 MG Road");
+        patient.setCity("Bengaluru");
+        patient.setState("Karnataka");
+        patient.setZip("560001");
+        patient.setBloodGroup("O+");
+        patient.setDateOfBirth(LocalDate.of(1990, 5, 17));
+        patient.setVisit(visit);
+        return patient;
+    }
+}
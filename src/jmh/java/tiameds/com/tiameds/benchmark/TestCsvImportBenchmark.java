@@ -0,0 +1,100 @@
+package tiameds.com.tiameds.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import tiameds.com.tiameds.dto.lab.CsvImportReportDTO;
+import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.repository.TestCatalogJdbcRepository;
+import tiameds.com.tiameds.services.lab.TestServices;
+import tiameds.com.tiameds.utils.LabStatusChannel;
+import tiameds.com.tiameds.utils.TestCatalogSnapshots;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test catalog CSV import without the database: parsing, validation and name de-duplication. Every
+ * hundredth row repeats an earlier name and every fiftieth has a bad price, so the report is exercised too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestCsvImportBenchmark {
+
+    @Param({"1000", "10000"})
+    private int rows;
+
+    private TestServices testServices;
+    private MockMultipartFile file;
+    private Lab lab;
+
+    @Setup
+    public void setUp() {
+        StringBuilder csv = new StringBuilder("Category Name,LabTest Name,Price(INR)\n");
+        for (int i = 0; i < rows; i++) {
+            String name = i % 100 == 99 ? "Test " + (i - 1) : "Test " + i;
+            String price = i % 50 == 49 ? "n/a" : String.valueOf(100 + i % 900) + ".00";
+            csv.append("Biochemistry,\"").append(name).append("\",").append(price).append('\n');
+        }
+        file = new MockMultipartFile("file", "tests.csv", "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        TestCatalogJdbcRepository repository = new TestCatalogJdbcRepository(null, null) {
+            @Override
+            public Set<String> findTestNameKeys(long labId) {
+                return new HashSet<>();
+            }
+
+            @Override
+            public void insertTests(long labId, List<TestRow> rows) {
+            }
+        };
+        PlatformTransactionManager transactionManager = new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+        // the benchmark has no caches to refresh after an import
+        TestCatalogSnapshots snapshots = new TestCatalogSnapshots(null, new LabStatusChannel(null, null, false, 250), null) {
+            @Override
+            public void catalogChanged(long labId) {
+            }
+        };
+        testServices = new TestServices(null, repository, null, snapshots, transactionManager, 500);
+        lab = new Lab();
+        lab.setId(1L);
+    }
+
+    @Benchmark
+    public CsvImportReportDTO importCsv() throws Exception {
+        return testServices.uploadCSV(file, lab);
+    }
+}
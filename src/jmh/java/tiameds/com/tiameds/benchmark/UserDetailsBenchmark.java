@@ -0,0 +1,59 @@
+package tiameds.com.tiameds.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.GrantedAuthority;
+import tiameds.com.tiameds.entity.Role;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.services.auth.MyUserDetails;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorities of the principal, asked for by every {@code hasRole} check of the security chain.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDetailsBenchmark {
+
+    @Param({"1", "4"})
+    private int roles;
+
+    private MyUserDetails userDetails;
+
+    @Setup
+    public void setUp() {
+        Set<Role> userRoles = new HashSet<>();
+        for (int i = 0; i < roles; i++) {
+            Role role = new Role();
+            role.setId(i);
+            role.setName(i == 0 ? "ADMIN" : "ROLE" + i);
+            userRoles.add(role);
+        }
+        User user = new User();
+        user.setUsername("lab.admin");
+        user.setRoles(userRoles);
+        userDetails = new MyUserDetails(user);
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return userDetails.getAuthorities();
+    }
+}
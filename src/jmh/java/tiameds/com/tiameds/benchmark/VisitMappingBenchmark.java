@@ -0,0 +1,97 @@
+package tiameds.com.tiameds.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tiameds.com.tiameds.dto.lab.PatientDTO;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
+import tiameds.com.tiameds.repository.VisitRepository;
+import tiameds.com.tiameds.services.lab.VisitMapper;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of a page of visit rows to the PatientDTOs of the visit listing by {@link VisitMapper}, with the
+ * link queries answered from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VisitMappingBenchmark {
+
+    @Param({"20", "100"})
+    private int rows;
+
+    private VisitMapper visitMapper;
+    private List<VisitRowDTO> page;
+
+    @Setup
+    public void setUp() {
+        page = new ArrayList<>(rows);
+        List<VisitRepository.VisitLink> testLinks = new ArrayList<>();
+        List<VisitRepository.VisitLink> packageLinks = new ArrayList<>();
+        List<VisitRepository.VisitLink> insuranceLinks = new ArrayList<>();
+        for (long visitId = 1; visitId <= rows; visitId++) {
+            page.add(row(visitId));
+            for (long test = 1; test <= 4; test++) {
+                testLinks.add(link(visitId, visitId * 10 + test));
+            }
+            packageLinks.add(link(visitId, visitId));
+            insuranceLinks.add(link(visitId, 1));
+        }
+
+        VisitRepository visitRepository = (VisitRepository) Proxy.newProxyInstance(
+                VisitRepository.class.getClassLoader(), new Class<?>[]{VisitRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findTestLinks" -> testLinks;
+                    case "findPackageLinks" -> packageLinks;
+                    case "findInsuranceLinks" -> insuranceLinks;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        visitMapper = new VisitMapper(visitRepository);
+    }
+
+    @Benchmark
+    public List<PatientDTO> mapPage() {
+        return visitMapper.toPatientDTOs(page);
+    }
+
+    private static VisitRowDTO row(long visitId) {
+        BigDecimal amount = BigDecimal.valueOf(1250 + visitId);
+        return new VisitRowDTO(visitId, LocalDate.of(2024, 1, 1).plusDays(visitId), "OUT_PATIENT", "COMPLETED",
+                "Routine check-up", 7L, "Patient" + visitId, "Kumar", "patient" + visitId + "@example.com",
+                "98765" + visitId, "12 MG Road", "Bengaluru", "Karnataka", "560001", "O+", LocalDate.of(1990, 5, 17),
+                amount, "PAID", "UPI", "2024-01-01", BigDecimal.ZERO, new BigDecimal("18.00"),
+                new BigDecimal("225.00"), new BigDecimal("112.50"), new BigDecimal("112.50"), BigDecimal.ZERO, amount);
+    }
+
+    private static VisitRepository.VisitLink link(long visitId, long linkedId) {
+        return new VisitRepository.VisitLink() {
+            @Override
+            public Long getVisitId() {
+                return visitId;
+            }
+
+            @Override
+            public Long getLinkedId() {
+                return linkedId;
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package tiameds.com.tiameds.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import tiameds.com.tiameds.exception.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the hashing and checking of passwords of another encoder on a small pool of its own, so a burst of
+ * logins at shift start cannot take the CPU from the rest of the API. The caller waits for the result; when
+ * the queue of the pool is full, or the result is not there within {@code maxWait}, the request is refused
+ * with {@link TooManyRequestsException#PASSWORD_HASHING_BUSY}.
+ * <p>
+ * Publishes the pool as {@code executor.*} metrics named {@code password-hashing}, the time spent hashing
+ * as {@code password.hashing} by operation, and refusals as {@code password.hashing.rejected}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final String NAME = "password-hashing";
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitNanos;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Counter queueFull;
+    private final Counter timedOut;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int threads, int queueCapacity, Duration maxWait,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.maxWaitNanos = maxWait.toNanos();
+
+        new ExecutorServiceMetrics(executor, NAME, List.of()).bindTo(meterRegistry);
+        this.encodeTimer = Timer.builder("password.hashing").tag("operation", "encode")
+                .description("Time spent hashing a password").register(meterRegistry);
+        this.matchesTimer = Timer.builder("password.hashing").tag("operation", "matches")
+                .description("Time spent checking a password against its hash").register(meterRegistry);
+        this.queueFull = Counter.builder("password.hashing.rejected").tag("reason", "queue-full")
+                .description("Requests refused because password hashing was saturated").register(meterRegistry);
+        this.timedOut = Counter.builder("password.hashing.rejected").tag("reason", "timeout")
+                .description("Requests refused because password hashing was saturated").register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    // only compares the hash settings, cheap enough for the calling thread
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            queueFull.increment();
+            throw TooManyRequestsException.PASSWORD_HASHING_BUSY;
+        }
+        try {
+            return future.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // a hash already running finishes anyway, one still queued gives its place back
+            cancel(future);
+            timedOut.increment();
+            throw TooManyRequestsException.PASSWORD_HASHING_BUSY;
+        } catch (InterruptedException e) {
+            cancel(future);
+            Thread.currentThread().interrupt();
+            throw TooManyRequestsException.PASSWORD_HASHING_BUSY;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void cancel(Future<?> future) {
+        future.cancel(false);
+        executor.remove((Runnable) future);
+    }
+
+    private static ThreadFactory threadFactory() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, NAME + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
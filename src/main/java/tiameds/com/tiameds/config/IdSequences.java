@@ -0,0 +1,86 @@
+package tiameds.com.tiameds.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ID sequences of the entities that are inserted in bulk. Hibernate draws IDs from them with the pooled
+ * optimizer: every nextval reserves the block {@code (value - ALLOCATION_SIZE, value]}, so inserts need no
+ * round trip for their keys and can be sent as JDBC batches. Plain JDBC writers must reserve IDs the same way.
+ * <p>
+ * The tables used to generate their keys with identity columns. On startup, before the server takes
+ * requests, every sequence that is behind its table is moved past the highest existing ID. Sequences are
+ * only ever moved forward, so a node starting next to running ones does not hand out their blocks again.
+ */
+@Slf4j
+@Component
+public class IdSequences implements InitializingBean {
+
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String TESTS = "tests_seq";
+
+    // sequence, table, ID column
+    private static final List<String[]> SEQUENCES = List.of(
+            new String[]{"labs_seq", "labs", "lab_id"},
+            new String[]{TESTS, "tests", "test_id"},
+            new String[]{"patients_seq", "patients", "patient_id"},
+            new String[]{"patient_visits_seq", "patient_visits", "visit_id"},
+            new String[]{"billing_seq", "billing", "billing_id"},
+            new String[]{"doctors_seq", "doctors", "doctor_id"},
+            new String[]{"health_packages_seq", "health_packages", "package_id"},
+            new String[]{"insurance_seq", "insurance", "insurance_id"},
+            new String[]{"users_seq", "users", "user_id"}
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // the entity manager factory is created after the migrations, so the sequences exist once it is ready
+    public IdSequences(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        for (String[] sequence : SEQUENCES) {
+            align(sequence[0], sequence[1], sequence[2]);
+        }
+    }
+
+    private void align(String sequence, String table, String idColumn) {
+        // the first ID of the next block is (next value - ALLOCATION_SIZE + 1); it has to be above every existing ID
+        List<Long> moved = jdbcTemplate.queryForList(
+                "SELECT setval('" + sequence + "', m.max_id + " + ALLOCATION_SIZE + ", false) " +
+                        "FROM (SELECT COALESCE(MAX(" + idColumn + "), 0) AS max_id FROM " + table + ") m, " + sequence + " s " +
+                        "WHERE (CASE WHEN s.is_called THEN s.last_value + " + ALLOCATION_SIZE + " ELSE s.last_value END) " +
+                        "- " + ALLOCATION_SIZE + " < m.max_id",
+                Long.class);
+        if (!moved.isEmpty()) {
+            log.info("Moved ID sequence {} past the existing rows of {} to {}", sequence, table, moved.get(0));
+        }
+    }
+
+    /**
+     * Reserves IDs from a pooled sequence for rows written without Hibernate.
+     *
+     * @return {@code count} unused IDs, in ascending blocks
+     */
+    public static List<Long> reserve(JdbcTemplate jdbcTemplate, String sequence, int count) {
+        int blocks = (count + ALLOCATION_SIZE - 1) / ALLOCATION_SIZE;
+        List<Long> upperBounds = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class, blocks);
+        List<Long> ids = new ArrayList<>(count);
+        for (Long upperBound : upperBounds) {
+            for (long id = upperBound - ALLOCATION_SIZE + 1; id <= upperBound && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,20 @@
+package tiameds.com.tiameds.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Registers Blackbird with the ObjectMapper Spring Boot builds for the message converters and the catalog
+ * response cache. It replaces the reflective getter, setter and constructor calls of Jackson's bean
+ * serializers with generated lambdas, which the JIT can inline.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
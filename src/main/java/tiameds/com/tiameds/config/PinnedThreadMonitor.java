@@ -0,0 +1,89 @@
+package tiameds.com.tiameds.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread, e.g. on I/O inside a
+ * {@code synchronized} block or a cache loader run by {@code ConcurrentHashMap.computeIfAbsent} or Caffeine's
+ * {@code Cache.get(key, loader)}; the caches of this application load through
+ * {@link tiameds.com.tiameds.utils.CacheLoads} instead. The JVM records these as
+ * {@code jdk.VirtualThreadPinned} JFR events; each one is counted as {@code jvm.threads.virtual.pinned} and
+ * logged with its stack trace the first time it comes from a new place.
+ */
+@Slf4j
+public class PinnedThreadMonitor implements AutoCloseable {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 12;
+
+    private final RecordingStream stream;
+    private final Counter pinned;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+
+    public PinnedThreadMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        this.pinned = Counter.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier for longer than the threshold")
+                .register(meterRegistry);
+        this.stream = new RecordingStream();
+        this.stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        this.stream.onEvent(EVENT, this::onPinned);
+        this.stream.startAsync();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        String site = site(stackTrace);
+        if (reportedSites.add(site)) {
+            log.warn("Virtual thread pinned its carrier for {} ms at {}{}", event.getDuration().toMillis(), site, frames(stackTrace));
+        } else {
+            log.debug("Virtual thread pinned its carrier for {} ms at {}", event.getDuration().toMillis(), site);
+        }
+    }
+
+    // the top frames are the JDK parking the thread; the first one outside the JDK is where it blocked
+    private static String site(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "unknown";
+        }
+        return stackTrace.getFrames().stream()
+                .filter(frame -> !isJdk(frame))
+                .findFirst()
+                .map(PinnedThreadMonitor::frame)
+                .orElse("unknown");
+    }
+
+    private static String frames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return "";
+        }
+        StringBuilder frames = new StringBuilder();
+        stackTrace.getFrames().stream().dropWhile(PinnedThreadMonitor::isJdk).skip(1).limit(LOGGED_FRAMES)
+                .forEach(frame -> frames.append(System.lineSeparator()).append("\tat ").append(frame(frame)));
+        return frames.toString();
+    }
+
+    private static boolean isJdk(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.");
+    }
+
+    private static String frame(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+}
@@ -0,0 +1,84 @@
+package tiameds.com.tiameds.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Replaces the single DataSource with {@link ReplicaRouting} once {@code spring.datasource.replica.url} is
+ * set. Without it the application keeps Spring Boot's DataSource and talks to the primary only.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.url")
+public class ReadReplicaConfig {
+
+    private static final String PREFIX = "spring.datasource.replica.";
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRouting replicaRouting(DataSourceProperties properties, Environment environment,
+                                         ObjectProvider<MeterRegistry> meterRegistry) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(environment.getRequiredProperty(PREFIX + "url"));
+        replica.setUsername(environment.getProperty(PREFIX + "username", properties.determineUsername()));
+        replica.setPassword(environment.getProperty(PREFIX + "password", properties.determinePassword()));
+        replica.setDriverClassName(properties.determineDriverClassName());
+        replica.setMaximumPoolSize(environment.getProperty(PREFIX + "maximum-pool-size", Integer.class, 10));
+        replica.setReadOnly(true);
+
+        // the pools are not beans, so Spring Boot's pool metrics only reach the primary through the router
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        }
+
+        ReplicaRouting replicaRouting = new ReplicaRouting(primary, replica,
+                environment.getProperty(PREFIX + "max-lag", Duration.class, Duration.ofSeconds(2)),
+                environment.getProperty(PREFIX + "lag-check-interval", Duration.class, Duration.ofSeconds(1)),
+                environment.getProperty(PREFIX + "sticky-window", Duration.class, Duration.ofSeconds(5)));
+        if (registry != null) {
+            Gauge.builder("db.replica.lag", replicaRouting, ReplicaRouting::getLagMillis)
+                    .baseUnit("milliseconds")
+                    .description("Replay lag of the read replica, -1 if unknown")
+                    .register(registry);
+            Gauge.builder("db.replica.usable", replicaRouting, routing -> routing.isReplicaUsable() ? 1 : 0)
+                    .description("1 while read-only transactions are sent to the replica")
+                    .register(registry);
+        }
+        return replicaRouting;
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouting replicaRouting, Environment environment) {
+        // the pools are not beans, so VirtualThreadConfig cannot bound them itself
+        return Threading.VIRTUAL.isActive(environment)
+                ? replicaRouting.dataSource(BoundedDataSource::forPool)
+                : replicaRouting.dataSource();
+    }
+
+    // Spring holds the connection for the whole EntityManager, which open-in-view keeps for the whole request;
+    // every transaction has to pick its own connection for a read to reach the replica and a write the primary
+    @Bean
+    public HibernatePropertiesCustomizer replicaConnectionHandling() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+}
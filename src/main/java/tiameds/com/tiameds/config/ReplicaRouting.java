@@ -0,0 +1,219 @@
+package tiameds.com.tiameds.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Sends read-only transactions to a Postgres replica and everything else to the primary. A read goes to the
+ * primary instead when
+ * <ul>
+ *     <li>the replica is more than {@code max-lag} behind, or could not be asked for its lag,</li>
+ *     <li>the client committed a write within the last {@code sticky-window}, so it reads its own writes.</li>
+ * </ul>
+ * A committed write sets the {@value #WROTE_AT_COOKIE} cookie to its time, which every node honours. For
+ * clients that do not keep cookies the user is also remembered on the node that took the write, but another
+ * node may then answer their next read from the replica.
+ * <p>
+ * The routing DataSource sits behind a {@link LazyConnectionDataSourceProxy}, so the connection is only
+ * chosen at the first statement, after the transaction manager has published the read-only flag.
+ */
+@Slf4j
+public class ReplicaRouting implements TransactionExecutionListener, AutoCloseable {
+
+    public static final String WROTE_AT_COOKIE = "tiameds_wrote_at";
+
+    private static final String COOKIE_SET_ATTRIBUTE = ReplicaRouting.class.getName() + ".cookieSet";
+
+    // 0 on a primary and on a replica that has replayed everything it received
+    private static final String LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() " +
+            "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint END";
+
+    private enum Target {PRIMARY, REPLICA}
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final long maxLagMillis;
+    private final long lagCheckMillis;
+    private final Duration stickyWindow;
+    private final JdbcTemplate replicaJdbcTemplate;
+
+    // users that committed a write recently, by username
+    private final Cache<String, Boolean> recentWriters;
+
+    private volatile boolean replicaUsable;
+    private volatile long lagMillis = -1;
+    private volatile boolean running = true;
+    private final Thread lagMonitor;
+
+    public ReplicaRouting(HikariDataSource primary, HikariDataSource replica, Duration maxLag,
+                          Duration lagCheckInterval, Duration stickyWindow) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagCheckMillis = lagCheckInterval.toMillis();
+        this.stickyWindow = stickyWindow;
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(stickyWindow)
+                .build();
+        this.lagMonitor = new Thread(this::monitorLag, "replica-lag-monitor");
+        this.lagMonitor.setDaemon(true);
+        this.lagMonitor.start();
+    }
+
+    public DataSource dataSource() {
+        return dataSource(pool -> pool);
+    }
+
+    /**
+     * @param pool applied to both pools, e.g. to put a {@link BoundedDataSource} in front of them
+     */
+    public DataSource dataSource(Function<HikariDataSource, DataSource> pool) {
+        AbstractRoutingDataSource routing = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return target();
+            }
+        };
+        DataSource primaryTarget = pool.apply(primary);
+        routing.setTargetDataSources(Map.of(Target.PRIMARY, primaryTarget, Target.REPLICA, pool.apply(replica)));
+        routing.setDefaultTargetDataSource(primaryTarget);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private Target target() {
+        if (!replicaUsable || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        String user = currentUser();
+        if (user != null && recentWriters.getIfPresent(user) != null) {
+            return Target.PRIMARY;
+        }
+        ServletRequestAttributes request = currentRequest();
+        if (request != null && wroteRecently(request.getRequest())) {
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+
+    private boolean wroteRecently(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, WROTE_AT_COOKIE);
+        if (cookie == null) {
+            return false;
+        }
+        try {
+            return System.currentTimeMillis() - Long.parseLong(cookie.getValue()) < stickyWindow.toMillis();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        if (commitFailure != null || transaction.isReadOnly() || !transaction.isNewTransaction()) {
+            return;
+        }
+        String user = currentUser();
+        if (user != null) {
+            recentWriters.put(user, Boolean.TRUE);
+        }
+        ServletRequestAttributes request = currentRequest();
+        HttpServletResponse response = request != null ? request.getResponse() : null;
+        if (response != null && !response.isCommitted()
+                && request.getAttribute(COOKIE_SET_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) == null) {
+            request.setAttribute(COOKIE_SET_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+            response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(WROTE_AT_COOKIE,
+                            Long.toString(System.currentTimeMillis()))
+                    .path("/")
+                    .maxAge(stickyWindow)
+                    .httpOnly(true)
+                    .secure(request.getRequest().isSecure())
+                    .sameSite("Lax")
+                    .build()
+                    .toString());
+        }
+    }
+
+    private static ServletRequestAttributes currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes : null;
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.isAuthenticated() ? authentication.getName() : null;
+    }
+
+    private void monitorLag() {
+        while (running) {
+            boolean usable;
+            try {
+                Long lag = replicaJdbcTemplate.queryForObject(LAG_QUERY, Long.class);
+                usable = lag != null && lag <= maxLagMillis;
+                lagMillis = lag != null ? lag : -1;
+                if (!usable && replicaUsable) {
+                    log.warn("Replica is {} ms behind, sending reads to the primary", lag);
+                }
+            } catch (Exception e) {
+                usable = false;
+                lagMillis = -1;
+                if (replicaUsable) {
+                    log.warn("Could not check the replica lag, sending reads to the primary: {}", e.getMessage());
+                }
+            }
+            if (usable && !replicaUsable) {
+                log.info("Replica is within {} ms of the primary, sending read-only transactions to it", maxLagMillis);
+            }
+            replicaUsable = usable;
+            try {
+                Thread.sleep(lagCheckMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // last measured replica lag, -1 if it could not be measured
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        lagMonitor.interrupt();
+        replica.close();
+        primary.close();
+    }
+}
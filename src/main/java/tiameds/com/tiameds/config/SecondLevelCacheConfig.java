@@ -0,0 +1,81 @@
+package tiameds.com.tiameds.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+
+/**
+ * Hibernate second-level cache for the reference data that visits are registered against (tests, packages,
+ * doctors, insurance) and for roles and modules. Every region is a Caffeine cache created here, sized and
+ * expired by {@code spring.second-level-cache.*}, with per-region overrides under
+ * {@code spring.second-level-cache.regions.<region>}; Hibernate refuses to start with an unknown region.
+ * <p>
+ * Hibernate drops every region after a native write it cannot attribute, so native modifying queries name
+ * the table they write through {@link org.hibernate.jpa.HibernateHints#HINT_NATIVE_SPACES}. Writes made with
+ * plain JDBC evict the regions they touch themselves.
+ */
+@Configuration
+public class SecondLevelCacheConfig {
+
+    // entity regions
+    public static final String TESTS = "tests";
+    public static final String HEALTH_PACKAGES = "health_packages";
+    public static final String DOCTORS = "doctors";
+    public static final String INSURANCE = "insurance";
+    public static final String ROLES = "roles";
+    public static final String MODULES = "modules";
+
+    // collection regions
+    public static final String LAB_TESTS = "lab_tests";
+    public static final String LAB_PACKAGES = "lab_packages";
+    public static final String LAB_DOCTORS = "lab_doctors";
+    public static final String LAB_INSURANCE = "lab_insurance";
+    public static final String PACKAGE_TESTS = "package_tests";
+    public static final String INSURANCE_LABS = "insurance_labs";
+
+    public static final List<String> REGIONS = List.of(
+            TESTS, HEALTH_PACKAGES, DOCTORS, INSURANCE, ROLES, MODULES,
+            LAB_TESTS, LAB_PACKAGES, LAB_DOCTORS, LAB_INSURANCE, PACKAGE_TESTS, INSURANCE_LABS);
+
+    private static final String PREFIX = "spring.second-level-cache.";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(Environment environment) {
+        Duration defaultTtl = environment.getProperty(PREFIX + "ttl", Duration.class, Duration.ofHours(1));
+        long defaultMaxSize = environment.getProperty(PREFIX + "max-size", Long.class, 10_000L);
+
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        for (String region : REGIONS) {
+            Duration ttl = environment.getProperty(PREFIX + "regions." + region + ".ttl", Duration.class, defaultTtl);
+            long maxSize = environment.getProperty(PREFIX + "regions." + region + ".max-size", Long.class, defaultMaxSize);
+
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+            configuration.setStatisticsEnabled(true);
+            // Hibernate already stores disassembled copies; JCache's store-by-value would serialize them again
+            configuration.setStoreByValue(false);
+            if (cacheManager.getCache(region) == null) {
+                cacheManager.createCache(region, configuration);
+            }
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
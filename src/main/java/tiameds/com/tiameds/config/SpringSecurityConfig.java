@@ -1,6 +1,10 @@
 package tiameds.com.tiameds.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -18,6 +22,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import tiameds.com.tiameds.filter.JwtFilter;
 import tiameds.com.tiameds.services.auth.UserDetailsServiceImpl;
 
+import java.time.Duration;
+
 
 @Configuration
 @EnableWebSecurity
@@ -33,10 +39,10 @@ public class SpringSecurityConfig {
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());        // Set the password encoder
+        authProvider.setPasswordEncoder(passwordEncoder);        // Set the password encoder
         return authProvider;
     }
 
@@ -87,6 +93,7 @@ public class SpringSecurityConfig {
                         .requestMatchers("/lab-super-admin/**").hasRole("SUPERADMIN") // SUPERADMIN-only endpoints
                         .requestMatchers("/error").permitAll()          // Allow error endpoint without authentication
                         .requestMatchers("/login/**", "/register/**").permitAll()  // Public login & registration
+                        .requestMatchers("/actuator/**").permitAll()  // Only served on the management port
                         .requestMatchers(
                                 "/v3/api-docs/**",
                                 "/doc/**",
@@ -103,9 +110,15 @@ public class SpringSecurityConfig {
     }
 
 
-    @Bean
-    PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    // BCrypt on a bounded pool of its own, for login, registration and lab member creation alike
+    @Bean(destroyMethod = "close")
+    BoundedPasswordEncoder passwordEncoder(@Value("${spring.password-hashing.threads:0}") int threads,
+                                           @Value("${spring.password-hashing.queue-capacity:32}") int queueCapacity,
+                                           @Value("${spring.password-hashing.max-wait:2s}") Duration maxWait,
+                                           ObjectProvider<MeterRegistry> meterRegistry) {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), poolSize, queueCapacity, maxWait,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
     }
 
 
@@ -0,0 +1,40 @@
+package tiameds.com.tiameds.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import tiameds.com.tiameds.utils.SqlStatementListener;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the application DataSource in a datasource-proxy that reports every statement and every row read
+ * to {@link SqlStatementListener}, for the per-request counts of
+ * {@link tiameds.com.tiameds.filter.SqlStatementFilter}. Off unless {@code spring.sql-stats.enabled} is set,
+ * as in the dev profile; every JDBC call and row pays for the proxy, so production talks to the pool directly.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.sql-stats.enabled")
+public class SqlStatsConfig {
+
+    @Bean
+    public static BeanPostProcessor sqlStatsDataSourcePostProcessor() {
+        SqlStatementListener listener = new SqlStatementListener();
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(listener)
+                            .proxyResultSet()
+                            .methodListener(listener)
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
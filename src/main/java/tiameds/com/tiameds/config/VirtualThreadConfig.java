@@ -0,0 +1,49 @@
+package tiameds.com.tiameds.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Active with {@code spring.threads.virtual.enabled: true}, under which Spring Boot runs the Tomcat requests and
+ * its task executor on virtual threads. Database access is then bounded by the pool instead of by the request
+ * threads: the pool is wrapped in a {@link BoundedDataSource} (the replica pools by {@link ReadReplicaConfig}),
+ * and virtual threads pinned to their carrier are reported by a {@link PinnedThreadMonitor}.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    // runs before the datasource-proxy of SqlStatsConfig, so that one sees the bounded pool
+    @Bean
+    public static BeanPostProcessor boundedDataSourcePostProcessor() {
+        return new OrderedBeanPostProcessor();
+    }
+
+    @Bean(destroyMethod = "close")
+    public PinnedThreadMonitor pinnedThreadMonitor(MeterRegistry meterRegistry,
+                                                   @Value("${spring.threads.virtual.pinned-threshold:20ms}") Duration threshold) {
+        return new PinnedThreadMonitor(meterRegistry, threshold);
+    }
+
+    private static class OrderedBeanPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            return bean instanceof HikariDataSource pool ? BoundedDataSource.forPool(pool) : bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
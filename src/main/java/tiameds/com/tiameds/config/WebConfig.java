@@ -0,0 +1,32 @@
+package tiameds.com.tiameds.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tiameds.com.tiameds.filter.LabAccessInterceptor;
+import tiameds.com.tiameds.utils.CurrentUserArgumentResolver;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final CurrentUserArgumentResolver currentUserArgumentResolver;
+    private final LabAccessInterceptor labAccessInterceptor;
+
+    public WebConfig(CurrentUserArgumentResolver currentUserArgumentResolver, LabAccessInterceptor labAccessInterceptor) {
+        this.currentUserArgumentResolver = currentUserArgumentResolver;
+        this.labAccessInterceptor = labAccessInterceptor;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(currentUserArgumentResolver);  // @CurrentUser -> principal resolved by JwtFilter
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(labAccessInterceptor);  // only acts on @RequireLabAccess handlers
+    }
+}
@@ -4,14 +4,17 @@ package tiameds.com.tiameds.controller.auth;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tiameds.com.tiameds.entity.ModuleEntity;
 import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.BadRequestException;
 import tiameds.com.tiameds.repository.ModuleRepository;
 import tiameds.com.tiameds.repository.UserRepository;
+import tiameds.com.tiameds.services.auth.UserDetailsServiceImpl;
 import tiameds.com.tiameds.utils.ApiResponse;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
 
@@ -26,10 +29,12 @@ public class ModuleController {
 
     private final ModuleRepository moduleRepository;
     private final UserRepository userRepository;
+    private final UserDetailsServiceImpl userDetailsService;
 
-    public ModuleController(ModuleRepository moduleRepository, UserRepository userRepository) {
+    public ModuleController(ModuleRepository moduleRepository, UserRepository userRepository, UserDetailsServiceImpl userDetailsService) {
         this.moduleRepository = moduleRepository;
         this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
     }
 
     // ========================================= MODULE CRUD OPERATION  this is for super admin=========================================
@@ -60,8 +65,9 @@ public class ModuleController {
         try {
             ModuleEntity newModule = moduleRepository.save(module);
             return ApiResponseHelper.successResponse("Module created successfully", newModule);
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponseWithData("Error creating module", HttpStatus.BAD_REQUEST);
+        } catch (DataIntegrityViolationException e) {
+            // module names are unique
+            throw BadRequestException.MODULE_EXISTS;
         }
     }
 
@@ -74,6 +80,8 @@ public class ModuleController {
                         return moduleRepository.save(existingModule);
                     })
                     .orElseThrow(() -> new EntityNotFoundException("Module not found with id " + moduleId));
+            // cached principals still carry the old module
+            userDetailsService.evictAll();
             return ApiResponseHelper.successResponse("Module updated successfully", updatedModule);
         } catch (EntityNotFoundException e) {
             return ApiResponseHelper.errorResponseWithData("Module not found with id " + moduleId, HttpStatus.NOT_FOUND);
@@ -84,6 +92,7 @@ public class ModuleController {
     public ResponseEntity<?> deleteModule(@PathVariable Long moduleId) {
         try {
             moduleRepository.deleteById(moduleId);
+            userDetailsService.evictAll();
             return ApiResponseHelper.successResponse("Module deleted successfully", null);
         } catch (EmptyResultDataAccessException e) {
             return ApiResponseHelper.errorResponseWithData("Module not found with id " + moduleId, HttpStatus.NOT_FOUND);
@@ -111,6 +120,7 @@ public class ModuleController {
             // add module to user
             user.getModules().add(module);
             userRepository.save(user);
+            userDetailsService.evictUser(userId);
 
             return ApiResponseHelper.successResponse("Module added to user successfully", user);
         } catch (EntityNotFoundException e) {
@@ -139,6 +149,7 @@ public class ModuleController {
             // remove module from user
             user.getModules().remove(module);
             userRepository.save(user);
+            userDetailsService.evictUser(userId);
 
             return ApiResponseHelper.successResponse("Module removed from user successfully", user);
         } catch (EntityNotFoundException e) {
@@ -3,6 +3,9 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -14,11 +17,13 @@ import org.springframework.web.bind.annotation.*;
 import tiameds.com.tiameds.dto.auth.AuthResponse;
 import tiameds.com.tiameds.dto.auth.LoginRequest;
 import tiameds.com.tiameds.dto.auth.LoginResponse;
+import tiameds.com.tiameds.dto.auth.RefreshRequest;
 import tiameds.com.tiameds.dto.auth.RegisterRequest;
 import tiameds.com.tiameds.dto.lab.ModuleDTO;
 import tiameds.com.tiameds.entity.ModuleEntity;
 import tiameds.com.tiameds.entity.User;
 import tiameds.com.tiameds.repository.ModuleRepository;
+import tiameds.com.tiameds.services.auth.AuthTokenService;
 import tiameds.com.tiameds.services.auth.UserDetailsServiceImpl;
 import tiameds.com.tiameds.services.auth.UserService;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
@@ -40,25 +45,33 @@ public class UserController {
     private final PasswordEncoder passwordEncoder;
     private final JwtUtil jwtUtils;
     private final ModuleRepository moduleRepository;
+    private final HealthEndpoint healthEndpoint;
+    private final AuthTokenService authTokenService;
 
     @Autowired
-    public UserController(UserService userService, AuthenticationManager authenticationManager, UserDetailsServiceImpl userDetailsService, PasswordEncoder passwordEncoder, JwtUtil jwtUtils, ModuleRepository moduleRepository) {
+    public UserController(UserService userService, AuthenticationManager authenticationManager, UserDetailsServiceImpl userDetailsService, PasswordEncoder passwordEncoder, JwtUtil jwtUtils, ModuleRepository moduleRepository, HealthEndpoint healthEndpoint, AuthTokenService authTokenService) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
         this.userDetailsService = userDetailsService;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtils = jwtUtils;
         this.moduleRepository = moduleRepository;
+        this.healthEndpoint = healthEndpoint;
+        this.authTokenService = authTokenService;
     }
 
 
+    // readiness of this instance, database included; the same check as /actuator/health/readiness
     @GetMapping("/health-check")
-    public String healthCheck() {
-        return "Service is up and running ${new Date()}";
+    public ResponseEntity<?> healthCheck() {
+        HealthComponent readiness = healthEndpoint.healthForPath("readiness");
+        Status status = readiness != null ? readiness.getStatus() : Status.UNKNOWN;
+        HttpStatus httpStatus = Status.UP.equals(status) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ApiResponseHelper.successResponseWithDataAndMessage("Service is " + status.getCode(), httpStatus, status.getCode());
     }
 
     @PostMapping("/register")
-    public ResponseEntity<Map<String, Object>> register(@Valid @RequestBody RegisterRequest registerRequest) {
+    public ResponseEntity<?> register(@Valid @RequestBody RegisterRequest registerRequest) {
 
         // Check if the username is already taken
         if (userService.existsByUsername(registerRequest.getUsername())) {
@@ -111,6 +124,7 @@ public class UserController {
     @PostMapping("/login")
     public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest loginRequest) {
         String token = null;
+        String refreshToken = null;
         try {
             // Authenticate the user
             authenticationManager.authenticate(
@@ -119,23 +133,29 @@ public class UserController {
         } catch (BadCredentialsException e) {
             // Return error response
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new AuthResponse(HttpStatus.BAD_REQUEST , "Incorrect username or password", null, null));
+                    .body(new AuthResponse(HttpStatus.BAD_REQUEST , "Incorrect username or password", null, null, null));
         }
 
         // Load user details
         final UserDetails userDetails = userDetailsService.loadUserByUsername(loginRequest.getUsername());
 
-        // Generate JWT token
-        token = jwtUtils.generateToken(userDetails.getUsername());
-
         // Fetch user details
         Optional<User> userOptional = userService.findByUsername(loginRequest.getUsername());
         if (!userOptional.isPresent()) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                    .body(new AuthResponse(HttpStatus.BAD_REQUEST, "User not found", null, null));
+                    .body(new AuthResponse(HttpStatus.BAD_REQUEST, "User not found", null, null, null));
         }
         User user = userOptional.get();
 
+        // Generate JWT token; a claims token with its refresh token, or a plain one
+        if (authTokenService.isEnabled()) {
+            AuthTokenService.TokenPair tokens = authTokenService.issue(user);
+            token = tokens.accessToken();
+            refreshToken = tokens.refreshToken();
+        } else {
+            token = jwtUtils.generateToken(userDetails.getUsername());
+        }
+
         // Convert roles to list of strings
         List<String> roles = user.getRoles().stream()
                 .map(Role::getName)
@@ -171,7 +191,16 @@ public class UserController {
         // Create and return the AuthResponse
         return ResponseEntity.ok(new AuthResponse(
                 HttpStatus.OK,
-                "Login successful", token, loginResponse));
+                "Login successful", token, refreshToken, loginResponse));
+    }
+
+    // exchanges a refresh token for a new access and refresh token with the current roles, modules and labs
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthResponse> refresh(@Valid @RequestBody RefreshRequest refreshRequest) {
+        AuthTokenService.TokenPair tokens = authTokenService.refresh(refreshRequest.getRefreshToken());
+        return ResponseEntity.ok(new AuthResponse(
+                HttpStatus.OK,
+                "Token refreshed", tokens.accessToken(), tokens.refreshToken(), null));
     }
 }
 
@@ -1,55 +1,38 @@
 package tiameds.com.tiameds.controller.lab;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tiameds.com.tiameds.dto.lab.DoctorDTO;
 import tiameds.com.tiameds.services.lab.DoctorService;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
-import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
+import tiameds.com.tiameds.utils.RequireLabAccess;
 
 @RestController
+@RequireLabAccess
 @RequestMapping("/admin/lab")
 @Tag(name = "Doctor Controller", description = "manage the doctors in the lab")
 public class DoctorController {
 
     private final DoctorService doctorService;
-    private final UserAuthService userAuthService;
-    private final LabAccessableFilter labAccessableFilter;
+    private final CatalogResponseCache catalogResponseCache;
 
-    public DoctorController(DoctorService doctorService, UserAuthService userAuthService, LabAccessableFilter labAccessableFilter) {
+    public DoctorController(DoctorService doctorService, CatalogResponseCache catalogResponseCache) {
         this.doctorService = doctorService;
-        this.userAuthService = userAuthService;
-        this.labAccessableFilter = labAccessableFilter;
+        this.catalogResponseCache = catalogResponseCache;
     }
 
     // create doctor or add doctor to lab
     @PostMapping("{labId}/doctors")
     public ResponseEntity<?> addDoctorToLab(
             @PathVariable("labId") Long labId,
-            @RequestBody DoctorDTO doctorDTO,
-            @RequestHeader("Authorization") String token) {
-        try {
-            // Authenticate user
-            if (userAuthService.authenticateUser(token).isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-            // Delegate to the service layer
-            doctorService.addDoctorToLab(labId, doctorDTO);
-
-            return ApiResponseHelper.successResponse("Doctor added successfully", doctorDTO);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @RequestBody DoctorDTO doctorDTO) {
+        // Delegate to the service layer
+        doctorService.addDoctorToLab(labId, doctorDTO);
+
+        return ApiResponseHelper.successResponse("Doctor added successfully", doctorDTO);
     }
 
 
@@ -58,29 +41,12 @@ public class DoctorController {
     public ResponseEntity<?> updateDoctor(
             @PathVariable("labId") Long labId,
             @PathVariable("doctorId") Long doctorId,
-            @RequestBody DoctorDTO doctorDTO,
-            @RequestHeader("Authorization") String token) {
-
-        try {
-            // Authenticate user
-            if (userAuthService.authenticateUser(token).isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
+            @RequestBody DoctorDTO doctorDTO) {
 
-            // Delegate to the service layer
-            doctorService.updateDoctor(labId, doctorId, doctorDTO);
+        // Delegate to the service layer
+        doctorService.updateDoctor(labId, doctorId, doctorDTO);
 
-            return ApiResponseHelper.successResponse("Doctor updated successfully", doctorDTO);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        return ApiResponseHelper.successResponse("Doctor updated successfully", doctorDTO);
     }
 
 
@@ -88,81 +54,32 @@ public class DoctorController {
     @DeleteMapping("{labId}/doctors/{doctorId}")
     public ResponseEntity<?> deleteDoctor(
             @PathVariable("labId") Long labId,
-            @PathVariable("doctorId") Long doctorId,
-            @RequestHeader("Authorization") String token) {
-
-        try {
-            // Authenticate user
-            if (userAuthService.authenticateUser(token).isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
+            @PathVariable("doctorId") Long doctorId) {
 
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
+        // Delegate to the service layer
+        doctorService.deleteDoctor(labId, doctorId);
 
-            // Delegate to the service layer
-            doctorService.deleteDoctor(labId, doctorId);
-
-            return ApiResponseHelper.successResponse("Doctor deleted successfully", null);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        return ApiResponseHelper.successResponse("Doctor deleted successfully", null);
     }
 
     // get all doctors
     @GetMapping("{labId}/doctors")
     public ResponseEntity<?> getAllDoctors(
             @PathVariable("labId") Long labId,
-            @RequestHeader("Authorization") String token) {
-
-        try {
-            // Authenticate user
-            if (userAuthService.authenticateUser(token).isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delegate to the service layer
-            return ApiResponseHelper.successResponse("Doctors retrieved successfully", doctorService.getAllDoctors(labId));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+
+        // Served from the cached response bytes; the service is only asked when the lab's doctors changed
+        return catalogResponseCache.respond(labId, CatalogResponseCache.DOCTORS, ifNoneMatch, () ->
+                ApiResponseHelper.successResponse("Doctors retrieved successfully", doctorService.getAllDoctors(labId)).getBody());
     }
 
     // get doctor by id
     @GetMapping("{labId}/doctors/{doctorId}")
     public ResponseEntity<?> getDoctorById(
             @PathVariable("labId") Long labId,
-            @PathVariable("doctorId") Long doctorId,
-            @RequestHeader("Authorization") String token) {
-
-        try {
-            // Authenticate user
-            if (userAuthService.authenticateUser(token).isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delegate to the service layer
-            return ApiResponseHelper.successResponse("Doctor retrieved successfully", doctorService.getDoctorById(labId, doctorId));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @PathVariable("doctorId") Long doctorId) {
+
+        // Delegate to the service layer
+        return ApiResponseHelper.successResponse("Doctor retrieved successfully", doctorService.getDoctorById(labId, doctorId));
     }
 }
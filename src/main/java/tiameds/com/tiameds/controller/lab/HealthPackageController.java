@@ -1,6 +1,7 @@
 package tiameds.com.tiameds.controller.lab;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -8,37 +9,36 @@ import tiameds.com.tiameds.dto.lab.HealthPackageRequest;
 import tiameds.com.tiameds.entity.HealthPackage;
 import tiameds.com.tiameds.entity.Lab;
 import tiameds.com.tiameds.entity.Test;
-import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.HealthPackageRepository;
 import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.repository.TestRepository;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
-import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
+import tiameds.com.tiameds.utils.RequireLabAccess;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
 @RestController
+@RequireLabAccess
 @RequestMapping("/admin/lab")
 @Tag(name = "Package", description = "Package API which is used to manage packages")
 public class HealthPackageController {
 
     private final LabRepository labRepository;
     private final TestRepository testRepository;
-    private final UserAuthService userAuthService;
     private final HealthPackageRepository healthPackageRepository;
-    private final LabAccessableFilter labAccessableFilter;
+    private final CatalogResponseCache catalogResponseCache;
 
 
     //default constructor
-    public HealthPackageController(LabRepository labRepository, TestRepository testRepository, UserAuthService userAuthService, HealthPackageRepository healthPackageRepository, LabAccessableFilter labAccessableFilter) {
+    public HealthPackageController(LabRepository labRepository, TestRepository testRepository, HealthPackageRepository healthPackageRepository, CatalogResponseCache catalogResponseCache) {
         this.labRepository = labRepository;
         this.testRepository = testRepository;
-        this.userAuthService = userAuthService;
         this.healthPackageRepository = healthPackageRepository;
-        this.labAccessableFilter = labAccessableFilter;
+        this.catalogResponseCache = catalogResponseCache;
     }
 
 
@@ -46,70 +46,38 @@ public class HealthPackageController {
     @GetMapping("{labId}/packages")
     public ResponseEntity<?> getHealthPackages(
             @PathVariable("labId") Long labId,
-            @RequestHeader("Authorization") String token) {
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
 
-        // Authenticate the user
-        User currentUser = userAuthService.authenticateUser(token)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        // Served from the cached response bytes; built only when the lab's packages changed
+        return catalogResponseCache.respond(labId, CatalogResponseCache.PACKAGES, ifNoneMatch, () -> {
+            // The lab was checked by the access gate, a reference is enough to query by it
+            Lab lab = labRepository.getReferenceById(labId);
 
+            // Fetch the health packages of the lab
+            List<HealthPackage> healthPackages = healthPackageRepository.findAllByLabs(lab);
 
-        // Fetch the lab and check if it exists
-        Optional<Lab> lab = labRepository.findById(labId);
-        if (lab.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
-
-        // Check if the lab is active
-        boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-        if (isAccessible == false) {
-            return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-        }
-
-        // Verify if the current user member of the lab or not
-        if (!currentUser.getLabs().contains(lab.get())) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
-
-        // Fetch the health packages of the lab
-        List<HealthPackage> healthPackages = healthPackageRepository.findAllByLabs(lab.get());
-
-        // Return the success response with the fetched health packages
-        return ApiResponseHelper.successResponse(
-                "Health packages fetched successfully",
-                healthPackages
-        );
+            return ApiResponseHelper.successResponse(
+                    "Health packages fetched successfully",
+                    healthPackages
+            ).getBody();
+        });
     }
 
 
     @PostMapping("{labId}/package")
     public ResponseEntity<?> createHealthPackage(
             @PathVariable("labId") Long labId,
-            @RequestBody HealthPackageRequest packageRequest, // Assuming a DTO is used to accept the data
-            @RequestHeader("Authorization") String token) {
+            @RequestBody HealthPackageRequest packageRequest) { // Assuming a DTO is used to accept the data
 
-        // Authenticate the user
-        User currentUser = userAuthService.authenticateUser(token)
-                .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Fetch the lab and check if it exists
         Optional<Lab> labOptional = labRepository.findById(labId);
         if (labOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.LAB;
         }
 
         Lab lab = labOptional.get();
 
-        // Check if the lab is active
-        boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-        if (!isAccessible) {
-            return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-        }
-
-        // Verify if the current user is associated with the lab
-        if (!currentUser.getLabs().contains(lab)) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
-
         // Check if the test IDs belong to the lab or not
         List<Test> tests = testRepository.findAllById(packageRequest.getTestIds());
         if (tests.size() != packageRequest.getTestIds().size()) {
@@ -129,6 +97,7 @@ public class HealthPackageController {
         // Save the health package to the database
         healthPackageRepository.save(healthPackage);
         labRepository.save(lab); // Ensure the lab entity updates the relationship
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.PACKAGES);
 
         // Return the success response with the created health package
         return ApiResponseHelper.successResponse(
@@ -142,42 +111,27 @@ public class HealthPackageController {
     @GetMapping("{labId}/package/{packageId}")
     public ResponseEntity<?> getHealthPackage(
             @PathVariable("labId") Long labId,
-            @PathVariable("packageId") Long packageId,
-            @RequestHeader("Authorization") String token
+            @PathVariable("packageId") Long packageId
     ) {
-        // Authenticate the user
-        User currentUser = userAuthService.authenticateUser(token)
-                .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Fetch the lab and check if it exists
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
 
-        // Check if the lab is active
-        boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-        if (isAccessible == false) {
-            return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-        }
-
-        // Verify if the current user is associated with the lab
-        if (!currentUser.getLabs().contains(lab)) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
-
         // Fetch the health package based on the provided package ID
         var healthPackageOptional = healthPackageRepository.findById(packageId);
 
         // Check if the health package exists
         if (healthPackageOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Health package not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.HEALTH_PACKAGE;
         }
 
         HealthPackage healthPackage = healthPackageOptional.get();
 
         // Check if the health package is associated with the lab
         if (!healthPackage.getLabs().contains(lab)) {
-            return ApiResponseHelper.errorResponse("Health package not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.HEALTH_PACKAGE;
         }
 
         // Return the success response with the fetched health package
@@ -193,42 +147,27 @@ public class HealthPackageController {
     public ResponseEntity<?> updateHealthPackage(
             @PathVariable("labId") Long labId,
             @PathVariable("packageId") Long packageId,
-            @RequestBody HealthPackageRequest packageRequest, // Assuming a DTO is used to accept the data
-            @RequestHeader("Authorization") String token
+            @RequestBody HealthPackageRequest packageRequest // Assuming a DTO is used to accept the data
     ) {
-        // Authenticate the user
-        User currentUser = userAuthService.authenticateUser(token)
-                .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Fetch the lab and check if it exists
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
 
-        // Check if the lab is active
-        boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-        if (isAccessible == false) {
-            return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-        }
-
-        // Verify if the current user is associated with the lab
-        if (!currentUser.getLabs().contains(lab)) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
-
         // Fetch the health package based on the provided package ID
         var healthPackageOptional = healthPackageRepository.findById(packageId);
 
         // Check if the health package exists
         if (healthPackageOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Health package not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.HEALTH_PACKAGE;
         }
 
         HealthPackage healthPackage = healthPackageOptional.get();
 
         // Check if the health package is associated with the lab
         if (!healthPackage.getLabs().contains(lab)) {
-            return ApiResponseHelper.errorResponse("Health package not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.HEALTH_PACKAGE;
         }
 
         // Fetch the health tests based on the provided test IDs
@@ -247,6 +186,10 @@ public class HealthPackageController {
         // Save the updated health package to the database
         healthPackageRepository.save(healthPackage);
 
+        // the package may be offered by other labs as well
+        healthPackageRepository.findLabIdsByPackageId(packageId)
+                .forEach(id -> catalogResponseCache.catalogChanged(id, CatalogResponseCache.PACKAGES));
+
         // Return the success response with the updated health package
         return ApiResponseHelper.successResponse(
                 "Health package updated successfully",
@@ -259,34 +202,19 @@ public class HealthPackageController {
     @DeleteMapping("{labId}/package/{packageId}")
     public ResponseEntity<?> deleteHealthPackage(
             @PathVariable("labId") Long labId,
-            @PathVariable("packageId") Long packageId,
-            @RequestHeader("Authorization") String token
+            @PathVariable("packageId") Long packageId
     ) {
-        // Authenticate the user
-        User currentUser = userAuthService.authenticateUser(token)
-                .orElseThrow(() -> new RuntimeException("User not found"));
 
         // Fetch the lab and check if it exists
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
-
-        // Check if the lab is active
-        boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-        if (isAccessible == false) {
-            return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-        }
-
-        // Verify if the current user is associated with the lab
-        if (!currentUser.getLabs().contains(lab)) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Fetch the health package based on the provided package ID
         var healthPackageOptional = healthPackageRepository.findById(packageId);
 
         // Check if the health package exists
         if (healthPackageOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Health package not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.HEALTH_PACKAGE;
         }
 
         HealthPackage healthPackage = healthPackageOptional.get();
@@ -296,6 +224,9 @@ public class HealthPackageController {
             return ApiResponseHelper.errorResponse("Health package not associated with this lab", HttpStatus.NOT_FOUND);
         }
 
+        // the package is deleted, so every lab offering it gets a new catalog
+        List<Long> labIds = healthPackageRepository.findLabIdsByPackageId(packageId);
+
         // Remove the association of the health package with the lab
         lab.getHealthPackages().remove(healthPackage);
 
@@ -304,6 +235,7 @@ public class HealthPackageController {
 
         // Delete the health package from the database
         healthPackageRepository.delete(healthPackage);
+        labIds.forEach(id -> catalogResponseCache.catalogChanged(id, CatalogResponseCache.PACKAGES));
 
         // Return the success response
         return ApiResponseHelper.successResponse(
@@ -1,34 +1,28 @@
 package tiameds.com.tiameds.controller.lab;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tiameds.com.tiameds.dto.lab.InsuranceDTO;
-import tiameds.com.tiameds.entity.Lab;
-import tiameds.com.tiameds.entity.User;
-import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.services.lab.InsuranceServices;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
-import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
+import tiameds.com.tiameds.utils.RequireLabAccess;
 
 @RestController
+@RequireLabAccess
 @RequestMapping("/lab/admin/insurance")
 @Tag(name = "Insurance", description = "Endpoints for managing insurance admin can add insurance to a lab")
 public class InsuranceController {
 
     private final InsuranceServices insuranceServices;
-    private final UserAuthService userAuthService;
-    private final LabRepository labRepository;
-    private final LabAccessableFilter labAccessableFilter;
+    private final CatalogResponseCache catalogResponseCache;
 
 
-    public InsuranceController(InsuranceServices insuranceServices, UserAuthService userAuthService, LabRepository labRepository, LabAccessableFilter labAccessableFilter) {
+    public InsuranceController(InsuranceServices insuranceServices, CatalogResponseCache catalogResponseCache) {
         this.insuranceServices = insuranceServices;
-        this.userAuthService = userAuthService;
-        this.labRepository = labRepository;
-        this.labAccessableFilter = labAccessableFilter;
+        this.catalogResponseCache = catalogResponseCache;
     }
 
 
@@ -36,97 +30,31 @@ public class InsuranceController {
     @PostMapping("{labId}")
     public ResponseEntity<?> addInsurance(
             @PathVariable("labId") Long labId,
-            @RequestBody InsuranceDTO insuranceDTO,
-            @RequestHeader("Authorization") String token) {
-
-        try {
-            // Authenticate the user using the provided token
-            User currentUser = userAuthService.authenticateUser(token).orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Check if the lab exists in the repository
-            Lab lab = labRepository.findById(labId).orElseThrow(() -> new RuntimeException("Lab not found"));
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Verify if the current user is associated with the lab
-            if (!currentUser.getLabs().contains(lab)) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-            // Delegate to the service layer
-            insuranceServices.addInsurance(labId, insuranceDTO);
-
-            return ApiResponseHelper.successResponse("Insurance added successfully", insuranceDTO);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @RequestBody InsuranceDTO insuranceDTO) {
+
+        // Delegate to the service layer
+        insuranceServices.addInsurance(labId, insuranceDTO);
+
+        return ApiResponseHelper.successResponse("Insurance added successfully", insuranceDTO);
     }
 
     // get all insurance of a particular lab where labid and insuranceid are matched
     @GetMapping("{labId}")
     public ResponseEntity<?> getAllInsurance(
             @PathVariable("labId") Long labId,
-            @RequestHeader("Authorization") String token) {
-        try {
-            // Authenticate the user using the provided token
-            User currentUser = userAuthService.authenticateUser(token).orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Check if the lab exists in the repository
-            Lab lab = labRepository.findById(labId).orElseThrow(() -> new RuntimeException("Lab not found"));
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Verify if the current user is associated with the lab
-            if (!currentUser.getLabs().contains(lab)) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delegate to the service layer
-            return ApiResponseHelper.successResponse("Insurance retrieved successfully", insuranceServices.getAllInsurance(labId));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Served from the cached response bytes; the service is only asked when the lab's insurance changed
+        return catalogResponseCache.respond(labId, CatalogResponseCache.INSURANCE, ifNoneMatch, () ->
+                ApiResponseHelper.successResponse("Insurance retrieved successfully", insuranceServices.getAllInsurance(labId)).getBody());
     }
 
     // get insurance by id where labid and insuranceid are matched means insurance is associated with that lab only
     @GetMapping("{labId}/insurance/{insuranceId}")
     public ResponseEntity<?> getInsuranceById(
             @PathVariable("labId") Long labId,
-            @PathVariable("insuranceId") Long insuranceId,
-            @RequestHeader("Authorization") String token) {
-        try {
-            // Authenticate the user using the provided token
-            User currentUser = userAuthService.authenticateUser(token).orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Check if the lab exists in the repository
-            Lab lab = labRepository.findById(labId).orElseThrow(() -> new RuntimeException("Lab not found"));
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Verify if the current user is associated with the lab
-            if (!currentUser.getLabs().contains(lab)) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delegate to the service layer
-            return ApiResponseHelper.successResponse("Insurance retrieved successfully", insuranceServices.getInsuranceById(labId, insuranceId));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @PathVariable("insuranceId") Long insuranceId) {
+        // Delegate to the service layer
+        return ApiResponseHelper.successResponse("Insurance retrieved successfully", insuranceServices.getInsuranceById(labId, insuranceId));
     }
 
 
@@ -136,34 +64,11 @@ public class InsuranceController {
     public ResponseEntity<?> updateInsurance(
             @PathVariable("labId") Long labId,
             @PathVariable("insuranceId") Long insuranceId,
-            @RequestBody InsuranceDTO insuranceDTO,
-            @RequestHeader("Authorization") String token) {
-        try {
-            // Authenticate the user using the provided token
-            User currentUser = userAuthService.authenticateUser(token).orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Check if the lab exists in the repository
-            Lab lab = labRepository.findById(labId).orElseThrow(() -> new RuntimeException("Lab not found"));
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Verify if the current user is associated with the lab
-            if (!currentUser.getLabs().contains(lab)) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delegate to the service layer
-            insuranceServices.updateInsurance(labId, insuranceId, insuranceDTO);
-
-            return ApiResponseHelper.successResponse("Insurance updated successfully", insuranceDTO);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+            @RequestBody InsuranceDTO insuranceDTO) {
+        // Delegate to the service layer
+        insuranceServices.updateInsurance(labId, insuranceId, insuranceDTO);
+
+        return ApiResponseHelper.successResponse("Insurance updated successfully", insuranceDTO);
     }
 
 
@@ -171,35 +76,12 @@ public class InsuranceController {
     @DeleteMapping("{labId}/insurance/{insuranceId}")
     public ResponseEntity<?> deleteInsurance(
             @PathVariable("labId") Long labId,
-            @PathVariable("insuranceId") Long insuranceId,
-            @RequestHeader("Authorization") String token) {
-
-        try {
-            // Authenticate the user using the provided token
-            User currentUser = userAuthService.authenticateUser(token).orElseThrow(() -> new RuntimeException("User not found"));
-
-            // Check if the lab exists in the repository
-            Lab lab = labRepository.findById(labId).orElseThrow(() -> new RuntimeException("Lab not found"));
-
-            // Check if the lab is active
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Verify if the current user is associated with the lab
-            if (!currentUser.getLabs().contains(lab)) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delegate to the service layer
-            insuranceServices.deleteInsurance(labId, insuranceId);
+            @PathVariable("insuranceId") Long insuranceId) {
 
-            return ApiResponseHelper.successResponse("Insurance deleted successfully", null);
+        // Delegate to the service layer
+        insuranceServices.deleteInsurance(labId, insuranceId);
 
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        return ApiResponseHelper.successResponse("Insurance deleted successfully", null);
     }
 
 
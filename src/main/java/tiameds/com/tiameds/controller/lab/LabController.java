@@ -14,11 +14,11 @@ import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.services.lab.UserLabService;
 import tiameds.com.tiameds.utils.ApiResponse;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.CurrentUser;
 import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
 
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 
@@ -29,15 +29,13 @@ public class LabController {
 
     private final UserLabService userService;
     private final LabRepository labRepository;
-    private final UserAuthService userAuthService;
     private final LabAccessableFilter labAccessableFilter;
     private UserLabService userLabService;
 
 
-    public LabController(UserLabService userService, LabRepository labRepository, UserAuthService userAuthService, LabAccessableFilter labAccessableFilter, UserLabService userLabService) {
+    public LabController(UserLabService userService, LabRepository labRepository, LabAccessableFilter labAccessableFilter, UserLabService userLabService) {
         this.userService = userService;
         this.labRepository = labRepository;
-        this.userAuthService = userAuthService;
         this.labAccessableFilter = labAccessableFilter;
         this.userLabService = userLabService;
     }
@@ -47,17 +45,8 @@ public class LabController {
     // get all labs created by user
     @GetMapping("/get-labs")
     public ResponseEntity<?> getLabsCreatedByUser(
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        // Validate token format
-        Optional<User> currentUserOptional = userAuthService.authenticateUser(token);
-
-        // If user is not found, return unauthorized response
-        if (currentUserOptional.isEmpty()) {
-            return ApiResponseHelper.successResponseWithDataAndMessage("User not found", HttpStatus.UNAUTHORIZED, null);
-        }
-
-        User currentUser = currentUserOptional.get();
         // Fetch labs created by the user
         List<Lab> labs = labRepository.findByCreatedBy(currentUser);
 
@@ -90,16 +79,8 @@ public class LabController {
     @DeleteMapping("/delete-lab/{labId}")
     public ResponseEntity<?> deleteLab(
             @PathVariable Long labId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        // Validate token format
-        Optional<User> currentUserOptional = userAuthService.authenticateUser(token);
-        // If user is not found, return unauthorized response
-        if (currentUserOptional.isEmpty()) {
-            ApiResponse<String> errorResponse = new ApiResponse<>("error", "User not found", null);
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
-        }
-        User currentUser = currentUserOptional.get();
         // Fetch the lab to be deleted
         Optional<Lab> labOptional = labRepository.findById(labId);
 
@@ -112,13 +93,14 @@ public class LabController {
         Lab lab = labOptional.get();
 
         // Check if the lab is created by the current user
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             ApiResponse<String> errorResponse = new ApiResponse<>("error", "You are not authorized to delete this lab", null);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
         }
 
         // Delete the lab
         labRepository.delete(lab);
+        labAccessableFilter.labStatusChanged(labId, null);
 
         // Return success response
         return ApiResponseHelper.successResponseWithDataAndMessage("Lab deleted successfully", HttpStatus.OK, null);
@@ -129,16 +111,7 @@ public class LabController {
     public ResponseEntity<?> updateLab(
             @PathVariable Long labId,
             @RequestBody LabRequestDTO labRequestDTO,
-            @RequestHeader("Authorization") String token) {
-        // Validate token format
-        Optional<User> currentUserOptional = userAuthService.authenticateUser(token);
-        // If user is not found, return unauthorized response
-        if (currentUserOptional.isEmpty()) {
-            ApiResponse<String> errorResponse = new ApiResponse<>("error", "User not found", null);
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
-        }
-        User currentUser = currentUserOptional.get();
-
+            @CurrentUser User currentUser) {
         // Fetch the lab to be updated
         Optional<Lab> labOptional = labRepository.findById(labId);
 
@@ -151,7 +124,7 @@ public class LabController {
         Lab lab = labOptional.get();
 
         // Check if the lab is created by the current user
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             ApiResponse<String> errorResponse = new ApiResponse<>("error", "You are not authorized to update this lab", null);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
         }
@@ -163,6 +136,7 @@ public class LabController {
         lab.setState(labRequestDTO.getState());
         lab.setDescription(labRequestDTO.getDescription());
         labRepository.save(lab);
+        labAccessableFilter.labStatusChanged(labId, Boolean.TRUE.equals(lab.getIsActive()));
         // Return success response
 
         return ApiResponseHelper.successResponseWithDataAndMessage("Lab updated successfully", HttpStatus.OK, lab);
@@ -172,18 +146,9 @@ public class LabController {
 
     //
     @PostMapping("/add-lab")
-    public ResponseEntity<Map<String, Object>> addLab(
+    public ResponseEntity<?> addLab(
             @RequestBody LabRequestDTO labRequestDTO,
-            @RequestHeader("Authorization") String token) {
-
-        // Validate token format
-        Optional<User> currentUserOptional = userAuthService.authenticateUser(token);
-        if (currentUserOptional.isEmpty()) {
-            ApiResponse<String> response = new ApiResponse<>("error", "User not found", null);
-            return new ResponseEntity(response, HttpStatus.UNAUTHORIZED);
-        }
-
-        User currentUser = currentUserOptional.get();
+            @CurrentUser User currentUser) {
 
         // Check if the lab already exists
         if (userService.existsLabByName(labRequestDTO.getName())) {
@@ -201,6 +166,7 @@ public class LabController {
         lab.setIsActive(true);
         lab.setCreatedBy(currentUser);
         labRepository.save(lab);
+        labAccessableFilter.labStatusChanged(lab.getId(), true);
 
         // Create DTOs for response
         UserResponseDTO userResponseDTO = new UserResponseDTO(
@@ -222,24 +188,13 @@ public class LabController {
         );
 
         // Automatically add the current user as a member of the newly created lab
-        try {
-            addMemberToLab(lab.getId(), currentUser.getId(), token);  // Calling the logic to add the user as a member
-        } catch (Exception e) {
-            ApiResponse<String> response = new ApiResponse<>("error", "Failed to add user as member", null);
-            return new ResponseEntity(response, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        addMemberToLab(lab.getId(), currentUser.getId(), currentUser);  // Calling the logic to add the user as a member
 
         // Return success response
         return ApiResponseHelper.successResponseWithDataAndMessage("Lab created successfully and user added as a member", HttpStatus.OK, labResponseDTO);
     }
 
-    private void addMemberToLab(Long labId, Long userId, String token) {
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null) {
-            throw new IllegalStateException("User not found or unauthorized");
-        }
-
+    private void addMemberToLab(Long labId, Long userId, User currentUser) {
         // Check if the lab exists
         Lab lab = labRepository.findById(labId).orElse(null);
         if (lab == null) {
@@ -259,7 +214,7 @@ public class LabController {
         }
 
         // Check creator of the lab
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             throw new IllegalStateException("You are not authorized to add members to this lab");
         }
 
@@ -269,6 +224,7 @@ public class LabController {
         }
         lab.getMembers().add(userToAdd);
         labRepository.save(lab);
+        labAccessableFilter.evictMember(labId, userId);
     }
 
 
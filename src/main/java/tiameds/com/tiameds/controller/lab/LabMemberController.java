@@ -1,7 +1,6 @@
 package tiameds.com.tiameds.controller.lab;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
-import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -13,16 +12,18 @@ import tiameds.com.tiameds.dto.lab.UserInLabDTO;
 import tiameds.com.tiameds.entity.Lab;
 import tiameds.com.tiameds.entity.ModuleEntity;
 import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.repository.ModuleRepository;
 import tiameds.com.tiameds.services.auth.UserService;
 import tiameds.com.tiameds.services.lab.UserLabService;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.CurrentUser;
 import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -33,7 +34,6 @@ import java.util.stream.Collectors;
 public class LabMemberController {
 
     private UserLabService userLabService;
-    private UserAuthService userAuthService;
     private LabRepository labRepository;
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
@@ -43,14 +43,12 @@ public class LabMemberController {
     @Autowired
     public LabMemberController(
             UserLabService userLabService,
-            UserAuthService userAuthService,
             LabRepository labRepository, UserService userService,
             PasswordEncoder passwordEncoder,
             ModuleRepository moduleRepository,
             LabAccessableFilter labAccessableFilter
     ) {
         this.userLabService = userLabService;
-        this.userAuthService = userAuthService;
         this.labRepository = labRepository;
         this.userService = userService;
         this.passwordEncoder = passwordEncoder;
@@ -62,17 +60,13 @@ public class LabMemberController {
     public ResponseEntity<?> addMemberToLab(
             @PathVariable Long labId,
             @PathVariable Long userId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the lab exists
         Lab lab = labRepository.findById(labId).orElse(null);
         if (lab == null)
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.LAB;
 
 
         // Check if the lab is active
@@ -87,7 +81,7 @@ public class LabMemberController {
             return ApiResponseHelper.errorResponse("User to be added not found", HttpStatus.NOT_FOUND);
 
         //check createor of the lab
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to get members of this lab", HttpStatus.UNAUTHORIZED);
         }
         // Add the user to the lab's members
@@ -96,6 +90,7 @@ public class LabMemberController {
         }
         lab.getMembers().add(userToAdd);
         labRepository.save(lab);
+        labAccessableFilter.evictMember(labId, userId);
         return ApiResponseHelper.successResponse("User added to lab successfully", HttpStatus.OK);
     }
 
@@ -104,16 +99,12 @@ public class LabMemberController {
     @GetMapping("/get-members/{labId}")
     public ResponseEntity<?> getLabMembers(
             @PathVariable Long labId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null) {
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
-        }
 
         Lab lab = labRepository.findById(labId).orElse(null);
         if (lab == null) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.LAB;
         }
 
         // Check if the lab is active
@@ -122,7 +113,7 @@ public class LabMemberController {
             return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
         }
 
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to view members of this lab", HttpStatus.UNAUTHORIZED);
         }
 
@@ -146,15 +137,12 @@ public class LabMemberController {
     public ResponseEntity<?> removeMemberFromLab(
             @PathVariable Long labId,
             @PathVariable Long userId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         Lab lab = labRepository.findById(labId).orElse(null);
         if (lab == null)
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.LAB;
 
 
         // Check if the lab is active
@@ -169,7 +157,7 @@ public class LabMemberController {
 
 
         //check createor of the lab
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to remove members from this lab", HttpStatus.UNAUTHORIZED);
         }
 
@@ -179,6 +167,7 @@ public class LabMemberController {
 
         lab.getMembers().remove(userToRemove);
         labRepository.save(lab);
+        labAccessableFilter.evictMember(labId, userId);
         return ApiResponseHelper.successResponse("User removed from lab successfully", HttpStatus.OK);
     }
 
@@ -188,13 +177,9 @@ public class LabMemberController {
     public ResponseEntity<?> createUserInLab(
             @RequestBody RegisterRequest registerRequest,
             @PathVariable Long labId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the lab is active
         boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
@@ -220,11 +205,11 @@ public class LabMemberController {
         // Check if the lab exists
         Lab lab = labRepository.findById(labId).orElse(null);
         if (lab == null)
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.LAB;
 
 
         //check createor of the lab
-        if (!lab.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to create user in this lab", HttpStatus.UNAUTHORIZED);
         }
 
@@ -286,6 +271,7 @@ public class LabMemberController {
         }
         lab.getMembers().add(user);
         labRepository.save(lab);
+        labAccessableFilter.evictMember(labId, user.getId());
         return ApiResponseHelper.successResponse("User created and added to lab successfully", HttpStatus.OK);
     }
 
@@ -295,20 +281,16 @@ public class LabMemberController {
     public ResponseEntity<?> updateUserInLab(
             @RequestBody RegisterRequest registerRequest,
             @PathVariable Long userId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the user exists
         User userToUpdate = userLabService.getUserById(userId);
         if (userToUpdate == null)
-            return ApiResponseHelper.errorResponse("User not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.USER;
 
         //check createor of the lab
-        if (!userToUpdate.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(userToUpdate.getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to update this user", HttpStatus.UNAUTHORIZED);
         }
 
@@ -358,20 +340,16 @@ public class LabMemberController {
     @DeleteMapping("/delete-user/{userId}")
     public ResponseEntity<?> deleteUserInLab(
             @PathVariable Long userId,
-            @RequestHeader("Authorization") String token) {
+            @CurrentUser User currentUser) {
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the user exists
         User userToDelete = userLabService.getUserById(userId);
         if (userToDelete == null)
-            return ApiResponseHelper.errorResponse("User not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.USER;
 
         //check createor of the lab
-        if (!userToDelete.getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(userToDelete.getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to delete this user", HttpStatus.UNAUTHORIZED);
         }
 
@@ -390,6 +368,7 @@ public class LabMemberController {
         }
         // Delete the user
         userService.deleteUser(userToDelete.getId());
+        labAccessableFilter.evictUser(userToDelete.getId());
 
         return ApiResponseHelper.successResponse("User deleted successfully", HttpStatus.OK);
 
@@ -403,18 +382,14 @@ public class LabMemberController {
     public ResponseEntity<?> assignRole(
             @PathVariable Long userId,
             @PathVariable Long roleId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser User currentUser
     ) {
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the user exists
         User user = userLabService.getUserById(userId);
         if (user == null)
-            return ApiResponseHelper.errorResponse("User not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.USER;
 
 
         //check user is member of the lab or not
@@ -424,19 +399,13 @@ public class LabMemberController {
         }
 
         //check createor of the lab
-        if (!lab.get().getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.get().getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to assign role to this user", HttpStatus.UNAUTHORIZED);
         }
 
-        //assign role to user
-        try {
-            User updatedUser = userService.assignRole(userId, Math.toIntExact(roleId));
-            return ApiResponseHelper.successResponse("Role assigned successfully", updatedUser);
-        } catch (EntityNotFoundException e) {
-            return ApiResponseHelper.errorResponse("User or Role not found", HttpStatus.NOT_FOUND);
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse("An error occurred while assigning the role", HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        //assign role to user, an unknown user or role or a role change that does not apply is answered by the exception handler
+        User updatedUser = userService.assignRole(userId, Math.toIntExact(roleId));
+        return ApiResponseHelper.successResponse("Role assigned successfully", updatedUser);
     }
 
 
@@ -445,18 +414,14 @@ public class LabMemberController {
     public ResponseEntity<?> removeRole(
             @PathVariable Long userId,
             @PathVariable Long roleId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser User currentUser
     ) {
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the user exists
         User user = userLabService.getUserById(userId);
         if (user == null)
-            return ApiResponseHelper.errorResponse("User not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.USER;
 
         //check user is member of the lab or not
         Optional<Lab> lab = labRepository.findByMembers(user);
@@ -465,19 +430,13 @@ public class LabMemberController {
         }
 
         //check createor of the lab
-        if (!lab.get().getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.get().getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to remove role from this user", HttpStatus.UNAUTHORIZED);
         }
 
-        //remove role from user
-        try {
-            User updatedUser = userService.removeRole(userId, Math.toIntExact(roleId));
-            return ApiResponseHelper.successResponse("Role removed successfully", updatedUser);
-        } catch (EntityNotFoundException e) {
-            return ApiResponseHelper.errorResponse("User or Role not found", HttpStatus.NOT_FOUND);
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse("An error occurred while removing the role", HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        //remove role from user, an unknown user or role or a role change that does not apply is answered by the exception handler
+        User updatedUser = userService.removeRole(userId, Math.toIntExact(roleId));
+        return ApiResponseHelper.successResponse("Role removed successfully", updatedUser);
     }
 
 
@@ -485,18 +444,14 @@ public class LabMemberController {
     @GetMapping("/get-user/{userId}")
     public ResponseEntity<?> getUser(
             @PathVariable Long userId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser User currentUser
     ) {
 
-        // Check if the user is authenticated
-        User currentUser = userAuthService.authenticateUser(token).orElse(null);
-        if (currentUser == null)
-            return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
         // Check if the user exists
         User user = userLabService.getUserById(userId);
         if (user == null)
-            return ApiResponseHelper.errorResponse("User not found", HttpStatus.NOT_FOUND);
+            throw NotFoundException.USER;
 
         //check user is member of the lab or not
         Optional<Lab> lab = labRepository.findByMembers(user);
@@ -505,7 +460,7 @@ public class LabMemberController {
         }
 
         //check createor of the lab
-        if (!lab.get().getCreatedBy().equals(currentUser)) {
+        if (!Objects.equals(lab.get().getCreatedBy().getId(), currentUser.getId())) {
             return ApiResponseHelper.errorResponse("You are not authorized to get this user", HttpStatus.UNAUTHORIZED);
         }
 
@@ -517,13 +472,9 @@ public class LabMemberController {
 //    //get the list of lab of current user
 @GetMapping("get-user-labs")
 public ResponseEntity<?> getUserLabs(
-        @RequestHeader("Authorization") String token
+        @CurrentUser User currentUser
 ) {
 
-    // Check if the user is authenticated
-    User currentUser = userAuthService.authenticateUser(token).orElse(null);
-    if (currentUser == null)
-        return ApiResponseHelper.errorResponse("User not found or unauthorized", HttpStatus.UNAUTHORIZED);
 
     Set<Lab> labs = labRepository.findLabsByUserId(currentUser.getId());
 
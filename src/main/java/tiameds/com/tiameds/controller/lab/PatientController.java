@@ -1,37 +1,35 @@
 package tiameds.com.tiameds.controller.lab;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tiameds.com.tiameds.dto.lab.PatientDTO;
 import tiameds.com.tiameds.entity.Lab;
-import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.LabRepository;
+import tiameds.com.tiameds.services.lab.CsvExportService;
 import tiameds.com.tiameds.services.lab.PatientService;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
-import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
-
-import java.util.Optional;
+import tiameds.com.tiameds.utils.RequireLabAccess;
 
 
 @RestController
+@RequireLabAccess
 @RequestMapping("/lab")
 @Tag(name = "Patient Controller", description = "Endpoints for managing patients in a lab")
 public class PatientController {
 
     private final PatientService patientService;
-    private final UserAuthService userAuthService;
     private final LabRepository labRepository;
-    private final LabAccessableFilter labAccessableFilter;
+    private final CsvExportService csvExportService;
 
 
-    public PatientController(PatientService patientService, UserAuthService userAuthService, LabRepository labRepository, LabAccessableFilter labAccessableFilter) {
+    public PatientController(PatientService patientService, LabRepository labRepository, CsvExportService csvExportService) {
         this.patientService = patientService;
-        this.userAuthService = userAuthService;
         this.labRepository = labRepository;
-        this.labAccessableFilter = labAccessableFilter;
+        this.csvExportService = csvExportService;
     }
 
     // Add your code here
@@ -40,83 +38,34 @@ public class PatientController {
     @PostMapping("/{labId}/add-patient")
     public ResponseEntity<?> addPatient(
             @PathVariable Long labId,
-            @RequestHeader("Authorization") String token,
             @RequestBody PatientDTO patientDTO
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab exists
-            Optional<Lab> labOptional = labRepository.findById(labId);
-            if (labOptional.isEmpty()) {
-                return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the user is a member of the lab
-            if (!currentUser.get().getLabs().contains(labOptional.get())) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the patient already exists by phone
-            if (patientService.existsByPhone(patientDTO.getPhone())) {
-                return ApiResponseHelper.errorResponse("Patient with this phone number already exists", HttpStatus.BAD_REQUEST);
-            }
-
-            // Add patient
-            patientService.savePatientWithDetails(labOptional.get(), patientDTO);
-
-            return ApiResponseHelper.successResponse("Patient added successfully", HttpStatus.CREATED);
-
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        // Add patient, the lab was checked by the access gate so a reference is enough; a patient with the same phone is rejected
+        patientService.savePatientWithDetails(labRepository.getReferenceById(labId), patientDTO);
+
+        return ApiResponseHelper.successResponse("Patient added successfully", HttpStatus.CREATED);
     }
 
 
     //get all patients
     @GetMapping("/{labId}/patients")
     public ResponseEntity<?> getAllPatients(
+            @PathVariable Long labId
+    ) {
+        return ResponseEntity.ok(patientService.getAllPatientsByLabId(labId));
+    }
+
+
+    // download the lab's patients as CSV, gzip encoded if the client accepts it
+    @GetMapping("/{labId}/patients/download")
+    public ResponseEntity<?> downloadPatients(
             @PathVariable Long labId,
-            @RequestHeader("Authorization") String token
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab exists
-            Optional<Lab> labOptional = labRepository.findById(labId);
-            if (labOptional.isEmpty()) {
-                return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the user is a member of the lab
-            if (!currentUser.get().getLabs().contains(labOptional.get())) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            return ResponseEntity.ok(patientService.getAllPatientsByLabId(labId));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        Lab lab = labRepository.findById(labId)
+                .orElseThrow(() -> NotFoundException.LAB);
+
+        return csvExportService.exportPatients(labId, lab.getName(), CsvExportService.acceptsGzip(acceptEncoding));
     }
 
 
@@ -124,40 +73,12 @@ public class PatientController {
     @GetMapping("/{labId}/patient/{patientId}")
     public ResponseEntity<?> getPatientById(
             @PathVariable Long labId,
-            @PathVariable Long patientId,
-            @RequestHeader("Authorization") String token
+            @PathVariable Long patientId
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
+        //check if the patient exists on the lab
 
-            // Check if the lab exists
-            Optional<Lab> labOptional = labRepository.findById(labId);
-            if (labOptional.isEmpty()) {
-                return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-            }
 
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the user is a member of the lab
-            if (!currentUser.get().getLabs().contains(labOptional.get())) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            //check if the patient exists on the lab
-
-
-            return ResponseEntity.ok(patientService.getPatientById(patientId, labId));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        return ResponseEntity.ok(patientService.getPatientById(patientId, labId));
     }
 
 
@@ -166,40 +87,12 @@ public class PatientController {
     public ResponseEntity<?> updatePatient(
             @PathVariable Long labId,
             @PathVariable Long patientId,
-            @RequestHeader("Authorization") String token,
             @RequestBody PatientDTO patientDTO
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab exists
-            Optional<Lab> labOptional = labRepository.findById(labId);
-            if (labOptional.isEmpty()) {
-                return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the user is a member of the lab
-            if (!currentUser.get().getLabs().contains(labOptional.get())) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            //service to update the patient
-            patientService.updatePatient(patientId, labId, patientDTO);
-
-            return ApiResponseHelper.successResponse("Patient updated successfully", HttpStatus.OK);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        //service to update the patient
+        patientService.updatePatient(patientId, labId, patientDTO);
+
+        return ApiResponseHelper.successResponse("Patient updated successfully", HttpStatus.OK);
     }
 
 
@@ -207,40 +100,12 @@ public class PatientController {
     @DeleteMapping("/{labId}/delete-patient/{patientId}")
     public ResponseEntity<?> deletePatient(
             @PathVariable Long labId,
-            @PathVariable Long patientId,
-            @RequestHeader("Authorization") String token
+            @PathVariable Long patientId
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the lab exists
-            Optional<Lab> labOptional = labRepository.findById(labId);
-            if (labOptional.isEmpty()) {
-                return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Check if the user is a member of the lab
-            if (!currentUser.get().getLabs().contains(labOptional.get())) {
-                return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-            }
-
-            //service to delete the patient
-            patientService.deletePatient(patientId, labId);
-
-            return ApiResponseHelper.successResponse("Patient deleted successfully", HttpStatus.OK);
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.BAD_REQUEST);
-        }
+        //service to delete the patient
+        patientService.deletePatient(patientId, labId);
+
+        return ApiResponseHelper.successResponse("Patient deleted successfully", HttpStatus.OK);
     }
 
 
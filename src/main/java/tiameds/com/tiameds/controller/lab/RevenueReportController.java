@@ -0,0 +1,70 @@
+package tiameds.com.tiameds.controller.lab;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tiameds.com.tiameds.services.lab.RevenueRollupService;
+import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.RequireLabAccess;
+
+import java.time.LocalDate;
+
+@RestController
+@RequireLabAccess
+@RequestMapping("/lab")
+@Tag(name = "Revenue Report Controller", description = "Revenue reports of the lab, read from the daily rollup")
+public class RevenueReportController {
+
+    private final RevenueRollupService revenueRollupService;
+
+    public RevenueReportController(RevenueRollupService revenueRollupService) {
+        this.revenueRollupService = revenueRollupService;
+    }
+
+    // revenue per day, the last 30 days unless a range is given
+    @GetMapping("/{labId}/reports/revenue/daily")
+    public ResponseEntity<?> getDailyRevenue(
+            @PathVariable("labId") Long labId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end)) {
+            return ApiResponseHelper.errorResponse("from must not be after to", HttpStatus.BAD_REQUEST);
+        }
+        return ApiResponseHelper.successResponse("Daily revenue fetched successfully",
+                revenueRollupService.getDailyRevenue(labId, start, end));
+    }
+
+    // revenue per month, the last 12 months unless a range is given
+    @GetMapping("/{labId}/reports/revenue/monthly")
+    public ResponseEntity<?> getMonthlyRevenue(
+            @PathVariable("labId") Long labId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusMonths(11).withDayOfMonth(1);
+        if (start.isAfter(end)) {
+            return ApiResponseHelper.errorResponse("from must not be after to", HttpStatus.BAD_REQUEST);
+        }
+        return ApiResponseHelper.successResponse("Monthly revenue fetched successfully",
+                revenueRollupService.getMonthlyRevenue(labId, start, end));
+    }
+
+    // revenue per payment method, the last 30 days unless a range is given
+    @GetMapping("/{labId}/reports/revenue/payment-methods")
+    public ResponseEntity<?> getRevenueByPaymentMethod(
+            @PathVariable("labId") Long labId,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end)) {
+            return ApiResponseHelper.errorResponse("from must not be after to", HttpStatus.BAD_REQUEST);
+        }
+        return ApiResponseHelper.successResponse("Revenue by payment method fetched successfully",
+                revenueRollupService.getRevenueByPaymentMethod(labId, start, end));
+    }
+}
@@ -1,35 +1,44 @@
 package tiameds.com.tiameds.controller.lab;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tiameds.com.tiameds.dto.lab.VisitDTO;
+import tiameds.com.tiameds.dto.lab.VisitFilterDTO;
+import tiameds.com.tiameds.entity.Lab;
 import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.NotFoundException;
+import tiameds.com.tiameds.exception.UnauthorizedException;
+import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.services.lab.BillingService;
+import tiameds.com.tiameds.services.lab.CsvExportService;
 import tiameds.com.tiameds.services.lab.VisitService;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
-import tiameds.com.tiameds.utils.LabAccessableFilter;
-import tiameds.com.tiameds.utils.UserAuthService;
+import tiameds.com.tiameds.utils.CurrentUser;
+import tiameds.com.tiameds.utils.RequireLabAccess;
+import tiameds.com.tiameds.utils.SqlBudget;
 
 import java.util.Optional;
 
 
 @RestController
+@RequireLabAccess
 @RequestMapping("/lab")
 @Tag(name = "Visit Controller", description = "mannage the patient visit in the repective controller")
 public class VisitController {
 
 
     private final VisitService visitService;
-    private final UserAuthService userAuthService;
-    private final LabAccessableFilter labAccessableFilter;
+    private final LabRepository labRepository;
+    private final CsvExportService csvExportService;
 
 
-    public VisitController(VisitService visitService, BillingService billingService, UserAuthService userAuthService, LabAccessableFilter labAccessableFilter) {
+    public VisitController(VisitService visitService, BillingService billingService, LabRepository labRepository, CsvExportService csvExportService) {
         this.visitService = visitService;
-        this.userAuthService = userAuthService;
-        this.labAccessableFilter = labAccessableFilter;
+        this.labRepository = labRepository;
+        this.csvExportService = csvExportService;
     }
 
 
@@ -39,55 +48,46 @@ public class VisitController {
             @PathVariable Long labId,
             @PathVariable Long patientId,
             @RequestBody VisitDTO visitDTO,
-            @RequestHeader("Authorization") String token
+            @CurrentUser Optional<User> currentUser
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Create the visit (save to DB)
-            visitService.addVisit(labId, patientId, visitDTO, currentUser);
+        if (currentUser.isEmpty()) {
+            throw UnauthorizedException.USER_NOT_FOUND;
+        }
 
-            return ApiResponseHelper.successResponse("Visit added successfully", HttpStatus.OK);
+        // Create the visit (save to DB)
+        visitService.addVisit(labId, patientId, visitDTO, currentUser);
 
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        return ApiResponseHelper.successResponse("Visit added successfully", HttpStatus.OK);
     }
 
 
-    // get list of patient visits of respective lab
+    // get list of patient visits of respective lab; principal and lab access lookups, the page, its read-model rows
     @GetMapping("/{labId}/visits")
+    @SqlBudget(statements = 5)
     public ResponseEntity<?> getVisits(
             @PathVariable Long labId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser Optional<User> currentUser,
+            VisitFilterDTO filter
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Get the list of visits
-            return ResponseEntity.ok(visitService.getVisits(labId, currentUser));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        if (currentUser.isEmpty()) {
+            throw UnauthorizedException.USER_NOT_FOUND;
         }
+
+        // Get one page of visits
+        return ResponseEntity.ok(visitService.getVisits(labId, currentUser, filter));
+    }
+
+
+    // download the lab's visits with their billing as CSV, gzip encoded if the client accepts it
+    @GetMapping("/{labId}/visits/download")
+    public ResponseEntity<?> downloadVisits(
+            @PathVariable Long labId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        Lab lab = labRepository.findById(labId)
+                .orElseThrow(() -> NotFoundException.LAB);
+
+        return csvExportService.exportVisits(labId, lab.getName(), CsvExportService.acceptsGzip(acceptEncoding));
     }
 
 
@@ -97,28 +97,16 @@ public class VisitController {
             @PathVariable Long labId,
             @PathVariable Long visitId,
             @RequestBody VisitDTO visitDTO,
-            @RequestHeader("Authorization") String token
+            @CurrentUser Optional<User> currentUser
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Update the visit
-            visitService.updateVisit(labId, visitId, visitDTO, currentUser);
+        if (currentUser.isEmpty()) {
+            throw UnauthorizedException.USER_NOT_FOUND;
+        }
 
-            return ApiResponseHelper.successResponse("Visit updated successfully", HttpStatus.OK);
+        // Update the visit
+        visitService.updateVisit(labId, visitId, visitDTO, currentUser);
 
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        return ApiResponseHelper.successResponse("Visit updated successfully", HttpStatus.OK);
     }
 
 
@@ -127,28 +115,16 @@ public class VisitController {
     public ResponseEntity<?> deleteVisit(
             @PathVariable Long labId,
             @PathVariable Long visitId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser Optional<User> currentUser
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Delete the visit
-            visitService.deleteVisit(labId, visitId, currentUser);
+        if (currentUser.isEmpty()) {
+            throw UnauthorizedException.USER_NOT_FOUND;
+        }
 
-            return ApiResponseHelper.successResponse("Visit deleted successfully", HttpStatus.OK);
+        // Delete the visit
+        visitService.deleteVisit(labId, visitId, currentUser);
 
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        return ApiResponseHelper.successResponse("Visit deleted successfully", HttpStatus.OK);
     }
 
 
@@ -157,26 +133,14 @@ public class VisitController {
     public ResponseEntity<?> getVisit(
             @PathVariable Long labId,
             @PathVariable Long visitId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser Optional<User> currentUser
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Get the visit details
-            return ResponseEntity.ok(visitService.getVisit(labId, visitId, currentUser));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        if (currentUser.isEmpty()) {
+            throw UnauthorizedException.USER_NOT_FOUND;
         }
+
+        // Get the visit details
+        return ResponseEntity.ok(visitService.getVisit(labId, visitId, currentUser));
     }
 
 
@@ -185,25 +149,13 @@ public class VisitController {
     public ResponseEntity<?> getVisitByPatient(
             @PathVariable Long labId,
             @PathVariable Long patientId,
-            @RequestHeader("Authorization") String token
+            @CurrentUser Optional<User> currentUser
     ) {
-        try {
-            // Validate token format
-            Optional<User> currentUser = userAuthService.authenticateUser(token);
-            if (currentUser.isEmpty()) {
-                return ApiResponseHelper.errorResponse("User not found", HttpStatus.UNAUTHORIZED);
-            }
-
-            boolean isAccessible = labAccessableFilter.isLabAccessible(labId);
-            if (isAccessible == false) {
-                return ApiResponseHelper.errorResponse("Lab is not accessible", HttpStatus.UNAUTHORIZED);
-            }
-
-            // Get the visit details
-            return ResponseEntity.ok(visitService.getVisitByPatient(labId, patientId, currentUser));
-
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        if (currentUser.isEmpty()) {
+            throw UnauthorizedException.USER_NOT_FOUND;
         }
+
+        // Get the visit details
+        return ResponseEntity.ok(visitService.getVisitByPatient(labId, patientId, currentUser));
     }
 }
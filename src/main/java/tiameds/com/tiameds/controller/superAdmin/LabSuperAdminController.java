@@ -4,7 +4,9 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import tiameds.com.tiameds.dto.lab.CacheRegionStatsDTO;
 import tiameds.com.tiameds.dto.lab.LabListDTO;
+import tiameds.com.tiameds.services.lab.RevenueRollupService;
 import tiameds.com.tiameds.services.superAdmin.LabSuperAdminService;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
 import tiameds.com.tiameds.utils.UserAuthService;
@@ -18,38 +20,44 @@ public class LabSuperAdminController {
 
     private final LabSuperAdminService labSuperAdminService;
     private final UserAuthService userAuthService;
+    private final RevenueRollupService revenueRollupService;
 
-    public LabSuperAdminController(LabSuperAdminService labSuperAdminService, UserAuthService userAuthService) {
+    public LabSuperAdminController(LabSuperAdminService labSuperAdminService, UserAuthService userAuthService, RevenueRollupService revenueRollupService) {
         this.labSuperAdminService = labSuperAdminService;
         this.userAuthService = userAuthService;
+        this.revenueRollupService = revenueRollupService;
     }
 
     @GetMapping("/labs")
     public ResponseEntity<?> getLabs(@RequestHeader("Authorization") String token) {
-        try {
-            // Retrieve the list of labs
-            List<LabListDTO> labs = labSuperAdminService.getLabs();
-            return ApiResponseHelper.successResponse("Labs retrieved successfully", labs);
-        }catch (Exception e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+        // Retrieve the list of labs
+        List<LabListDTO> labs = labSuperAdminService.getLabs();
+        return ApiResponseHelper.successResponse("Labs retrieved successfully", labs);
     }
 
     //allow lab to isActive or not
     @PutMapping("lab/{labId}/isActive")
     public ResponseEntity<?> updateLabStatus(@PathVariable long labId, @RequestBody LabListDTO labListDTO) {
-        try {
-            if (labListDTO.getIsActive() == null) {
-                return ApiResponseHelper.errorResponse("isActive field is required", HttpStatus.BAD_REQUEST);
-            }
-
-            labSuperAdminService.updateLabStatus(labId, labListDTO);
-            return ApiResponseHelper.successResponse("Lab status updated successfully", null);
-        } catch (RuntimeException e) {
-            return ApiResponseHelper.errorResponse(e.getMessage(), HttpStatus.NOT_FOUND);
-        } catch (Exception e) {
-            return ApiResponseHelper.errorResponse("Internal Server Error: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        if (labListDTO.getIsActive() == null) {
+            return ApiResponseHelper.errorResponse("isActive field is required", HttpStatus.BAD_REQUEST);
         }
+
+        labSuperAdminService.updateLabStatus(labId, labListDTO);
+        return ApiResponseHelper.successResponse("Lab status updated successfully", null);
+    }
+
+    // rebuild the revenue rollup of one lab, or of every lab when no lab is given
+    @PostMapping("revenue/rebuild")
+    public ResponseEntity<?> rebuildRevenueRollup(@RequestParam(value = "labId", required = false) Long labId) {
+        int rows = labId != null ? revenueRollupService.rebuildLab(labId) : revenueRollupService.rebuildAll();
+        return ApiResponseHelper.successResponse("Revenue rollup rebuilt successfully", rows);
+    }
+
+    // hit/miss counters of the second-level cache regions
+    @GetMapping("cache/second-level")
+    public ResponseEntity<?> getSecondLevelCacheStats() {
+        List<CacheRegionStatsDTO> stats = labSuperAdminService.getSecondLevelCacheStats();
+        return ApiResponseHelper.successResponse("Cache statistics retrieved successfully", stats);
     }
 
 }
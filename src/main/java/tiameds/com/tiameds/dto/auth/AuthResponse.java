@@ -1,5 +1,6 @@
 package tiameds.com.tiameds.dto.auth;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.http.HttpStatus;
@@ -11,5 +12,7 @@ public class AuthResponse {
     private HttpStatus status;
     private String message;
     private String token;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String refreshToken;  // only with claims tokens
     private LoginResponse data;
 }
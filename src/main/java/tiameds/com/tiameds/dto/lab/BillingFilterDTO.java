@@ -0,0 +1,27 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BillingFilterDTO {
+    private String paymentStatus; // PAID, UNPAID, PARTIAL
+    private String paymentMethod; // CASH, CARD, ONLINE
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from; // payment date, inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to; // payment date, inclusive
+    private BigDecimal minAmount; // net amount, inclusive
+    private BigDecimal maxAmount; // net amount, inclusive
+    private Long cursor; // nextCursor of the previous page, empty for the first page
+    private Integer size; // page size, defaults to 20, at most 100
+}
@@ -0,0 +1,18 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BillingPageDTO {
+    private List<BillingDTO> billings; // newest first
+    private Long nextCursor; // pass as cursor to get the next page, null on the last page
+    private boolean hasMore;
+}
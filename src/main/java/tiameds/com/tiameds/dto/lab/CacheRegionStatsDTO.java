@@ -0,0 +1,17 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheRegionStatsDTO {
+    private String region;
+    private long hits;
+    private long misses;
+    private long puts;
+    private long size; // entries currently held, -1 if the cache does not report it
+    private double hitRatio; // hits / (hits + misses), 0 before the first lookup
+}
@@ -0,0 +1,29 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CsvImportReportDTO {
+    private int totalRows; // data rows read, header excluded
+    private int imported;
+    private int duplicates; // rows whose name already exists in the lab or earlier in the file
+    private int failed; // rows rejected by validation or by the database
+    private List<RowError> errors = new ArrayList<>(); // at most the first few hundred problems
+    private boolean errorsTruncated;
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private long line; // line in the file the row ends on, the header being line 1
+        private String message;
+    }
+}
@@ -0,0 +1,24 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class RevenueReportDTO {
+    private String period; // yyyy-MM-dd, yyyy-MM or the payment method, depending on the report
+    private long billingCount;
+    private BigDecimal totalAmount; // gross, before taxes and discount
+    private BigDecimal discount;
+    private BigDecimal gstAmount;
+    private BigDecimal cgstAmount;
+    private BigDecimal sgstAmount;
+    private BigDecimal igstAmount;
+    private BigDecimal netAmount;
+}
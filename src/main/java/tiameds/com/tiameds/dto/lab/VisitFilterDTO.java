@@ -0,0 +1,25 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class VisitFilterDTO {
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from; // inclusive
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to; // inclusive
+    private String visitStatus; // ACTIVE, DISCHARGED, CANCELLED
+    private String visitType; // IN-PATIENT, OUT-PATIENT, EMERGENCY
+    private Long doctorId;
+    private String cursor; // nextCursor of the previous page, empty for the first page
+    private Integer size; // page size, defaults to 20, at most 100
+}
@@ -0,0 +1,45 @@
+package tiameds.com.tiameds.dto.lab;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat read model of a visit with its patient, doctor and billing, loaded in one query for visit listings.
+ */
+@Getter
+@AllArgsConstructor
+public class VisitRowDTO {
+    private Long visitId;
+    private LocalDate visitDate;
+    private String visitType;
+    private String visitStatus;
+    private String visitDescription;
+    private long doctorId;
+
+    private String firstName;
+    private String lastName;
+    private String email;
+    private String phone;
+    private String address;
+    private String city;
+    private String state;
+    private String zip;
+    private String bloodGroup;
+    private LocalDate dateOfBirth;
+
+    // billing columns are null when the visit has no billing
+    private BigDecimal totalAmount;
+    private String paymentStatus;
+    private String paymentMethod;
+    private String paymentDate;
+    private BigDecimal discount;
+    private BigDecimal gstRate;
+    private BigDecimal gstAmount;
+    private BigDecimal cgstAmount;
+    private BigDecimal sgstAmount;
+    private BigDecimal igstAmount;
+    private BigDecimal netAmount;
+}
@@ -1,5 +1,6 @@
 package tiameds.com.tiameds.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -16,14 +18,26 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "billing")
+@Table(name = "billing", indexes = {
+        // keyset pagination of a lab's billings, newest first, optionally narrowed by status; the payment date
+        // filter uses the expression index idx_billing_lab_revenue_date from migration V7
+        @Index(name = "idx_billing_lab_id", columnList = "lab_id, billing_id"),
+        @Index(name = "idx_billing_lab_status_id", columnList = "lab_id, payment_status, billing_id")
+})
 public class BillingEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "billing_seq")
+    @SequenceGenerator(name = "billing_seq", sequenceName = "billing_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "billing_id")
     private Long id;
 
+    // lab the billing belongs to, copied from its visit so a lab's billings can be queried directly
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lab_id")
+    @JsonIgnore
+    private Lab lab;
+
     @Column(name = "total_amount", nullable = false)
     private BigDecimal totalAmount; // Total amount before taxes and discount
 
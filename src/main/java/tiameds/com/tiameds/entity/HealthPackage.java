@@ -8,8 +8,12 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
+import tiameds.com.tiameds.config.SecondLevelCacheConfig;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -20,11 +24,13 @@ import java.util.Set;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.HEALTH_PACKAGES)
 @Table(name = "health_packages")
 public class HealthPackage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "health_packages_seq")
+    @SequenceGenerator(name = "health_packages_seq", sequenceName = "health_packages_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "package_id")
     private long id;
 
@@ -46,6 +52,7 @@ public class HealthPackage {
             inverseJoinColumns = @JoinColumn(name = "test_id")
     )
     @JsonManagedReference(value = "package-tests")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.PACKAGE_TESTS)
     private Set<Test> tests = new HashSet<>();
 
     @CreationTimestamp
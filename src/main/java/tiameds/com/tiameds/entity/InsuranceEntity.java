@@ -7,8 +7,12 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
+import tiameds.com.tiameds.config.SecondLevelCacheConfig;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -19,11 +23,13 @@ import java.util.Set;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.INSURANCE)
 @Table(name = "insurance")
 public class InsuranceEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "insurance_seq")
+    @SequenceGenerator(name = "insurance_seq", sequenceName = "insurance_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "insurance_id")
     private long id;
 
@@ -61,6 +67,7 @@ public class InsuranceEntity {
 
     @ManyToMany(mappedBy = "insurance", cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.EAGER)
     @JsonBackReference
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.INSURANCE_LABS)
     private Set<Lab> labs = new HashSet<>();
 
 
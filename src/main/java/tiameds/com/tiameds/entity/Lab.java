@@ -7,8 +7,12 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
+import tiameds.com.tiameds.config.SecondLevelCacheConfig;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -23,7 +27,8 @@ import java.util.Set;
 public class Lab {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "labs_seq")
+    @SequenceGenerator(name = "labs_seq", sequenceName = "labs_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "lab_id")
     private long id;
 
@@ -75,6 +80,7 @@ public class Lab {
             inverseJoinColumns = @JoinColumn(name = "test_id")
     )
     @JsonManagedReference
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.LAB_TESTS)
     private Set<Test> tests = new HashSet<>();
 
 
@@ -86,6 +92,7 @@ public class Lab {
             inverseJoinColumns = @JoinColumn(name = "package_id")
     )
     @JsonManagedReference(value = "package-labs")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.LAB_PACKAGES)
     private Set<HealthPackage> healthPackages = new HashSet<>();
 
 
@@ -107,6 +114,7 @@ public class Lab {
             inverseJoinColumns = @JoinColumn(name = "doctor_id")
     )
     @JsonManagedReference
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.LAB_DOCTORS)
     private Set<Doctors> doctors = new HashSet<>();
 
 
@@ -118,6 +126,7 @@ public class Lab {
             inverseJoinColumns = @JoinColumn(name = "insurance_id")
     )
     @JsonManagedReference
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.LAB_INSURANCE)
     private Set<InsuranceEntity> insurance = new HashSet<>();
 
 
@@ -0,0 +1,52 @@
+package tiameds.com.tiameds.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.Locale;
+
+/**
+ * Normalized name of one item (a test name, a doctor's email) in a lab's catalog. Tests and doctors are
+ * linked to labs through join tables, so their per-lab uniqueness is enforced here: the unique index
+ * rejects a second item with the same key in the same lab, and answers duplicate probes without loading
+ * the lab's catalog.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "lab_catalog_keys", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lab_catalog_keys_lab_catalog_key", columnNames = {"lab_id", "catalog", "name_key"})
+}, indexes = {
+        @Index(name = "idx_lab_catalog_keys_catalog_item", columnList = "catalog, item_id")
+})
+public class LabCatalogKey {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "catalog_key_id")
+    private Long id;
+
+    // no foreign key, so deleting a lab is not blocked by its keys
+    @Column(name = "lab_id", nullable = false)
+    private Long labId;
+
+    @Column(name = "catalog", nullable = false)
+    private String catalog;
+
+    @Column(name = "name_key", nullable = false)
+    private String nameKey;
+
+    // ID of the test or doctor
+    @Column(name = "item_id", nullable = false)
+    private Long itemId;
+
+    // names are compared trimmed and case-insensitively
+    public static String normalize(String name) {
+        return name == null ? null : name.trim().toLowerCase(Locale.ROOT);
+    }
+}
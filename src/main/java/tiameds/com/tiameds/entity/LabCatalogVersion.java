@@ -0,0 +1,38 @@
+package tiameds.com.tiameds.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Change counter of one catalog (tests, packages, doctors, insurance) of a lab. It is bumped in the
+ * transaction that changes the catalog and is the source of the catalog endpoints' ETags, so every
+ * instance hands out the same ETag for the same content.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "lab_catalog_versions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lab_catalog_versions_lab_catalog", columnNames = {"lab_id", "catalog"})
+})
+public class LabCatalogVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "catalog_version_id")
+    private Long id;
+
+    // no foreign key, so deleting a lab is not blocked by its counters
+    @Column(name = "lab_id", nullable = false)
+    private Long labId;
+
+    @Column(name = "catalog", nullable = false)
+    private String catalog;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+}
@@ -0,0 +1,66 @@
+package tiameds.com.tiameds.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Billing totals of one lab, day and payment method. Kept up to date by
+ * {@link tiameds.com.tiameds.services.lab.RevenueRollupService} whenever a billing is written.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "lab_revenue_daily", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_lab_revenue_daily_lab_date_method", columnNames = {"lab_id", "revenue_date", "payment_method"})
+})
+public class LabRevenueDaily {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "revenue_id")
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lab_id", nullable = false)
+    @JsonIgnore
+    private Lab lab;
+
+    @Column(name = "revenue_date", nullable = false)
+    private LocalDate revenueDate; // payment date of the billings
+
+    @Column(name = "payment_method", nullable = false)
+    private String paymentMethod; // CASH, CARD, ONLINE
+
+    @Column(name = "billing_count", nullable = false)
+    private long billingCount;
+
+    @Column(name = "total_amount", nullable = false)
+    private BigDecimal totalAmount; // gross, before taxes and discount
+
+    @Column(name = "discount", nullable = false)
+    private BigDecimal discount;
+
+    @Column(name = "gst_amount", nullable = false)
+    private BigDecimal gstAmount;
+
+    @Column(name = "cgst_amount", nullable = false)
+    private BigDecimal cgstAmount;
+
+    @Column(name = "sgst_amount", nullable = false)
+    private BigDecimal sgstAmount;
+
+    @Column(name = "igst_amount", nullable = false)
+    private BigDecimal igstAmount;
+
+    @Column(name = "net_amount", nullable = false)
+    private BigDecimal netAmount;
+}
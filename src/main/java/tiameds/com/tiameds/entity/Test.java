@@ -7,8 +7,12 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
+import tiameds.com.tiameds.config.SecondLevelCacheConfig;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -20,11 +24,13 @@ import java.util.Set;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.TESTS)
 @Table(name = "tests")
 public class Test {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tests_seq")
+    @SequenceGenerator(name = "tests_seq", sequenceName = "tests_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "test_id")
     private long id;
 
@@ -9,6 +9,7 @@ import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -24,7 +25,8 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "user_id")
     private Long id;
 
@@ -77,6 +79,10 @@ public class User {
     @UpdateTimestamp
     private LocalDateTime updatedAt;
 
+    // only written by UserRepository.incrementTokenVersion, so saving a loaded user cannot put an old value back
+    @Column(name = "token_version", nullable = false, insertable = false, updatable = false)
+    private long tokenVersion;
+
     @ManyToMany(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.EAGER)
     @JoinTable(name = "users_roles", joinColumns = @JoinColumn(name = "user_id"), inverseJoinColumns = @JoinColumn(name = "role_id"))
     private Set<Role> roles = new HashSet<>();
@@ -1,6 +1,7 @@
 package tiameds.com.tiameds.entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -9,6 +10,7 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tiameds.com.tiameds.config.IdSequences;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -20,11 +22,16 @@ import java.util.Set;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "patient_visits")
+@Table(name = "patient_visits", indexes = {
+        // keyset pagination of a lab's visits, newest first
+        @Index(name = "idx_patient_visits_lab_date_id", columnList = "lab_id, visit_date, visit_id"),
+        @Index(name = "idx_patient_visits_lab_doctor_date_id", columnList = "lab_id, doctor_id, visit_date, visit_id")
+})
 public class VisitEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "patient_visits_seq")
+    @SequenceGenerator(name = "patient_visits_seq", sequenceName = "patient_visits_seq", allocationSize = IdSequences.ALLOCATION_SIZE)
     @Column(name = "visit_id")
     private Long visitId;
 
@@ -44,6 +51,12 @@ public class VisitEntity {
     @JoinColumn(name = "patient_id", nullable = false)
     private PatientEntity patient;
 
+    // lab the visit was registered in, so a lab's visits can be listed without going through its patients
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lab_id")
+    @JsonIgnore
+    private Lab lab;
+
     @ManyToMany(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinTable(
             name = "patient_visit_tests",
@@ -0,0 +1,38 @@
+package tiameds.com.tiameds.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import tiameds.com.tiameds.utils.ApiResponse;
+import tiameds.com.tiameds.utils.ApiResponseHelper;
+
+/**
+ * A request the API refuses, answered by {@link GlobalExceptionHandler} with the usual error envelope and
+ * {@link #getStatus()}. Refusals are expected outcomes rather than bugs, so no stack trace is captured and
+ * the envelope is built once with the exception; the common ones are shared constants of the subclasses.
+ */
+public class ApiException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final ResponseEntity<ApiResponse<String>> response;
+
+    public ApiException(HttpStatus status, String message) {
+        this(status, message, HttpHeaders.EMPTY);
+    }
+
+    protected ApiException(HttpStatus status, String message, HttpHeaders headers) {
+        super(message, null, false, false);
+        this.status = status;
+        ResponseEntity<ApiResponse<String>> body = ApiResponseHelper.errorResponse(message, status);
+        this.response = new ResponseEntity<>(body.getBody(), headers, status);
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    // the headers of a built ResponseEntity are read-only, so the same instance can answer every request
+    public ResponseEntity<ApiResponse<String>> toResponse() {
+        return response;
+    }
+}
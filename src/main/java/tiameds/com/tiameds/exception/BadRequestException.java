@@ -0,0 +1,24 @@
+package tiameds.com.tiameds.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class BadRequestException extends ApiException {
+
+    public static final BadRequestException INVALID_LAB_ID = new BadRequestException("Invalid lab id");
+    public static final BadRequestException PATIENT_NOT_IN_LAB = new BadRequestException("Patient not belong to the lab");
+    public static final BadRequestException DOCTOR_NOT_IN_LAB = new BadRequestException("Doctor not belong to the lab");
+    public static final BadRequestException TEST_NOT_IN_LAB = new BadRequestException("Test not belong to the lab");
+    public static final BadRequestException PACKAGE_NOT_IN_LAB = new BadRequestException("Health package not belong to the lab");
+    public static final BadRequestException INSURANCE_NOT_IN_LAB = new BadRequestException("Insurance not belong to the lab");
+    public static final BadRequestException PATIENT_EXISTS = new BadRequestException("Patient with this phone number already exists");
+    public static final BadRequestException DOCTOR_EXISTS = new BadRequestException("Doctor already exists in this lab");
+    public static final BadRequestException TEST_NAME_REQUIRED = new BadRequestException("Test name is required");
+    public static final BadRequestException TEST_EXISTS = new BadRequestException("Test already exists in the lab");
+    public static final BadRequestException CSV_FILE_REQUIRED = new BadRequestException("Please upload a CSV file");
+    public static final BadRequestException MODULE_EXISTS = new BadRequestException("Module already exists");
+    public static final BadRequestException TOKEN_REFRESH_DISABLED = new BadRequestException("Token refresh is not enabled");
+
+    public BadRequestException(String message) {
+        super(HttpStatus.BAD_REQUEST, message);
+    }
+}
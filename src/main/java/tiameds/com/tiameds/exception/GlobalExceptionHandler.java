@@ -0,0 +1,62 @@
+package tiameds.com.tiameds.exception;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
+import tiameds.com.tiameds.utils.ApiResponse;
+import tiameds.com.tiameds.utils.ApiResponseHelper;
+
+/**
+ * Turns exceptions escaping the controllers, and the lab access check, into the error envelope.
+ * {@link ApiException}s answer with their pre-built response; Spring MVC's own exceptions (bad path
+ * variables, unreadable bodies, unsupported methods) keep their status but get the envelope instead of a
+ * problem detail; anything else is logged and answered with a 500 that does not leak its message.
+ */
+@Slf4j
+@RestControllerAdvice
+public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
+
+    @ExceptionHandler(ApiException.class)
+    public ResponseEntity<ApiResponse<String>> handleApiException(ApiException e) {
+        return e.toResponse();
+    }
+
+    // the app's own validation throws BadRequestException; these come from libraries and may carry internals
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ApiResponse<String>> handleIllegalArgument(IllegalArgumentException e, HttpServletRequest request) {
+        log.warn("Illegal argument for {} {}", request.getMethod(), request.getRequestURI(), e);
+        return ApiResponseHelper.errorResponse("Invalid request", HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ApiResponse<String>> handleUnexpected(Exception e, HttpServletRequest request,
+                                                                HttpServletResponse response) throws Exception {
+        if (response.isCommitted()) {
+            // a streamed download failed half way, or the client went away; nothing can be sent anymore
+            throw e;
+        }
+        log.error("Unhandled exception for {} {}", request.getMethod(), request.getRequestURI(), e);
+        return ApiResponseHelper.errorResponse("Internal server error", HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Override
+    protected ResponseEntity<Object> handleExceptionInternal(Exception e, Object body, HttpHeaders headers,
+                                                             HttpStatusCode statusCode, WebRequest request) {
+        if (request instanceof ServletWebRequest servletRequest && servletRequest.getResponse() != null
+                && servletRequest.getResponse().isCommitted()) {
+            return null;
+        }
+        HttpStatus status = HttpStatus.resolve(statusCode.value());
+        String message = status != null ? status.getReasonPhrase() : e.getMessage();
+        return ResponseEntity.status(statusCode).headers(headers).body(new ApiResponse<>(ApiResponse.ERROR, message, null));
+    }
+}
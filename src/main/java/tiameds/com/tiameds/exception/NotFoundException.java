@@ -0,0 +1,21 @@
+package tiameds.com.tiameds.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class NotFoundException extends ApiException {
+
+    public static final NotFoundException LAB = new NotFoundException("Lab not found");
+    public static final NotFoundException USER = new NotFoundException("User not found");
+    public static final NotFoundException PATIENT = new NotFoundException("Patient not found");
+    public static final NotFoundException LAB_PATIENT = new NotFoundException("Patient not found for the specified lab");
+    public static final NotFoundException DOCTOR = new NotFoundException("Doctor not found");
+    public static final NotFoundException LAB_DOCTOR = new NotFoundException("Doctor not found in this lab");
+    public static final NotFoundException INSURANCE = new NotFoundException("Insurance not found");
+    public static final NotFoundException HEALTH_PACKAGE = new NotFoundException("Health package not found");
+    public static final NotFoundException TEST = new NotFoundException("Test not found");
+    public static final NotFoundException LAB_VISIT = new NotFoundException("Visit not found or does not belong to the lab");
+
+    public NotFoundException(String message) {
+        super(HttpStatus.NOT_FOUND, message);
+    }
+}
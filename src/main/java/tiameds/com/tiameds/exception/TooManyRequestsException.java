@@ -0,0 +1,23 @@
+package tiameds.com.tiameds.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+public class TooManyRequestsException extends ApiException {
+
+    public static final TooManyRequestsException PASSWORD_HASHING_BUSY =
+            new TooManyRequestsException("Server is busy, please try again shortly", 1);
+
+    public static final TooManyRequestsException CSV_EXPORTS_BUSY =
+            new TooManyRequestsException("Too many exports are running, please try again shortly", 10);
+
+    public TooManyRequestsException(String message, int retryAfterSeconds) {
+        super(HttpStatus.TOO_MANY_REQUESTS, message, retryAfter(retryAfterSeconds));
+    }
+
+    private static HttpHeaders retryAfter(int seconds) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        return HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+}
@@ -0,0 +1,15 @@
+package tiameds.com.tiameds.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class UnauthorizedException extends ApiException {
+
+    public static final UnauthorizedException USER = new UnauthorizedException("User not found or unauthorized");
+    public static final UnauthorizedException USER_NOT_FOUND = new UnauthorizedException("User not found");
+    public static final UnauthorizedException NOT_MEMBER = new UnauthorizedException("User is not a member of this lab");
+    public static final UnauthorizedException INVALID_REFRESH_TOKEN = new UnauthorizedException("Invalid or expired refresh token");
+
+    public UnauthorizedException(String message) {
+        super(HttpStatus.UNAUTHORIZED, message);
+    }
+}
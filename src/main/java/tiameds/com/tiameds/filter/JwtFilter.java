@@ -1,22 +1,29 @@
 package tiameds.com.tiameds.filter;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import tiameds.com.tiameds.services.auth.TokenPrincipal;
+import tiameds.com.tiameds.services.auth.TokenVersions;
 import tiameds.com.tiameds.utils.JwtUtil;
 
 
 import java.io.IOException;
 
+@Slf4j
 @Component
 public class JwtFilter extends OncePerRequestFilter {
 
@@ -26,27 +33,42 @@ public class JwtFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenVersions tokenVersions;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
         String authorizationHeader = request.getHeader("Authorization");
-        String username = null;
-        String jwt = null;
-        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
-            username = jwtUtil.extractUsername(jwt);
-        }
-        if (username != null) {
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            if (jwtUtil.validateToken(jwt)) {
-                UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(auth);
+        if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")
+                && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Verify the token once; the resolved principal is reused by the controllers for the rest of the request
+            Claims claims = null;
+            try {
+                claims = jwtUtil.parseToken(authorizationHeader.substring(7));
+            } catch (JwtException | IllegalArgumentException e) {
+                log.debug("Rejected JWT: {}", e.getMessage());
+            }
+            if (claims != null && claims.getSubject() != null && !jwtUtil.isTokenExpired(claims) && !jwtUtil.isRefreshToken(claims)) {
+                // a claims token describes the user itself, unless its roles or labs changed since it was issued
+                TokenPrincipal principal = jwtUtil.toPrincipal(claims);
+                UsernamePasswordAuthenticationToken auth = null;
+                if (principal != null && tokenVersions.isCurrent(principal)) {
+                    auth = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+                } else {
+                    try {
+                        UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
+                        auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    } catch (UsernameNotFoundException e) {
+                        // the user was deleted after the token was issued; the request stays unauthenticated
+                        log.debug("Rejected JWT of unknown user: {}", e.getMessage());
+                    }
+                }
+                if (auth != null) {
+                    auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(auth);
+                }
             }
         }
         chain.doFilter(request, response);
     }
 }
-
-
-
-
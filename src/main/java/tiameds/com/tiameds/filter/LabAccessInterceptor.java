@@ -0,0 +1,93 @@
+package tiameds.com.tiameds.filter;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.UnauthorizedException;
+import tiameds.com.tiameds.services.auth.TokenPrincipal;
+import tiameds.com.tiameds.utils.LabAccess;
+import tiameds.com.tiameds.utils.LabAccessableFilter;
+import tiameds.com.tiameds.utils.RequireLabAccess;
+import tiameds.com.tiameds.utils.UserAuthService;
+
+import java.util.Map;
+
+/**
+ * Enforces {@link RequireLabAccess} before the handler runs. A missing or inactive lab, or a user that is not
+ * one of its members, ends the request with a shared {@link tiameds.com.tiameds.exception.ApiException}
+ * that {@link tiameds.com.tiameds.exception.GlobalExceptionHandler} answers with the usual error envelope.
+ */
+@Component
+public class LabAccessInterceptor implements HandlerInterceptor {
+
+    private final LabAccessableFilter labAccessableFilter;
+    private final UserAuthService userAuthService;
+
+    public LabAccessInterceptor(LabAccessableFilter labAccessableFilter, UserAuthService userAuthService) {
+        this.labAccessableFilter = labAccessableFilter;
+        this.userAuthService = userAuthService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // streamed responses come back here once done; access was checked on the initial dispatch
+            return true;
+        }
+        RequireLabAccess requireLabAccess = findAnnotation(handlerMethod);
+        if (requireLabAccess == null) {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String rawLabId = pathVariables == null ? null : pathVariables.get(requireLabAccess.value());
+        if (rawLabId == null) {
+            // endpoints without the path variable are not lab scoped
+            return true;
+        }
+
+        Long labId;
+        try {
+            labId = Long.valueOf(rawLabId);
+        } catch (NumberFormatException e) {
+            throw BadRequestException.INVALID_LAB_ID;
+        }
+
+        // a claims token lists the labs of the user, so the check needs neither the user nor the database
+        TokenPrincipal principal = userAuthService.getTokenPrincipal().orElse(null);
+        LabAccess access;
+        if (principal != null) {
+            access = labAccessableFilter.checkAccess(labId, principal);
+        } else {
+            User currentUser = userAuthService.getCurrentUser().orElse(null);
+            if (currentUser == null) {
+                throw UnauthorizedException.USER;
+            }
+            access = labAccessableFilter.checkAccess(labId, currentUser);
+        }
+        if (!access.isGranted()) {
+            throw access.getException();
+        }
+        return true;
+    }
+
+    private RequireLabAccess findAnnotation(HandlerMethod handlerMethod) {
+        RequireLabAccess annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RequireLabAccess.class);
+        if (annotation == null) {
+            annotation = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getBeanType(), RequireLabAccess.class);
+        }
+        return annotation;
+    }
+}
@@ -0,0 +1,158 @@
+package tiameds.com.tiameds.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import tiameds.com.tiameds.utils.SqlBudget;
+import tiameds.com.tiameds.utils.SqlStatementStats;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements, rows and database time of every request and records them per endpoint as
+ * {@code http.server.requests.sql.*} metrics. Requests over the {@link SqlBudget} of their handler are
+ * logged and counted. With {@code spring.sql-stats.headers} the numbers are also sent as
+ * {@code X-SQL-Statements}, {@code X-SQL-Rows} and {@code X-SQL-Time-Ms}, taken when the response body
+ * starts, so statements run while the body is written only show in the metrics.
+ * <p>
+ * Runs before the security filters, so the principal lookup is part of the count. Registered together with
+ * the counting DataSource proxy of {@link tiameds.com.tiameds.config.SqlStatsConfig}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "spring.sql-stats.enabled")
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlStatementFilter extends OncePerRequestFilter {
+
+    public static final String STATS_ATTRIBUTE = SqlStatementFilter.class.getName() + ".stats";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean headers;
+
+    public SqlStatementFilter(ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${spring.sql-stats.headers:false}") boolean headers) {
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.headers = headers;
+    }
+
+    /**
+     * @return the budget declared on the handler of the request, or null if it has none
+     */
+    public static SqlBudget budgetOf(HttpServletRequest request) {
+        Object handler = request.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE);
+        return handler instanceof HandlerMethod handlerMethod ? handlerMethod.getMethodAnnotation(SqlBudget.class) : null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        SqlStatementStats stats = SqlStatementStats.begin();
+        request.setAttribute(STATS_ATTRIBUTE, stats);
+        StatsHeaderResponse headerResponse = headers ? new StatsHeaderResponse(response, stats) : null;
+        try {
+            chain.doFilter(request, headerResponse != null ? headerResponse : response);
+        } finally {
+            SqlStatementStats.end();
+            if (headerResponse != null) {
+                headerResponse.writeHeaders();
+            }
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatementStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", pattern != null ? pattern.toString() : "UNKNOWN");
+
+        DistributionSummary.builder("http.server.requests.sql.statements").baseUnit("statements").tags(tags)
+                .register(meterRegistry).record(stats.getStatements());
+        DistributionSummary.builder("http.server.requests.sql.rows").baseUnit("rows").tags(tags)
+                .register(meterRegistry).record(stats.getRows());
+        Timer.builder("http.server.requests.sql.time").tags(tags)
+                .register(meterRegistry).record(stats.getNanos(), TimeUnit.NANOSECONDS);
+
+        SqlBudget budget = budgetOf(request);
+        if (budget != null && stats.getStatements() > budget.statements()) {
+            Counter.builder("http.server.requests.sql.budget.exceeded").tags(tags).register(meterRegistry).increment();
+            log.warn("{} {} ran {} SQL statements, over its budget of {}",
+                    request.getMethod(), pattern, stats.getStatements(), budget.statements());
+        }
+    }
+
+    private static class StatsHeaderResponse extends HttpServletResponseWrapper {
+
+        private final SqlStatementStats stats;
+        private boolean written;
+
+        StatsHeaderResponse(HttpServletResponse response, SqlStatementStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeaders() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            setHeader("X-SQL-Statements", String.valueOf(stats.getStatements()));
+            setHeader("X-SQL-Rows", String.valueOf(stats.getRows()));
+            setHeader("X-SQL-Time-Ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(stats.getNanos())));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeaders();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeaders();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeaders();
+            super.sendRedirect(location);
+        }
+    }
+}
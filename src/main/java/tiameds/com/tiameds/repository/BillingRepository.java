@@ -1,9 +1,8 @@
 package tiameds.com.tiameds.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import tiameds.com.tiameds.entity.BillingEntity;
 
-public interface BillingRepository extends JpaRepository<BillingEntity, Long> {
-
-
+public interface BillingRepository extends JpaRepository<BillingEntity, Long>, JpaSpecificationExecutor<BillingEntity> {
 }
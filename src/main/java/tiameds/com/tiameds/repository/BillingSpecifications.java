@@ -0,0 +1,59 @@
+package tiameds.com.tiameds.repository;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import tiameds.com.tiameds.entity.BillingEntity;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Predicates for listing a lab's billings; only the filters actually given end up in the query.
+ */
+public final class BillingSpecifications {
+
+    private BillingSpecifications() {
+    }
+
+    public static Specification<BillingEntity> inLab(Long labId) {
+        return (root, query, cb) -> cb.equal(root.get("lab").get("id"), labId);
+    }
+
+    public static Specification<BillingEntity> hasPaymentStatus(String paymentStatus) {
+        return (root, query, cb) -> cb.equal(root.get("paymentStatus"), paymentStatus);
+    }
+
+    public static Specification<BillingEntity> hasPaymentMethod(String paymentMethod) {
+        return (root, query, cb) -> cb.equal(root.get("paymentMethod"), paymentMethod);
+    }
+
+    // filters on the day the billing is reported under, see LabRevenueDailyRepository.REVENUE_DATE
+    public static Specification<BillingEntity> paidFrom(LocalDate from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(revenueDate(root, cb), from);
+    }
+
+    public static Specification<BillingEntity> paidTo(LocalDate to) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(revenueDate(root, cb), to);
+    }
+
+    public static Specification<BillingEntity> netAmountAtLeast(BigDecimal minAmount) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("netAmount"), minAmount);
+    }
+
+    public static Specification<BillingEntity> netAmountAtMost(BigDecimal maxAmount) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("netAmount"), maxAmount);
+    }
+
+    private static Expression<LocalDate> revenueDate(Root<BillingEntity> root, CriteriaBuilder cb) {
+        return cb.function("billing_revenue_date", LocalDate.class, root.get("paymentDate"), root.get("createdAt"));
+    }
+
+    /**
+     * Keyset condition for a page ordered by billing_id descending: everything strictly after the cursor.
+     */
+    public static Specification<BillingEntity> before(Long billingId) {
+        return (root, query, cb) -> cb.lessThan(root.get("id"), billingId);
+    }
+}
@@ -1,13 +1,30 @@
 package tiameds.com.tiameds.repository;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import tiameds.com.tiameds.entity.Doctors;
 
+import java.util.List;
+
 
 @Repository
 public interface DoctorRepository extends JpaRepository<Doctors, Long> {
     boolean existsByEmail(String email);
 
     Doctors findByEmail(String email);
+
+    // links the doctor without loading the lab's doctors collection
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_doctors"))
+    @Query(value = "INSERT INTO lab_doctors (lab_id, doctor_id) VALUES (:labId, :doctorId)", nativeQuery = true)
+    void linkToLab(@Param("labId") long labId, @Param("doctorId") long doctorId);
+
+    @Query("SELECT l.id FROM Lab l JOIN l.doctors d WHERE d.id = :doctorId")
+    List<Long> findLabIdsByDoctorId(@Param("doctorId") long doctorId);
 }
@@ -1,6 +1,8 @@
 package tiameds.com.tiameds.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import tiameds.com.tiameds.entity.HealthPackage;
 import tiameds.com.tiameds.entity.Lab;
@@ -16,4 +18,7 @@ public interface HealthPackageRepository extends JpaRepository<HealthPackage, Lo
 
 
     List<HealthPackage> findAllByLabs(Lab lab);
+
+    @Query("SELECT l.id FROM Lab l JOIN l.healthPackages hp WHERE hp.id = :packageId")
+    List<Long> findLabIdsByPackageId(@Param("packageId") long packageId);
 }
@@ -0,0 +1,46 @@
+package tiameds.com.tiameds.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tiameds.com.tiameds.entity.LabCatalogKey;
+
+import java.util.List;
+
+@Repository
+public interface LabCatalogKeyRepository extends JpaRepository<LabCatalogKey, Long> {
+
+    boolean existsByLabIdAndCatalogAndNameKey(long labId, String catalog, String nameKey);
+
+    @Query("SELECT k.nameKey FROM LabCatalogKey k WHERE k.labId = :labId AND k.catalog = :catalog")
+    List<String> findNameKeys(@Param("labId") long labId, @Param("catalog") String catalog);
+
+    // fails with a DataIntegrityViolationException if the lab already has an item with the key
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_catalog_keys"))
+    @Query(value = "INSERT INTO lab_catalog_keys (lab_id, catalog, name_key, item_id) VALUES (:labId, :catalog, :nameKey, :itemId)",
+            nativeQuery = true)
+    void claim(@Param("labId") long labId, @Param("catalog") String catalog,
+               @Param("nameKey") String nameKey, @Param("itemId") long itemId);
+
+    // renames the item in every lab it belongs to; fails like claim if one of them has the new key
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_catalog_keys"))
+    @Query(value = "UPDATE lab_catalog_keys SET name_key = :nameKey WHERE catalog = :catalog AND item_id = :itemId",
+            nativeQuery = true)
+    void rekey(@Param("catalog") String catalog, @Param("itemId") long itemId, @Param("nameKey") String nameKey);
+
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_catalog_keys"))
+    @Query(value = "DELETE FROM lab_catalog_keys WHERE catalog = :catalog AND item_id = :itemId", nativeQuery = true)
+    void release(@Param("catalog") String catalog, @Param("itemId") long itemId);
+}
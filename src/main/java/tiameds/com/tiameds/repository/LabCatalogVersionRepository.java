@@ -0,0 +1,29 @@
+package tiameds.com.tiameds.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tiameds.com.tiameds.entity.LabCatalogVersion;
+
+import java.util.Optional;
+
+@Repository
+public interface LabCatalogVersionRepository extends JpaRepository<LabCatalogVersion, Long> {
+
+    @Query("SELECT v.version FROM LabCatalogVersion v WHERE v.labId = :labId AND v.catalog = :catalog")
+    Optional<Long> findVersion(@Param("labId") long labId, @Param("catalog") String catalog);
+
+    // joins the caller's transaction, so the new version commits together with the catalog change
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_catalog_versions"))
+    @Query(value = "INSERT INTO lab_catalog_versions (lab_id, catalog, version) VALUES (:labId, :catalog, 1) " +
+            "ON CONFLICT (lab_id, catalog) DO UPDATE SET version = lab_catalog_versions.version + 1", nativeQuery = true)
+    void bump(@Param("labId") long labId, @Param("catalog") String catalog);
+}
@@ -31,5 +31,32 @@ public interface LabRepository extends JpaRepository<Lab, Long> {
     @Query("SELECT l FROM Lab l JOIN l.members m WHERE m.id = :userId")
     Set<Lab> findLabsByUserId(@Param("userId") Long userId);
 
+    @Query("SELECT l.id FROM Lab l JOIN l.members m WHERE m.id = :userId")
+    List<Long> findLabIdsByMemberId(@Param("userId") Long userId);
+
+    // lab status and the user's membership in one round trip, served by the labs and lab_members primary keys
+    @Query(value = "SELECT l.is_active AS active, " +
+            "EXISTS (SELECT 1 FROM lab_members lm WHERE lm.lab_id = l.lab_id AND lm.user_id = :userId) AS member " +
+            "FROM labs l WHERE l.lab_id = :labId", nativeQuery = true)
+    Optional<LabAccessView> findLabAccess(@Param("labId") Long labId, @Param("userId") Long userId);
+
+    @Query("SELECT l.isActive FROM Lab l WHERE l.id = :labId")
+    Optional<Boolean> findIsActiveById(@Param("labId") Long labId);
+
+    @Query("SELECT l.id AS id, l.isActive AS active FROM Lab l")
+    List<LabStatusView> findAllStatuses();
+
+    interface LabStatusView {
+        Long getId();
+
+        Boolean getActive();
+    }
+
+    interface LabAccessView {
+        Boolean getActive();
+
+        Boolean getMember();
+    }
+
 
 }
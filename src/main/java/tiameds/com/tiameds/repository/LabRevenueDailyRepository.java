@@ -0,0 +1,129 @@
+package tiameds.com.tiameds.repository;
+
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import tiameds.com.tiameds.entity.LabRevenueDaily;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface LabRevenueDailyRepository extends JpaRepository<LabRevenueDaily, Long> {
+
+    // day a billing counts for: its payment date when it starts with a valid ISO date, otherwise the day it was
+    // created (function from migration V7)
+    String REVENUE_DATE = "billing_revenue_date(b.payment_date, b.created_at)";
+
+    String REVENUE_SUMS = "SUM(r.billing_count) AS billingCount, SUM(r.total_amount) AS totalAmount, " +
+            "SUM(r.discount) AS discount, SUM(r.gst_amount) AS gstAmount, SUM(r.cgst_amount) AS cgstAmount, " +
+            "SUM(r.sgst_amount) AS sgstAmount, SUM(r.igst_amount) AS igstAmount, SUM(r.net_amount) AS netAmount ";
+
+    /**
+     * Adds the given amounts to the row of the lab, day and payment method, creating it if needed.
+     * Negative amounts and count take a billing out again.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_revenue_daily"))
+    @Query(value = "INSERT INTO lab_revenue_daily (lab_id, revenue_date, payment_method, billing_count, total_amount, " +
+            "discount, gst_amount, cgst_amount, sgst_amount, igst_amount, net_amount) " +
+            "VALUES (:labId, :revenueDate, :paymentMethod, :billingCount, :totalAmount, :discount, :gstAmount, " +
+            ":cgstAmount, :sgstAmount, :igstAmount, :netAmount) " +
+            "ON CONFLICT (lab_id, revenue_date, payment_method) DO UPDATE SET " +
+            "billing_count = lab_revenue_daily.billing_count + EXCLUDED.billing_count, " +
+            "total_amount = lab_revenue_daily.total_amount + EXCLUDED.total_amount, " +
+            "discount = lab_revenue_daily.discount + EXCLUDED.discount, " +
+            "gst_amount = lab_revenue_daily.gst_amount + EXCLUDED.gst_amount, " +
+            "cgst_amount = lab_revenue_daily.cgst_amount + EXCLUDED.cgst_amount, " +
+            "sgst_amount = lab_revenue_daily.sgst_amount + EXCLUDED.sgst_amount, " +
+            "igst_amount = lab_revenue_daily.igst_amount + EXCLUDED.igst_amount, " +
+            "net_amount = lab_revenue_daily.net_amount + EXCLUDED.net_amount", nativeQuery = true)
+    void addToDay(@Param("labId") long labId,
+                  @Param("revenueDate") LocalDate revenueDate,
+                  @Param("paymentMethod") String paymentMethod,
+                  @Param("billingCount") long billingCount,
+                  @Param("totalAmount") BigDecimal totalAmount,
+                  @Param("discount") BigDecimal discount,
+                  @Param("gstAmount") BigDecimal gstAmount,
+                  @Param("cgstAmount") BigDecimal cgstAmount,
+                  @Param("sgstAmount") BigDecimal sgstAmount,
+                  @Param("igstAmount") BigDecimal igstAmount,
+                  @Param("netAmount") BigDecimal netAmount);
+
+    // serializes rebuilds across nodes until the calling transaction ends
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(hashtext('lab_revenue_daily'))", nativeQuery = true)
+    int lockRebuilds();
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_revenue_daily"))
+    @Query(value = "DELETE FROM lab_revenue_daily WHERE lab_id = :labId", nativeQuery = true)
+    int deleteByLabId(@Param("labId") long labId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_revenue_daily"))
+    @Query(value = "DELETE FROM lab_revenue_daily", nativeQuery = true)
+    int deleteAllRows();
+
+    // recomputes the rows of one lab from its billings
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_revenue_daily"))
+    @Query(value = "INSERT INTO lab_revenue_daily (lab_id, revenue_date, payment_method, billing_count, total_amount, " +
+            "discount, gst_amount, cgst_amount, sgst_amount, igst_amount, net_amount) " +
+            "SELECT b.lab_id, " + REVENUE_DATE + ", b.payment_method, COUNT(*), SUM(b.total_amount), SUM(b.discount), " +
+            "SUM(b.gst_amount), SUM(b.cgst_amount), SUM(b.sgst_amount), SUM(b.igst_amount), SUM(b.net_amount) " +
+            "FROM billing b WHERE b.lab_id = :labId " +
+            "GROUP BY b.lab_id, " + REVENUE_DATE + ", b.payment_method", nativeQuery = true)
+    int rebuildLab(@Param("labId") long labId);
+
+    // recomputes the rows of every lab from all billings
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "lab_revenue_daily"))
+    @Query(value = "INSERT INTO lab_revenue_daily (lab_id, revenue_date, payment_method, billing_count, total_amount, " +
+            "discount, gst_amount, cgst_amount, sgst_amount, igst_amount, net_amount) " +
+            "SELECT b.lab_id, " + REVENUE_DATE + ", b.payment_method, COUNT(*), SUM(b.total_amount), SUM(b.discount), " +
+            "SUM(b.gst_amount), SUM(b.cgst_amount), SUM(b.sgst_amount), SUM(b.igst_amount), SUM(b.net_amount) " +
+            "FROM billing b WHERE b.lab_id IS NOT NULL " +
+            "GROUP BY b.lab_id, " + REVENUE_DATE + ", b.payment_method", nativeQuery = true)
+    int rebuildAll();
+
+    @Query(value = "SELECT to_char(r.revenue_date, 'YYYY-MM-DD') AS period, " + REVENUE_SUMS +
+            "FROM lab_revenue_daily r WHERE r.lab_id = :labId AND r.revenue_date BETWEEN :from AND :to " +
+            "GROUP BY r.revenue_date ORDER BY r.revenue_date", nativeQuery = true)
+    List<RevenueView> findDaily(@Param("labId") long labId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(value = "SELECT to_char(date_trunc('month', r.revenue_date), 'YYYY-MM') AS period, " + REVENUE_SUMS +
+            "FROM lab_revenue_daily r WHERE r.lab_id = :labId AND r.revenue_date BETWEEN :from AND :to " +
+            "GROUP BY date_trunc('month', r.revenue_date) ORDER BY date_trunc('month', r.revenue_date)", nativeQuery = true)
+    List<RevenueView> findMonthly(@Param("labId") long labId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(value = "SELECT r.payment_method AS period, " + REVENUE_SUMS +
+            "FROM lab_revenue_daily r WHERE r.lab_id = :labId AND r.revenue_date BETWEEN :from AND :to " +
+            "GROUP BY r.payment_method ORDER BY r.payment_method", nativeQuery = true)
+    List<RevenueView> findByPaymentMethod(@Param("labId") long labId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    interface RevenueView {
+        String getPeriod(); // day, month or payment method the row sums up
+
+        Long getBillingCount();
+
+        BigDecimal getTotalAmount();
+
+        BigDecimal getDiscount();
+
+        BigDecimal getGstAmount();
+
+        BigDecimal getCgstAmount();
+
+        BigDecimal getSgstAmount();
+
+        BigDecimal getIgstAmount();
+
+        BigDecimal getNetAmount();
+    }
+}
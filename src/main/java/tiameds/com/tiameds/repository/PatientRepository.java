@@ -15,4 +15,6 @@ public interface PatientRepository extends JpaRepository<PatientEntity, Long> {
 
     List<PatientEntity> findAllByLabsId(Long labId);
 
+    boolean existsByPatientIdAndLabsId(Long patientId, Long labId);
+
 }
@@ -0,0 +1,136 @@
+package tiameds.com.tiameds.repository;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tiameds.com.tiameds.config.IdSequences;
+import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.entity.LabCatalogKey;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Plain JDBC access to a lab's test catalog for bulk work, where loading the catalog through
+ * {@link tiameds.com.tiameds.entity.Lab#getTests()} would pull every test into the persistence context.
+ */
+@Repository
+public class TestCatalogJdbcRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public TestCatalogJdbcRepository(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Returns the name keys ({@link LabCatalogKey#normalize}) of all tests in the lab.
+     */
+    public Set<String> findTestNameKeys(long labId) {
+        Set<String> keys = new HashSet<>();
+        jdbcTemplate.query("SELECT name_key FROM lab_catalog_keys WHERE lab_id = ? AND catalog = 'tests'",
+                rs -> {
+                    keys.add(rs.getString(1));
+                }, labId);
+        return keys;
+    }
+
+    /**
+     * Inserts the tests with one JDBC batch, links them to the lab with a second one and claims their name
+     * keys with a third. Runs in the caller's transaction, which fails if another request claimed one of
+     * the names in the meantime.
+     */
+    public void insertTests(long labId, List<TestRow> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        // IDs are reserved in pooled blocks of the entity's sequence, so no keys have to be read back
+        List<Long> ids = IdSequences.reserve(jdbcTemplate, IdSequences.TESTS, rows.size());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO tests (test_id, category, name, price, created_at, updated_at) VALUES (?, ?, ?, ?, now(), now())",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        TestRow row = rows.get(i);
+                        ps.setLong(1, ids.get(i));
+                        ps.setString(2, row.category());
+                        ps.setString(3, row.name());
+                        ps.setBigDecimal(4, row.price());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return rows.size();
+                    }
+                });
+
+        jdbcTemplate.batchUpdate("INSERT INTO lab_tests (lab_id, test_id) VALUES (?, ?)", new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, labId);
+                ps.setLong(2, ids.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return ids.size();
+            }
+        });
+        jdbcTemplate.batchUpdate("INSERT INTO lab_catalog_keys (lab_id, catalog, name_key, item_id) VALUES (?, 'tests', ?, ?)",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        ps.setLong(1, labId);
+                        ps.setString(2, LabCatalogKey.normalize(rows.get(i).name()));
+                        ps.setLong(3, ids.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return ids.size();
+                    }
+                });
+        evictLabTests(labId);
+    }
+
+    // links a test saved through JPA without loading the lab's tests collection
+    public void linkTest(long labId, long testId) {
+        jdbcTemplate.update("INSERT INTO lab_tests (lab_id, test_id) VALUES (?, ?)", labId, testId);
+        evictLabTests(labId);
+    }
+
+    // unlinks a test from every lab listing it without loading their tests collections
+    public void unlinkTest(long testId, List<Long> labIds) {
+        jdbcTemplate.update("DELETE FROM lab_tests WHERE test_id = ?", testId);
+        labIds.forEach(this::evictLabTests);
+    }
+
+    // lab_tests is written past Hibernate, so the lab's cached tests collection is dropped now and again
+    // after commit, when a concurrent reader may have cached the old rows in between
+    private void evictLabTests(long labId) {
+        Runnable evict = () -> entityManagerFactory.getCache().unwrap(Cache.class)
+                .evictCollectionData(Lab.class.getName() + ".tests", labId);
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        }
+    }
+
+    public record TestRow(String category, String name, BigDecimal price) {
+    }
+}
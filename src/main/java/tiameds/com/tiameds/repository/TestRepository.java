@@ -1,7 +1,10 @@
 package tiameds.com.tiameds.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import tiameds.com.tiameds.dto.lab.TestDTO;
 import tiameds.com.tiameds.entity.Lab;
 import tiameds.com.tiameds.entity.Test;
 
@@ -13,4 +16,15 @@ public interface TestRepository extends JpaRepository<Test, Long> {
 
 
     List<Test> findByLabs(Lab lab);
+
+    @Query("SELECT new tiameds.com.tiameds.dto.lab.TestDTO(t.id, t.category, t.name, t.price, t.createdAt, t.updatedAt) " +
+            "FROM Lab l JOIN l.tests t WHERE l.id = :labId ORDER BY t.id")
+    List<TestDTO> findCatalogByLabId(@Param("labId") long labId);
+
+    @Query("SELECT l.id FROM Lab l JOIN l.tests t WHERE t.id = :testId")
+    List<Long> findLabIdsByTestId(@Param("testId") long testId);
+
+    // one probe of idx_lab_tests_test_lab instead of loading the lab's tests collection
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM lab_tests WHERE test_id = :testId AND lab_id = :labId)", nativeQuery = true)
+    boolean existsInLab(@Param("testId") long testId, @Param("labId") long labId);
 }
\ No newline at end of file
@@ -30,4 +30,9 @@ public interface UserRepository extends CrudRepository<User, Long> {
     List<User> findByLabsId(Long labId);
 
     boolean existsByIdAndLabsId(Long userId, Long labId);
+
+    // one statement for the bump and the new value; empty if the user does not exist (anymore)
+    @Query(value = "UPDATE users SET token_version = token_version + 1 WHERE user_id = :userId RETURNING token_version",
+            nativeQuery = true)
+    Optional<Long> incrementTokenVersion(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -1,17 +1,22 @@
 package tiameds.com.tiameds.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
 import tiameds.com.tiameds.entity.Lab;
 import tiameds.com.tiameds.entity.PatientEntity;
 import tiameds.com.tiameds.entity.VisitEntity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface VisitRepository extends JpaRepository<VisitEntity, Long> {
+public interface VisitRepository extends JpaRepository<VisitEntity, Long>, JpaSpecificationExecutor<VisitEntity>,
+        VisitRowQueries {
 
     Object findAllByPatient_Labs_Id(Long labId);
 
@@ -22,4 +27,37 @@ public interface VisitRepository extends JpaRepository<VisitEntity, Long> {
     @Query("SELECT v FROM VisitEntity v WHERE v.patient.patientId = :patientId")
     List<VisitEntity> findByPatientId(@Param("patientId") Long patientId);
 
+    // visits from before lab_id existed belong to the labs of their patient
+    @Query("SELECT v FROM VisitEntity v WHERE v.visitId = :visitId AND (v.lab.id = :labId OR (v.lab IS NULL AND " +
+            "EXISTS (SELECT 1 FROM PatientEntity p JOIN p.labs l WHERE p = v.patient AND l.id = :labId)))")
+    Optional<VisitEntity> findInLab(@Param("visitId") Long visitId, @Param("labId") Long labId);
+
+    String VISIT_ROW_SELECT = "SELECT new tiameds.com.tiameds.dto.lab.VisitRowDTO(" +
+            "v.visitId, v.visitDate, v.visitType, v.visitStatus, v.visitDescription, d.id, " +
+            "p.firstName, p.lastName, p.email, p.phone, p.address, p.city, p.state, p.zip, p.bloodGroup, p.dateOfBirth, " +
+            "b.totalAmount, b.paymentStatus, b.paymentMethod, b.paymentDate, b.discount, b.gstRate, b.gstAmount, " +
+            "b.cgstAmount, b.sgstAmount, b.igstAmount, b.netAmount) " +
+            "FROM VisitEntity v JOIN v.patient p JOIN v.doctor d LEFT JOIN v.billing b ";
+
+    @Query(VISIT_ROW_SELECT + "JOIN p.labs l WHERE v.visitId = :visitId AND l.id = :labId")
+    List<VisitRowDTO> findRowByVisitIdAndLabId(@Param("visitId") Long visitId, @Param("labId") Long labId);
+
+    @Query(VISIT_ROW_SELECT + "WHERE p.patientId = :patientId ORDER BY v.visitDate DESC, v.visitId DESC")
+    List<VisitRowDTO> findRowsByPatientId(@Param("patientId") Long patientId);
+
+    @Query("SELECT v.visitId AS visitId, t.id AS linkedId FROM VisitEntity v JOIN v.tests t WHERE v.visitId IN :visitIds")
+    List<VisitLink> findTestLinks(@Param("visitIds") Collection<Long> visitIds);
+
+    @Query("SELECT v.visitId AS visitId, hp.id AS linkedId FROM VisitEntity v JOIN v.packages hp WHERE v.visitId IN :visitIds")
+    List<VisitLink> findPackageLinks(@Param("visitIds") Collection<Long> visitIds);
+
+    @Query("SELECT v.visitId AS visitId, i.id AS linkedId FROM VisitEntity v JOIN v.insurance i WHERE v.visitId IN :visitIds")
+    List<VisitLink> findInsuranceLinks(@Param("visitIds") Collection<Long> visitIds);
+
+    interface VisitLink {
+        Long getVisitId();
+
+        Long getLinkedId();
+    }
+
 }
@@ -0,0 +1,21 @@
+package tiameds.com.tiameds.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
+import tiameds.com.tiameds.entity.VisitEntity;
+
+import java.util.List;
+
+/**
+ * Visit listings read straight into {@link VisitRowDTO}, so a page is one query instead of loading the visit
+ * entities first and reading the same rows again through the projection.
+ */
+public interface VisitRowQueries {
+
+    /**
+     * @param spec  the visits to list; see {@link VisitSpecifications}
+     * @param limit the most rows to return
+     * @return the matching visits ordered by visit date and id, newest first
+     */
+    List<VisitRowDTO> findRows(Specification<VisitEntity> spec, int limit);
+}
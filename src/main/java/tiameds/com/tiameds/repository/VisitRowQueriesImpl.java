@@ -0,0 +1,55 @@
+package tiameds.com.tiameds.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
+import tiameds.com.tiameds.entity.BillingEntity;
+import tiameds.com.tiameds.entity.Doctors;
+import tiameds.com.tiameds.entity.PatientEntity;
+import tiameds.com.tiameds.entity.VisitEntity;
+
+import java.util.List;
+
+class VisitRowQueriesImpl implements VisitRowQueries {
+
+    private final EntityManager entityManager;
+
+    VisitRowQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // the same columns as VisitRepository.VISIT_ROW_SELECT
+    @Override
+    public List<VisitRowDTO> findRows(Specification<VisitEntity> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<VisitRowDTO> query = cb.createQuery(VisitRowDTO.class);
+        Root<VisitEntity> v = query.from(VisitEntity.class);
+        Join<VisitEntity, PatientEntity> p = v.join("patient");
+        Join<VisitEntity, Doctors> d = v.join("doctor");
+        Join<VisitEntity, BillingEntity> b = v.join("billing", JoinType.LEFT);
+
+        query.select(cb.construct(VisitRowDTO.class,
+                v.get("visitId"), v.get("visitDate"), v.get("visitType"), v.get("visitStatus"),
+                v.get("visitDescription"), d.get("id"),
+                p.get("firstName"), p.get("lastName"), p.get("email"), p.get("phone"), p.get("address"),
+                p.get("city"), p.get("state"), p.get("zip"), p.get("bloodGroup"), p.get("dateOfBirth"),
+                b.get("totalAmount"), b.get("paymentStatus"), b.get("paymentMethod"), b.get("paymentDate"),
+                b.get("discount"), b.get("gstRate"), b.get("gstAmount"), b.get("cgstAmount"), b.get("sgstAmount"),
+                b.get("igstAmount"), b.get("netAmount")));
+        Predicate predicate = spec.toPredicate(v, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(v.get("visitDate")), cb.desc(v.get("visitId")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
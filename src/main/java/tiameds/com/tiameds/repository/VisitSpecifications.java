@@ -0,0 +1,52 @@
+package tiameds.com.tiameds.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import tiameds.com.tiameds.entity.VisitEntity;
+
+import java.time.LocalDate;
+
+/**
+ * Predicates for listing a lab's visits; only the filters actually given end up in the query.
+ */
+public final class VisitSpecifications {
+
+    private VisitSpecifications() {
+    }
+
+    public static Specification<VisitEntity> inLab(Long labId) {
+        return (root, query, cb) -> cb.equal(root.get("lab").get("id"), labId);
+    }
+
+    public static Specification<VisitEntity> visitedFrom(LocalDate from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("visitDate"), from);
+    }
+
+    public static Specification<VisitEntity> visitedTo(LocalDate to) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("visitDate"), to);
+    }
+
+    public static Specification<VisitEntity> hasStatus(String visitStatus) {
+        return (root, query, cb) -> cb.equal(root.get("visitStatus"), visitStatus);
+    }
+
+    public static Specification<VisitEntity> hasType(String visitType) {
+        return (root, query, cb) -> cb.equal(root.get("visitType"), visitType);
+    }
+
+    public static Specification<VisitEntity> withDoctor(Long doctorId) {
+        return (root, query, cb) -> cb.equal(root.get("doctor").get("id"), doctorId);
+    }
+
+    /**
+     * Keyset condition for a page ordered by (visit_date, visit_id) descending: everything strictly after the cursor.
+     */
+    public static Specification<VisitEntity> before(LocalDate visitDate, Long visitId) {
+        return (root, query, cb) -> cb.or(
+                cb.lessThan(root.get("visitDate"), visitDate),
+                cb.and(
+                        cb.equal(root.get("visitDate"), visitDate),
+                        cb.lessThan(root.get("visitId"), visitId)
+                )
+        );
+    }
+}
@@ -0,0 +1,84 @@
+package tiameds.com.tiameds.services.auth;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tiameds.com.tiameds.entity.ModuleEntity;
+import tiameds.com.tiameds.entity.Role;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.UnauthorizedException;
+import tiameds.com.tiameds.repository.LabRepository;
+import tiameds.com.tiameds.repository.UserRepository;
+import tiameds.com.tiameds.utils.JwtUtil;
+
+import java.util.HashSet;
+import java.util.stream.Collectors;
+
+/**
+ * Issues and refreshes the claims-rich tokens enabled by {@code spring.jwt.claims.enabled}: an access token
+ * that lets {@link tiameds.com.tiameds.filter.JwtFilter} authorize requests without the database, valid for
+ * {@code access-ttl}, and a refresh token exchanged at {@code /public/refresh} for a new pair carrying the
+ * user's current roles, modules and labs.
+ */
+@Service
+public class AuthTokenService {
+
+    private final JwtUtil jwtUtil;
+    private final UserRepository userRepository;
+    private final LabRepository labRepository;
+    private final boolean enabled;
+
+    public AuthTokenService(JwtUtil jwtUtil, UserRepository userRepository, LabRepository labRepository,
+                            @Value("${spring.jwt.claims.enabled:false}") boolean enabled) {
+        this.jwtUtil = jwtUtil;
+        this.userRepository = userRepository;
+        this.labRepository = labRepository;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public TokenPair issue(User user) {
+        TokenPrincipal principal = new TokenPrincipal(
+                user.getId(),
+                user.getUsername(),
+                user.getRoles().stream().map(Role::getName).collect(Collectors.toSet()),
+                user.getModules().stream().map(ModuleEntity::getId).collect(Collectors.toSet()),
+                new HashSet<>(labRepository.findLabIdsByMemberId(user.getId())),
+                user.getTokenVersion(),
+                null);
+        return new TokenPair(jwtUtil.generateAccessToken(principal), jwtUtil.generateRefreshToken(principal));
+    }
+
+    /**
+     * Exchanges a refresh token for a new pair, read from the current state of the user.
+     *
+     * @throws UnauthorizedException if the token is invalid or expired, or the user was removed or disabled
+     */
+    public TokenPair refresh(String refreshToken) {
+        if (!enabled) {
+            throw BadRequestException.TOKEN_REFRESH_DISABLED;
+        }
+        Long userId;
+        try {
+            Claims claims = jwtUtil.parseToken(refreshToken);
+            userId = jwtUtil.extractRefreshUserId(claims);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw UnauthorizedException.INVALID_REFRESH_TOKEN;
+        }
+        if (userId == null) {
+            throw UnauthorizedException.INVALID_REFRESH_TOKEN;
+        }
+        User user = userRepository.findById(userId)
+                .filter(User::isEnabled)
+                .orElseThrow(() -> UnauthorizedException.INVALID_REFRESH_TOKEN);
+        return issue(user);
+    }
+
+    public record TokenPair(String accessToken, String refreshToken) {
+    }
+}
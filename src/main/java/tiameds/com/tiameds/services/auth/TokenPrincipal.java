@@ -0,0 +1,32 @@
+package tiameds.com.tiameds.services.auth;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * The user as described by a claims-rich access token: enough to authorize a request without loading the
+ * {@link tiameds.com.tiameds.entity.User}. {@code version} is the token version of the user when the token
+ * was issued, checked by {@link TokenVersions}.
+ */
+public record TokenPrincipal(Long userId, String username, Set<String> roles, Set<Long> moduleIds,
+                             Set<Long> labIds, long version, Instant issuedAt) implements AuthenticatedPrincipal {
+
+    // the same authorities as MyUserDetails
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return roles.stream().map(role -> new SimpleGrantedAuthority("ROLE_" + role)).toList();
+    }
+
+    public boolean isMemberOf(Long labId) {
+        return labIds.contains(labId);
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
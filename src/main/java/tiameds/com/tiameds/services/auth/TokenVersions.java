@@ -0,0 +1,116 @@
+package tiameds.com.tiameds.services.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tiameds.com.tiameds.repository.UserRepository;
+import tiameds.com.tiameds.utils.LabStatusChannel;
+
+import java.time.Duration;
+
+/**
+ * Keeps claims-rich access tokens from outliving the roles, modules and lab memberships they describe.
+ * Every change bumps the token version of the user in the database and remembers the new version here;
+ * tokens carrying an older one are not trusted any more and the request is authorized from the database instead.
+ * <p>
+ * Bumps are announced over the {@link LabStatusChannel} on commit, so the other instances distrust the tokens
+ * too and drop the user from their principal and lab access caches. Without notifications
+ * ({@code spring.lab-status.notify.enabled: false}) the other instances keep trusting the tokens until they
+ * expire, after {@code spring.jwt.claims.access-ttl}, and their caches until their TTL.
+ * <p>
+ * Versions are not tracked while claims tokens are disabled; changes are still announced for the caches.
+ */
+@Service
+public class TokenVersions implements LabStatusChannel.Subscriber {
+
+    private final UserRepository userRepository;
+    private final LabStatusChannel labStatusChannel;
+    private final boolean enabled;
+
+    // latest version per user id, kept as long as tokens issued before it can be valid
+    private final Cache<Long, Long> latestVersions;
+
+    // tokens issued at or before this instant are stale for every user, e.g. after a role was renamed
+    private volatile long staleBeforeMillis;
+
+    public TokenVersions(UserRepository userRepository,
+                         LabStatusChannel labStatusChannel,
+                         @Value("${spring.jwt.claims.enabled:false}") boolean enabled,
+                         @Value("${spring.jwt.claims.access-ttl:5m}") Duration accessTtl) {
+        this.userRepository = userRepository;
+        this.labStatusChannel = labStatusChannel;
+        this.enabled = enabled;
+        this.latestVersions = Caffeine.newBuilder()
+                .expireAfterWrite(accessTtl)
+                .maximumSize(100_000)
+                .build();
+        labStatusChannel.subscribe(this);
+    }
+
+    /**
+     * Bumps the token version of a user whose roles, modules or lab memberships changed. Joins the current
+     * transaction, if any; should it roll back, the user's tokens are merely distrusted until they expire.
+     */
+    public void bump(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        Long version = enabled ? userRepository.incrementTokenVersion(userId).orElse(null) : null;
+        if (version != null) {
+            latestVersions.asMap().merge(userId, version, Math::max);
+        }
+        labStatusChannel.publishUserChange(userId, version);
+    }
+
+    /**
+     * Distrusts every token of a user for good, for a user about to be deleted. Unlike {@link #bump} it does not
+     * need the user's row, which is gone once the deletion is flushed.
+     */
+    public void revoke(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        latestVersions.put(userId, Long.MAX_VALUE);
+        labStatusChannel.publishUserChange(userId, Long.MAX_VALUE);
+    }
+
+    /**
+     * Distrusts every token issued so far, for changes to the role or module definitions themselves.
+     */
+    public void bumpAll() {
+        if (enabled) {
+            staleBeforeMillis = System.currentTimeMillis();
+        }
+        labStatusChannel.publishAllUsersChanged();
+    }
+
+    @Override
+    public void onUserChanged(long userId, Long version) {
+        if (enabled && version != null) {
+            latestVersions.asMap().merge(userId, version, Math::max);
+        }
+    }
+
+    @Override
+    public void onAllUsersChanged() {
+        if (enabled) {
+            staleBeforeMillis = Math.max(staleBeforeMillis, System.currentTimeMillis());
+        }
+    }
+
+    // bumps announced while the listener was disconnected are lost, so no token issued so far is trusted
+    @Override
+    public void onResync() {
+        onAllUsersChanged();
+    }
+
+    public boolean isCurrent(TokenPrincipal principal) {
+        // issuedAt has second precision, so a token from the same second as bumpAll counts as stale too
+        if (principal.issuedAt() == null || principal.issuedAt().toEpochMilli() <= staleBeforeMillis) {
+            return false;
+        }
+        Long latest = latestVersions.getIfPresent(principal.userId());
+        return latest == null || principal.version() >= latest;
+    }
+}
@@ -1,28 +1,58 @@
 package tiameds.com.tiameds.services.auth;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import tiameds.com.tiameds.entity.User;
 import tiameds.com.tiameds.repository.UserRepository;
+import tiameds.com.tiameds.utils.CacheLoads;
+import tiameds.com.tiameds.utils.LabStatusChannel;
+
+import java.time.Duration;
+import java.util.Objects;
 
 
 @Slf4j
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, LabStatusChannel.Subscriber {
 
     private final UserRepository userRepository;
+    private final TokenVersions tokenVersions;
+
+    // principals keyed by the login identifier (username or email) used to look them up, loaded through
+    // CacheLoads outside the cache's locks
+    private final AsyncCache<String, MyUserDetails> principalCache;
 
     @Autowired
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  TokenVersions tokenVersions,
+                                  LabStatusChannel labStatusChannel,
+                                  @Value("${spring.principal-cache.ttl:5m}") Duration ttl,
+                                  @Value("${spring.principal-cache.max-size:10000}") long maxSize) {
         this.userRepository = userRepository;
+        this.tokenVersions = tokenVersions;
+        this.principalCache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .buildAsync();
+        labStatusChannel.subscribe(this);
     }
 
     @Override
     public UserDetails loadUserByUsername(String loginIdentifier) throws UsernameNotFoundException {
+        // misses are not cached so a newly registered user can log in straight away
+        return CacheLoads.get(principalCache, loginIdentifier, this::loadPrincipal);
+    }
+
+    private MyUserDetails loadPrincipal(String loginIdentifier) {
         User user = userRepository.findByUsername(loginIdentifier)
                 .orElseGet(() -> userRepository.findByEmail(loginIdentifier).orElse(null)); // Use Optional
 
@@ -30,12 +60,77 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             throw new UsernameNotFoundException("Could not find user with username or email: " + loginIdentifier);
         }
 
-        //set the user details
-
-        log.info("User found: {}", user);
-        System.out.println("Roles for user: " + user.getRoles());
+        log.debug("Loaded principal for {} with roles {}", user.getUsername(), user.getRoles());
         return new MyUserDetails(user);
     }
 
+    /**
+     * Drops the cached principal of a user whose roles, modules or account details changed, and bumps
+     * the token version of the user so their claims tokens are no longer trusted.
+     * When called inside a transaction the entry is dropped again after commit, so a request
+     * racing with the update cannot put the old state back into the cache.
+     *
+     * @param userId the ID of the changed user
+     */
+    public void evictUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        invalidate(userId);
+        tokenVersions.bump(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(userId);
+                }
+            });
+        }
+    }
+
+    /**
+     * {@link #evictUser} for a user about to be deleted; call it before the deletion, in the same transaction.
+     * Their claims tokens are then never trusted again, rather than until the token version is bumped next.
+     *
+     * @param userId the ID of the user being deleted
+     */
+    public void evictDeletedUser(Long userId) {
+        evictUser(userId);
+        tokenVersions.revoke(userId);
+    }
+
+    /**
+     * Drops every cached principal and distrusts every claims token issued so far, e.g. after a module
+     * or role definition itself changed.
+     */
+    public void evictAll() {
+        principalCache.asMap().clear();
+        tokenVersions.bumpAll();
+    }
+
+    // changes announced by another instance, through TokenVersions
+    @Override
+    public void onUserChanged(long userId, Long version) {
+        invalidate(userId);
+    }
+
+    @Override
+    public void onAllUsersChanged() {
+        principalCache.asMap().clear();
+    }
+
+    @Override
+    public void onResync() {
+        principalCache.asMap().clear();
+    }
+
+    private void invalidate(Long userId) {
+        // a user can be cached under both the username and the email; a load still running may have read
+        // the old state, so it is dropped as well
+        principalCache.asMap().values().removeIf(future -> {
+            MyUserDetails details = future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+            return details == null || Objects.equals(details.getUser().getId(), userId);
+        });
+    }
 
 }
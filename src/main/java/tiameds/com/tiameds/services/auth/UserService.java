@@ -1,12 +1,13 @@
 package tiameds.com.tiameds.services.auth;
 
-import jakarta.persistence.EntityNotFoundException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import tiameds.com.tiameds.entity.Role;
 import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.ModuleRepository;
 import tiameds.com.tiameds.repository.RoleRepository;
 import tiameds.com.tiameds.repository.UserRepository;
@@ -23,12 +24,14 @@ public class UserService {
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final ModuleRepository moduleRepository;
+    private final UserDetailsServiceImpl userDetailsService;
 
     @Autowired
-    public UserService(UserRepository userRepository, RoleRepository roleRepository, ModuleRepository moduleRepository) {
+    public UserService(UserRepository userRepository, RoleRepository roleRepository, ModuleRepository moduleRepository, UserDetailsServiceImpl userDetailsService) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.moduleRepository = moduleRepository;
+        this.userDetailsService = userDetailsService;
     }
 
     @Transactional
@@ -42,12 +45,7 @@ public class UserService {
                 .orElseGet(() -> {
                     Role newRole = new Role();
                     newRole.setName("ADMIN");
-                    try {
-                        return roleRepository.save(newRole);
-                    } catch (Exception e) {
-                        log.error("Error saving role: {}", newRole.getName(), e);
-                        throw new RuntimeException("Role could not be saved", e);
-                    }
+                    return roleRepository.save(newRole);
                 });
 
         // Assign the USER role to the new user
@@ -60,12 +58,9 @@ public class UserService {
 
 
         log.info("Assigning roles to user: {} with roles: {}", user.getUsername(), roles);
-        try {
-            userRepository.save(user);
-        } catch (Exception e) {
-            log.error("Error saving user: {}", user.getUsername(), e);
-            throw new RuntimeException("User could not be saved", e);
-        }
+        userRepository.save(user);
+        // also used to update existing users, whose cached principal is now stale
+        userDetailsService.evictUser(user.getId());
     }
 
 
@@ -93,55 +88,67 @@ public class UserService {
     }
 
     public Role saveRole(Role role) {
-        return roleRepository.save(role);
+        boolean existingRole = role.getId() != null;
+        Role savedRole = roleRepository.save(role);
+        if (existingRole) {
+            // renaming a role changes the authorities of every user holding it
+            userDetailsService.evictAll();
+        }
+        return savedRole;
     }
 
 
     public User assignRole(Long userId, Integer roleId) {
         // Fetch user by id and handle the case where the user is not found
         User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+                .orElseThrow(() -> new NotFoundException("User not found with id: " + userId));
 
         // Fetch role by id and handle the case where the role is not found
         Role role = roleRepository.findById(roleId)
-                .orElseThrow(() -> new RuntimeException("Role not found with id: " + roleId));
+                .orElseThrow(() -> new NotFoundException("Role not found with id: " + roleId));
 
         // Add role to the user's set of roles only if it's not already present
         if (!user.getRoles().contains(role)) {
             user.getRoles().add(role);  // No need to fetch and re-set the roles manually
         } else {
-            throw new RuntimeException("User already has this role assigned");
+            throw new BadRequestException("User already has this role assigned");
         }
         // Save the updated user with the newly added role
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userDetailsService.evictUser(userId);
+        return savedUser;
     }
 
     public User removeRole(Long userId, Integer roleId) {
         // Fetch user by id and handle the case where the user is not found
         User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+                .orElseThrow(() -> new NotFoundException("User not found with id: " + userId));
 
         // Fetch role by id and handle the case where the role is not found
         Role role = roleRepository.findById(roleId)
-                .orElseThrow(() -> new RuntimeException("Role not found with id: " + roleId));
+                .orElseThrow(() -> new NotFoundException("Role not found with id: " + roleId));
 
         // Remove role from the user's set of roles only if it's present
         if (user.getRoles().contains(role)) {
             user.getRoles().remove(role);  // No need to fetch and re-set the roles manually
         } else {
-            throw new RuntimeException("User does not have this role assigned");
+            throw new BadRequestException("User does not have this role assigned");
         }
         // Save the updated user with the newly removed role
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userDetailsService.evictUser(userId);
+        return savedUser;
     }
 
 
+    @Transactional
     public User deleteUser(Long userId) {
         // Fetch user by id and handle the case where the user is not found
         User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+                .orElseThrow(() -> new NotFoundException("User not found with id: " + userId));
 
-        // Delete the user
+        // Revoke the user's tokens while the row still exists, then delete the user
+        userDetailsService.evictDeletedUser(userId);
         userRepository.delete(user);
         return user;
     }
@@ -156,7 +163,7 @@ public class UserService {
     public User updateUser(Long userId, User user) {
         // Find the user by ID
         User existingUser = userRepository.findById(userId)
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+                .orElseThrow(() -> NotFoundException.USER);
 
         // Update only necessary fields
         existingUser.setUsername(user.getUsername());
@@ -182,7 +189,9 @@ public class UserService {
         }
 
         // Save and return the updated user
-        return userRepository.save(existingUser);
+        User savedUser = userRepository.save(existingUser);
+        userDetailsService.evictUser(userId);
+        return savedUser;
     }
 
 }
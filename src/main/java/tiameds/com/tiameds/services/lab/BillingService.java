@@ -1,12 +1,22 @@
 package tiameds.com.tiameds.services.lab;
 
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tiameds.com.tiameds.dto.lab.BillingDTO;
+import tiameds.com.tiameds.dto.lab.BillingFilterDTO;
+import tiameds.com.tiameds.dto.lab.BillingPageDTO;
 import tiameds.com.tiameds.entity.*;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
+import tiameds.com.tiameds.exception.UnauthorizedException;
 import tiameds.com.tiameds.repository.BillingRepository;
+import tiameds.com.tiameds.repository.BillingSpecifications;
 import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.repository.PatientRepository;
 import tiameds.com.tiameds.repository.VisitRepository;
+import tiameds.com.tiameds.utils.LabAccessableFilter;
 
 import java.util.List;
 import java.util.Objects;
@@ -16,45 +26,85 @@ import java.util.stream.Collectors;
 @Service
 public class BillingService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Sort BILLING_ORDER = Sort.by(Sort.Order.desc("id"));
+
     private final BillingRepository billingRepository;
     private final LabRepository labRepository;
     private final PatientRepository patientRepository;
     private final VisitRepository visitRepository;
+    private final LabAccessableFilter labAccessableFilter;
 
-    public BillingService(BillingRepository billingRepository, LabRepository labRepository, PatientRepository patientRepository, VisitRepository visitRepository) {
+    public BillingService(BillingRepository billingRepository, LabRepository labRepository, PatientRepository patientRepository, VisitRepository visitRepository, LabAccessableFilter labAccessableFilter) {
         this.billingRepository = billingRepository;
         this.labRepository = labRepository;
         this.patientRepository = patientRepository;
         this.visitRepository = visitRepository;
+        this.labAccessableFilter = labAccessableFilter;
     }
 
-    public List<BillingDTO> getBillingList(Long labId, Optional<User> currentUser, BillingDTO filterCriteria) {
+    // get a page of the lab's billings, newest first, continuing after the given cursor
+    @Transactional(readOnly = true)
+    public BillingPageDTO getBillingList(Long labId, Optional<User> currentUser, BillingFilterDTO filter) {
 
-        // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            throw new IllegalArgumentException("Lab not found");
+        // Check if the user is authorized for the lab
+        if (currentUser.isEmpty() || !labAccessableFilter.checkAccess(labId, currentUser.get()).isGranted()) {
+            throw new SecurityException("User is not a member of this lab");
         }
 
-        Lab lab = labOptional.get();
+        int size = filter.getSize() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(filter.getSize(), MAX_PAGE_SIZE));
+        if (filter.getFrom() != null && filter.getTo() != null && filter.getFrom().isAfter(filter.getTo())) {
+            throw new BadRequestException("from must not be after to");
+        }
+        if (filter.getMinAmount() != null && filter.getMaxAmount() != null
+                && filter.getMinAmount().compareTo(filter.getMaxAmount()) > 0) {
+            throw new BadRequestException("minAmount must not be greater than maxAmount");
+        }
 
-        // Check if the user is authorized for the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(lab)) {
-            throw new SecurityException("User is not a member of this lab");
+        Specification<BillingEntity> spec = BillingSpecifications.inLab(labId);
+        if (filter.getPaymentStatus() != null && !filter.getPaymentStatus().isBlank()) {
+            spec = spec.and(BillingSpecifications.hasPaymentStatus(filter.getPaymentStatus()));
+        }
+        if (filter.getPaymentMethod() != null && !filter.getPaymentMethod().isBlank()) {
+            spec = spec.and(BillingSpecifications.hasPaymentMethod(filter.getPaymentMethod()));
+        }
+        if (filter.getFrom() != null) {
+            spec = spec.and(BillingSpecifications.paidFrom(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            spec = spec.and(BillingSpecifications.paidTo(filter.getTo()));
+        }
+        if (filter.getMinAmount() != null) {
+            spec = spec.and(BillingSpecifications.netAmountAtLeast(filter.getMinAmount()));
+        }
+        if (filter.getMaxAmount() != null) {
+            spec = spec.and(BillingSpecifications.netAmountAtMost(filter.getMaxAmount()));
+        }
+        if (filter.getCursor() != null) {
+            spec = spec.and(BillingSpecifications.before(filter.getCursor()));
         }
 
-        // Fetch the billing list
-        List<BillingEntity> billingList = billingRepository.findAll();
+        // one extra row tells whether another page exists, without a count query
+        List<BillingEntity> billingList = billingRepository.findBy(spec, query -> query
+                .sortBy(BILLING_ORDER)
+                .limit(size + 1)
+                .all());
 
+        boolean hasMore = billingList.size() > size;
+        if (hasMore) {
+            billingList = billingList.subList(0, size);
+        }
+        Long nextCursor = hasMore ? billingList.get(billingList.size() - 1).getId() : null;
 
         // Transform entities to DTOs
-        return billingList.stream()
+        List<BillingDTO> billings = billingList.stream()
                 .map(billingEntity -> {
                     BillingDTO dto = new BillingDTO();
                     dto.setTotalAmount(billingEntity.getTotalAmount());
                     dto.setPaymentStatus(billingEntity.getPaymentStatus());
                     dto.setPaymentMethod(billingEntity.getPaymentMethod());
-                    dto.setPaymentDate(billingEntity.getPaymentDate().toString()); // Ensure date is in string format
+                    dto.setPaymentDate(billingEntity.getPaymentDate());
                     dto.setDiscount(billingEntity.getDiscount());
                     dto.setGstRate(billingEntity.getGstRate());
                     dto.setGstAmount(billingEntity.getGstAmount());
@@ -65,34 +115,31 @@ public class BillingService {
                     return dto;
                 })
                 .collect(Collectors.toList());
+
+        return new BillingPageDTO(billings, nextCursor, hasMore);
     }
 
 
 
+    @Transactional(readOnly = true)
     public List<BillingDTO> getBillingDetailsByPatientId(Long labId, Optional<User> currentUser, Long patientId) {
 
         // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            throw new RuntimeException("Lab not found");
+        if (!labRepository.existsById(labId)) {
+            throw NotFoundException.LAB;
         }
 
         // Check if the user is authorized for the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(labOptional.get())) {
-            throw new RuntimeException("User is not authorized for this lab");
-        }
-
-        // Check if the patient exists
-        Optional<PatientEntity> patientOptional = patientRepository.findById(patientId);
-        if (patientOptional.isEmpty()) {
-            throw new RuntimeException("Patient not found");
+        if (currentUser.isEmpty() || !labAccessableFilter.checkAccess(labId, currentUser.get()).isGranted()) {
+            throw UnauthorizedException.NOT_MEMBER;
         }
 
-        // Ensure the patient belongs to the lab
+        // Check if the patient exists and belongs to the lab
         PatientEntity patientEntity = patientRepository.findById(patientId)
-                .filter(patient -> patient.getLabs().stream()
-                        .anyMatch(existingLab -> Objects.equals(existingLab.getId(), labId)))
-                .orElseThrow(() -> new RuntimeException("Patient not found for the specified lab"));
+                .orElseThrow(() -> NotFoundException.PATIENT);
+        if (patientEntity.getLabs().stream().noneMatch(existingLab -> Objects.equals(existingLab.getId(), labId))) {
+            throw NotFoundException.LAB_PATIENT;
+        }
 
         // Fetch visits associated with the patient
         List<VisitEntity> visits = visitRepository.findByPatientId(patientId);
@@ -0,0 +1,176 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.QuoteMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tiameds.com.tiameds.exception.TooManyRequestsException;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams lab data as CSV straight from a forward-only JDBC cursor to the response, so an export holds
+ * one fetch of rows in memory regardless of its size and starts sending before the query is finished.
+ * <p>
+ * The price is a pooled connection held for the whole download, however slow the client reads. So only
+ * {@code spring.csv-export.max-concurrent} exports run at once and further ones get 429 Too Many Requests; each
+ * fetch is bounded by a statement timeout, the connection may sit idle between fetches for no longer than the idle
+ * timeout while the client catches up, and the transaction is rolled back once it exceeds the max duration.
+ */
+@Service
+public class CsvExportService {
+
+    private static final String[] TEST_HEADERS = {"Category Name", "LabTest Name", "Price(INR)"};
+    private static final String TESTS_SQL = "SELECT t.category, t.name, t.price FROM tests t " +
+            "JOIN lab_tests lt ON lt.test_id = t.test_id WHERE lt.lab_id = ? ORDER BY t.test_id";
+
+    private static final String[] PATIENT_HEADERS = {"Patient Id", "First Name", "Last Name", "Email", "Phone",
+            "Address", "City", "State", "Zip", "Blood Group", "Date Of Birth"};
+    private static final String PATIENTS_SQL = "SELECT p.patient_id, p.first_name, p.last_name, p.email, p.phone, " +
+            "p.address, p.city, p.state, p.zip, p.blood_group, p.date_of_birth FROM patients p " +
+            "JOIN lab_patients lp ON lp.patient_id = p.patient_id WHERE lp.lab_id = ? ORDER BY p.patient_id";
+
+    private static final String[] VISIT_HEADERS = {"Visit Id", "Visit Date", "Visit Type", "Visit Status",
+            "Patient Id", "First Name", "Last Name", "Phone", "Doctor Id", "Doctor Name", "Payment Status",
+            "Payment Method", "Payment Date", "Total Amount", "Discount", "GST Amount", "Net Amount"};
+    private static final String VISITS_SQL = "SELECT v.visit_id, v.visit_date, v.visit_type, v.visit_status, " +
+            "p.patient_id, p.first_name, p.last_name, p.phone, v.doctor_id, d.name, b.payment_status, " +
+            "b.payment_method, b.payment_date, b.total_amount, b.discount, b.gst_amount, b.net_amount " +
+            "FROM patient_visits v JOIN patients p ON p.patient_id = v.patient_id " +
+            "LEFT JOIN doctors d ON d.doctor_id = v.doctor_id " +
+            "LEFT JOIN billing b ON b.billing_id = v.billing_id " +
+            "WHERE v.lab_id = ? ORDER BY v.visit_id";
+
+    private static final String TIMEOUTS_SQL = "SELECT set_config('statement_timeout', ?, true), " +
+            "set_config('idle_in_transaction_session_timeout', ?, true)";
+
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore exports;
+    private final String statementTimeout;
+    private final String idleTimeout;
+    private final Duration maxDuration;
+
+    public CsvExportService(DataSource dataSource,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${spring.csv-export.fetch-size:1000}") int fetchSize,
+                            @Value("${spring.csv-export.max-concurrent:2}") int maxConcurrent,
+                            @Value("${spring.csv-export.statement-timeout:30s}") Duration statementTimeout,
+                            @Value("${spring.csv-export.idle-timeout:1m}") Duration idleTimeout,
+                            @Value("${spring.csv-export.max-duration:10m}") Duration maxDuration) {
+        // Postgres only streams with a fetch size inside a transaction; otherwise it reads the whole result first
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.readOnlyTransaction.setTimeout(Math.toIntExact(maxDuration.toSeconds()));
+        this.exports = new Semaphore(maxConcurrent);
+        this.statementTimeout = String.valueOf(statementTimeout.toMillis());
+        this.idleTimeout = String.valueOf(idleTimeout.toMillis());
+        this.maxDuration = maxDuration;
+    }
+
+    public ResponseEntity<StreamingResponseBody> exportTests(long labId, String labName, boolean gzip) {
+        return export(labName + "_tests.csv", gzip, TEST_HEADERS, TESTS_SQL, labId);
+    }
+
+    public ResponseEntity<StreamingResponseBody> exportPatients(long labId, String labName, boolean gzip) {
+        return export(labName + "_patients.csv", gzip, PATIENT_HEADERS, PATIENTS_SQL, labId);
+    }
+
+    public ResponseEntity<StreamingResponseBody> exportVisits(long labId, String labName, boolean gzip) {
+        return export(labName + "_visits.csv", gzip, VISIT_HEADERS, VISITS_SQL, labId);
+    }
+
+    /**
+     * @param acceptEncoding the request's Accept-Encoding header, may be null
+     * @return whether the client takes a gzip encoded body
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String filename, boolean gzip, String[] headers,
+                                                         String sql, long labId) {
+        // taken on the request thread, so a refused export still gets its 429 before the response starts
+        if (!exports.tryAcquire()) {
+            throw TooManyRequestsException.CSV_EXPORTS_BUSY;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        StreamingResponseBody body = outputStream -> {
+            try {
+                write(outputStream, gzip, headers, sql, labId);
+            } finally {
+                if (released.compareAndSet(false, true)) {
+                    exports.release();
+                }
+            }
+        };
+
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.setContentDisposition(ContentDisposition.attachment()
+                .filename(filename, StandardCharsets.UTF_8)
+                .build());
+        responseHeaders.setContentType(new MediaType("text", "csv", StandardCharsets.UTF_8));
+        responseHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            responseHeaders.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ResponseEntity.ok().headers(responseHeaders).body(body);
+    }
+
+    private void write(OutputStream outputStream, boolean gzip, String[] headers, String sql, long labId)
+            throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream;
+        CSVFormat format = CSVFormat.DEFAULT.withHeader(headers).withQuoteMode(QuoteMode.ALL);
+        try (CSVPrinter printer = new CSVPrinter(
+                new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8)), format)) {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                // set_config(..., true) lasts until the transaction ends, so the pooled connection gets its defaults back
+                cursorJdbcTemplate.queryForList(TIMEOUTS_SQL, statementTimeout, idleTimeout);
+                long deadline = System.nanoTime() + maxDuration.toNanos();
+                cursorJdbcTemplate.query(sql, rs -> {
+                    // the transaction timeout is only checked when a statement starts, not between fetches
+                    if (System.nanoTime() - deadline > 0) {
+                        throw new TransactionTimedOutException("CSV export ran longer than " + maxDuration);
+                    }
+                    printRow(printer, rs, headers.length);
+                }, labId);
+            });
+        }
+    }
+
+    private static void printRow(CSVPrinter printer, ResultSet rs, int columns) throws SQLException {
+        try {
+            for (int i = 1; i <= columns; i++) {
+                printer.print(rs.getObject(i));
+            }
+            printer.println();
+        } catch (IOException e) {
+            // client went away; abort the query instead of reading the rest of the result
+            throw new UncheckedIOException(e);
+        }
+    }
+}
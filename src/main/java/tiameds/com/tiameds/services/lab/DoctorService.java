@@ -1,13 +1,19 @@
 package tiameds.com.tiameds.services.lab;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tiameds.com.tiameds.dto.lab.DoctorDTO;
 import tiameds.com.tiameds.entity.Doctors;
 import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.entity.LabCatalogKey;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.DoctorRepository;
+import tiameds.com.tiameds.repository.LabCatalogKeyRepository;
 import tiameds.com.tiameds.repository.LabRepository;
-import tiameds.com.tiameds.utils.UserAuthService;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -18,26 +24,27 @@ public class DoctorService {
 
     private final DoctorRepository doctorRepository;
     private final LabRepository labRepository;
-    private final UserAuthService userAuthService;
+    private final CatalogResponseCache catalogResponseCache;
+    private final LabCatalogKeyRepository labCatalogKeyRepository;
 
-    public DoctorService(DoctorRepository doctorRepository, LabRepository labRepository, UserAuthService userAuthService) {
+    public DoctorService(DoctorRepository doctorRepository, LabRepository labRepository, CatalogResponseCache catalogResponseCache,
+                         LabCatalogKeyRepository labCatalogKeyRepository) {
         this.doctorRepository = doctorRepository;
         this.labRepository = labRepository;
-        this.userAuthService = userAuthService;
+        this.catalogResponseCache = catalogResponseCache;
+        this.labCatalogKeyRepository = labCatalogKeyRepository;
     }
 
     // Add doctor to lab
+    @Transactional
     public void addDoctorToLab(Long labId, DoctorDTO doctorDTO) {
         // Retrieve the lab and authenticate the user
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
-        // Verify if the doctor already exists in the lab
-        List<Doctors> existingDoctors = lab.getDoctors().stream()
-                .filter(doctor -> doctor.getEmail().equals(doctorDTO.getEmail()))
-                .collect(Collectors.toList());
-
-        if (!existingDoctors.isEmpty()) {
-            throw new RuntimeException("Doctor already exists in this lab");
+                .orElseThrow(() -> NotFoundException.LAB);
+        // Verify if the doctor already exists in the lab, through the unique key index
+        String emailKey = LabCatalogKey.normalize(doctorDTO.getEmail());
+        if (emailKey != null && labCatalogKeyRepository.existsByLabIdAndCatalogAndNameKey(labId, CatalogResponseCache.DOCTORS, emailKey)) {
+            throw BadRequestException.DOCTOR_EXISTS;
         }
         // Create a new doctor and add to lab
         Doctors doctor = new Doctors();
@@ -56,24 +63,30 @@ public class DoctorService {
 
         doctorRepository.save(doctor);
         // Add the doctor to the lab
-        lab.getDoctors().add(doctor);
-        labRepository.save(lab);
+        doctorRepository.linkToLab(labId, doctor.getId());
+        try {
+            // a concurrent add of the same email loses here
+            labCatalogKeyRepository.claim(labId, CatalogResponseCache.DOCTORS, emailKey, doctor.getId());
+        } catch (DataIntegrityViolationException e) {
+            throw BadRequestException.DOCTOR_EXISTS;
+        }
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.DOCTORS);
     }
 
     public void updateDoctor(Long labId, Long doctorId, DoctorDTO doctorDTO) {
 
         // Retrieve the lab and authenticate the user
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Retrieve the doctor
         Doctors doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new RuntimeException("Doctor not found"));
+                .orElseThrow(() -> NotFoundException.DOCTOR);
 
 
         //check doctor belongs to lab
         if (!lab.getDoctors().contains(doctor)) {
-            throw new RuntimeException("Doctor not found in this lab");
+            throw NotFoundException.LAB_DOCTOR;
         }
 
         // Update the doctor details
@@ -89,17 +102,29 @@ public class DoctorService {
         doctor.setState(doctorDTO.getState());
         doctor.setCountry(doctorDTO.getCountry());
 
+        try {
+            labCatalogKeyRepository.rekey(CatalogResponseCache.DOCTORS, doctorId, LabCatalogKey.normalize(doctorDTO.getEmail()));
+        } catch (DataIntegrityViolationException e) {
+            throw new BadRequestException("Another doctor with this email already exists in the lab");
+        }
         doctorRepository.save(doctor);
+
+        // the doctor may work for other labs as well
+        doctorRepository.findLabIdsByDoctorId(doctorId)
+                .forEach(id -> catalogResponseCache.catalogChanged(id, CatalogResponseCache.DOCTORS));
     }
 
     public void deleteDoctor(Long labId, Long doctorId) {
         // Retrieve the lab and authenticate the user
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Retrieve the doctor
         Doctors doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new RuntimeException("Doctor not found"));
+                .orElseThrow(() -> NotFoundException.DOCTOR);
+
+        // the doctor is deleted, so every lab listing them gets a new catalog
+        List<Long> labIds = doctorRepository.findLabIdsByDoctorId(doctorId);
 
         // Remove the doctor from the lab
         lab.getDoctors().remove(doctor);
@@ -107,12 +132,14 @@ public class DoctorService {
 
         // Delete the doctor
         doctorRepository.delete(doctor);
+        labCatalogKeyRepository.release(CatalogResponseCache.DOCTORS, doctorId);
+        labIds.forEach(id -> catalogResponseCache.catalogChanged(id, CatalogResponseCache.DOCTORS));
     }
 
     public Object getAllDoctors(Long labId) {
         // Retrieve the lab and authenticate the user
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         return lab.getDoctors().stream()
                 .map(doctor -> {
@@ -136,18 +163,19 @@ public class DoctorService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public Object getDoctorById(Long labId, Long doctorId) {
         // Retrieve the lab and authenticate the user
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Retrieve the doctor
         Doctors doctor = doctorRepository.findById(doctorId)
-                .orElseThrow(() -> new RuntimeException("Doctor not found"));
+                .orElseThrow(() -> NotFoundException.DOCTOR);
 
         // Verify if the doctor belongs to the lab
         if (!lab.getDoctors().contains(doctor)) {
-            throw new RuntimeException("Doctor not found in this lab");
+            throw NotFoundException.LAB_DOCTOR;
         }
 
         DoctorDTO doctorDTO = new DoctorDTO();
@@ -1,14 +1,16 @@
 package tiameds.com.tiameds.services.lab;
 
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tiameds.com.tiameds.dto.lab.InsuranceDTO;
 import tiameds.com.tiameds.entity.InsuranceEntity;
 import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.InsuranceRepository;
 import tiameds.com.tiameds.repository.LabRepository;
-import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
 
 import java.util.stream.Collectors;
 
@@ -18,20 +20,22 @@ public class InsuranceServices {
 
     private InsuranceRepository insuranceRepository;
     private LabRepository labRepository;
+    private final CatalogResponseCache catalogResponseCache;
 
-    public InsuranceServices(InsuranceRepository insuranceRepository, LabRepository labRepository) {
+    public InsuranceServices(InsuranceRepository insuranceRepository, LabRepository labRepository, CatalogResponseCache catalogResponseCache) {
         this.insuranceRepository = insuranceRepository;
         this.labRepository = labRepository;
+        this.catalogResponseCache = catalogResponseCache;
     }
 
     public void addInsurance(Long labId, InsuranceDTO insuranceDTO) {
         //retrieve the lab and authenticate the user
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         //check if insurance already exists in the particular lab
         if (insuranceRepository.existsByNameAndLabId(insuranceDTO.getName(), labId)) {
-            ApiResponseHelper.errorResponse("Insurance already exists in this lab", HttpStatus.BAD_REQUEST);
+            throw new BadRequestException("Insurance already exists in this lab");
         }
         //create a new insurance and add to lab
         InsuranceEntity insurance = new InsuranceEntity();
@@ -45,6 +49,7 @@ public class InsuranceServices {
         insurance.setProvider(insuranceDTO.getProvider());
         insurance.setLab(lab);
         insuranceRepository.save(insurance);
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.INSURANCE);
 
     }
 
@@ -52,7 +57,7 @@ public class InsuranceServices {
     public Object getAllInsurance(Long labId) {
 
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
         return lab.getInsurance().stream()
                 .map(insurance -> new InsuranceDTO(
                         insurance.getId(),
@@ -69,15 +74,16 @@ public class InsuranceServices {
     }
 
     // get those insurance which are matched with labid and insuranceid
+    @Transactional(readOnly = true)
     public Object getInsuranceById(Long labId, Long insuranceId) {
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the lab contains the specified insurance
         InsuranceEntity insurance = lab.getInsurance().stream()
                 .filter(insuranceEntity -> insuranceEntity.getId() == insuranceId.intValue())
                 .findFirst()
-                .orElseThrow(() -> new RuntimeException("Insurance not found"));
+                .orElseThrow(() -> NotFoundException.INSURANCE);
 
         return new InsuranceDTO(
                 insurance.getId(),
@@ -97,13 +103,13 @@ public class InsuranceServices {
     // update insurance where labid and insuranceid are matched means insurance is associated with that lab only
     public void updateInsurance(Long labId, Long insuranceId, InsuranceDTO insuranceDTO) {
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the lab contains the specified insurance
         InsuranceEntity insurance = lab.getInsurance().stream()
                 .filter(insuranceEntity -> insuranceEntity.getId() == insuranceId.intValue())
                 .findFirst()
-                .orElseThrow(() -> new RuntimeException("Insurance not found"));
+                .orElseThrow(() -> NotFoundException.INSURANCE);
 
         insurance.setName(insuranceDTO.getName());
         insurance.setDescription(insuranceDTO.getDescription());
@@ -114,20 +120,22 @@ public class InsuranceServices {
         insurance.setStatus(insuranceDTO.getStatus());
         insurance.setProvider(insuranceDTO.getProvider());
         insuranceRepository.save(insurance);
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.INSURANCE);
     }
 
 
     // delete insurance where labid and insuranceid are matched means insurance is associated with that lab only
     public void deleteInsurance(Long labId, Long insuranceId) {
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the lab contains the specified insurance
         InsuranceEntity insurance = lab.getInsurance().stream()
                 .filter(insuranceEntity -> insuranceEntity.getId() == insuranceId.intValue())
                 .findFirst()
-                .orElseThrow(() -> new RuntimeException("Insurance not found"));
+                .orElseThrow(() -> NotFoundException.INSURANCE);
 
         insuranceRepository.delete(insurance);
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.INSURANCE);
     }
 }
@@ -1,19 +1,19 @@
 package tiameds.com.tiameds.services.lab;
 
-import jakarta.transaction.Transactional;
-import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import tiameds.com.tiameds.dto.lab.BillingDTO;
 import tiameds.com.tiameds.dto.lab.PatientDTO;
 import tiameds.com.tiameds.dto.lab.VisitDTO;
 import tiameds.com.tiameds.entity.*;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.*;
-import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.CachedEntityLoader;
 
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,9 +27,10 @@ public class PatientService {
     private final HealthPackageRepository packageRepository;
     private final InsuranceRepository insuranceRepository;
     private final BillingRepository billingRepository;
+    private final RevenueRollupService revenueRollupService;
+    private final CachedEntityLoader cachedEntityLoader;
 
-
-    public PatientService(LabRepository labRepository, TestRepository testRepository, HealthPackageRepository healthPackageRepository, PatientRepository patientRepository, DoctorRepository doctorRepository, HealthPackageRepository packageRepository, InsuranceRepository insuranceRepository, BillingRepository billingRepository) {
+    public PatientService(LabRepository labRepository, TestRepository testRepository, HealthPackageRepository healthPackageRepository, PatientRepository patientRepository, DoctorRepository doctorRepository, HealthPackageRepository packageRepository, InsuranceRepository insuranceRepository, BillingRepository billingRepository, RevenueRollupService revenueRollupService, CachedEntityLoader cachedEntityLoader) {
         this.labRepository = labRepository;
         this.testRepository = testRepository;
         this.healthPackageRepository = healthPackageRepository;
@@ -38,13 +39,15 @@ public class PatientService {
         this.packageRepository = packageRepository;
         this.insuranceRepository = insuranceRepository;
         this.billingRepository = billingRepository;
+        this.revenueRollupService = revenueRollupService;
+        this.cachedEntityLoader = cachedEntityLoader;
     }
 
     @Transactional
     public void savePatientWithDetails(Lab lab, PatientDTO patientDTO) {
 
-        if (patientRepository.existsByEmail(patientDTO.getPhone())) {
-            ApiResponseHelper.errorResponse("Patient already exist", HttpStatus.BAD_REQUEST);
+        if (patientRepository.existsByPhone(patientDTO.getPhone())) {
+            throw BadRequestException.PATIENT_EXISTS;
         }
 
         // Convert PatientDTO to PatientEntity
@@ -67,57 +70,53 @@ public class PatientService {
         VisitDTO visitDTO = patientDTO.getVisit();
         if (visitDTO != null) {
             VisitEntity visit = new VisitEntity();
+            visit.setLab(lab);
             visit.setVisitDate(visitDTO.getVisitDate());
             visit.setVisitType(visitDTO.getVisitType());
             visit.setVisitStatus(visitDTO.getVisitStatus());
             visit.setVisitDescription(visitDTO.getVisitDescription());
 
             //check doctors belong to the lab or not
-            if (!lab.getDoctors().contains(doctorRepository.findById(visitDTO.getDoctorId()).orElseThrow(() -> new RuntimeException("Doctor not found")))) {
-                ApiResponseHelper.errorResponse("Doctor not belong to the lab", HttpStatus.BAD_REQUEST);
+            Doctors doctor = doctorRepository.findById(visitDTO.getDoctorId()).orElseThrow(() -> NotFoundException.DOCTOR);
+            if (!lab.getDoctors().contains(doctor)) {
+                throw BadRequestException.DOCTOR_NOT_IN_LAB;
             }
 
             // Associate doctor
-            visit.setDoctor(doctorRepository.findById(visitDTO.getDoctorId())
-                    .orElseThrow(() -> new RuntimeException("Doctor not found")));
+            visit.setDoctor(doctor);
 
             //check test belong to the lab or not
-            List<Test> tests = testRepository.findAllById(visitDTO.getTestIds());
+            List<Test> tests = cachedEntityLoader.findAllById(Test.class, visitDTO.getTestIds());
             if (tests.stream().anyMatch(test -> !lab.getTests().contains(test))) {
-                ApiResponseHelper.errorResponse("Test not belong to the lab", HttpStatus.BAD_REQUEST);
+                throw BadRequestException.TEST_NOT_IN_LAB;
             }
 
             // Associate tests
             if (visitDTO.getTestIds() != null) {
-                visit.setTests(new HashSet<>(testRepository.findAllById(visitDTO.getTestIds())));
+                visit.setTests(new HashSet<>(tests));
             }
 
             //check health package belong to the lab or not
-            List<HealthPackage> healthPackages = healthPackageRepository.findAllById(visitDTO.getPackageIds());
+            List<HealthPackage> healthPackages = cachedEntityLoader.findAllById(HealthPackage.class, visitDTO.getPackageIds());
             if (healthPackages.stream().anyMatch(healthPackage -> !lab.getHealthPackages().contains(healthPackage))) {
-                ApiResponseHelper.errorResponse("Health package not belong to the lab", HttpStatus.BAD_REQUEST);
+                throw BadRequestException.PACKAGE_NOT_IN_LAB;
             }
 
 
             // Associate packages
             if (visitDTO.getPackageIds() != null) {
-                visit.setPackages(new HashSet<>(packageRepository.findAllById(visitDTO.getPackageIds())));
+                visit.setPackages(new HashSet<>(healthPackages));
             }
 
             //check insurance belong to the lab or not
-            List<InsuranceEntity> insurances = insuranceRepository.findAllById(visitDTO.getInsuranceIds().stream().map(Long::intValue).collect(Collectors.toList()));
-            if (insurances.stream().anyMatch(insurance -> !lab.getInsurances().contains((CharSequence) insurance))) {
-                ApiResponseHelper.errorResponse("Insurance not belong to the lab", HttpStatus.BAD_REQUEST);
+            List<InsuranceEntity> insurances = cachedEntityLoader.findAllById(InsuranceEntity.class, visitDTO.getInsuranceIds());
+            if (insurances.stream().anyMatch(insurance -> !insurance.getLabs().contains(lab))) {
+                throw BadRequestException.INSURANCE_NOT_IN_LAB;
             }
 
             // Associate insurance
             if (visitDTO.getInsuranceIds() != null) {
-                List<Integer> insuranceIds = visitDTO.getInsuranceIds()
-                        .stream()
-                        .map(Long::intValue) // Convert Long to Integer
-                        .toList(); // Create a new List of Integer
-
-                visit.setInsurance(new HashSet<>(insuranceRepository.findAllById(insuranceIds)));
+                visit.setInsurance(new HashSet<>(insurances));
             }
 
             // Handle billing details
@@ -135,6 +134,7 @@ public class PatientService {
                 billing.setSgstAmount(billingDTO.getSgstAmount());
                 billing.setIgstAmount(billingDTO.getIgstAmount());
                 billing.setNetAmount(billingDTO.getNetAmount());
+                billing.setLab(lab);
 
                 visit.setBilling(billing);
             }
@@ -146,15 +146,14 @@ public class PatientService {
 
         // Save patient and related entities
         patientRepository.save(patient);
-    }
 
-
-    public boolean existsByPhone(String phone) {
-        return patientRepository.existsByPhone(phone);
+        // the billing was persisted with the patient
+        patient.getVisits().forEach(visit -> revenueRollupService.record(visit.getBilling()));
     }
 
 
     //get all patients by lab id
+    @Transactional(readOnly = true)
     public List<PatientDTO> getAllPatientsByLabId(Long labId) {
         return patientRepository.findAllByLabsId(labId).stream()
                 .map(patient -> {
@@ -176,22 +175,18 @@ public class PatientService {
 
 
     //get patient by id of the lab
-    public Object getPatientById(Long patientId, Long labId) {
+    @Transactional(readOnly = true)
+    public PatientDTO getPatientById(Long patientId, Long labId) {
 
         // Get the lab by ID
-        Optional<Lab> lab = labRepository.findById(labId);
-        if (lab.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
+        Lab lab = labRepository.findById(labId).orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the patient exists and belongs to the given lab
-        Optional<PatientEntity> patient = patientRepository.findById(patientId);
-        if (patient.isEmpty() || !patient.get().getLabs().contains(lab.get())) {
-            return ApiResponseHelper.errorResponse("Patient not found for the specified lab", HttpStatus.NOT_FOUND);
-        }
+        PatientEntity patientEntity = patientRepository.findById(patientId)
+                .filter(patient -> patient.getLabs().contains(lab))
+                .orElseThrow(() -> NotFoundException.LAB_PATIENT);
 
         // Make the response
-        PatientEntity patientEntity = patient.get();
         PatientDTO patientDTO = new PatientDTO();
         patientDTO.setFirstName(patientEntity.getFirstName());
         patientDTO.setLastName(patientEntity.getLastName());
@@ -215,13 +210,13 @@ public class PatientService {
     public void updatePatient(Long patientId, Long labId, PatientDTO patientDTO) {
         // Check if the lab exists
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the patient exists and belongs to the lab
         PatientEntity patientEntity = patientRepository.findById(patientId)
                 .filter(patient -> patient.getLabs().stream()
                         .anyMatch(existingLab -> Objects.equals(existingLab.getId(), labId)))
-                .orElseThrow(() -> new RuntimeException("Patient not found for the specified lab"));
+                .orElseThrow(() -> NotFoundException.LAB_PATIENT);
 
         // Update the patient details from the DTO
         patientEntity.setFirstName(patientDTO.getFirstName());
@@ -243,16 +238,22 @@ public class PatientService {
         patientRepository.save(patientEntity);
     }
 
+    @Transactional
     public void deletePatient(Long patientId, Long labId) {
         // Check if the lab exists
         Lab lab = labRepository.findById(labId)
-                .orElseThrow(() -> new RuntimeException("Lab not found"));
+                .orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the patient exists and belongs to the lab
         PatientEntity patientEntity = patientRepository.findById(patientId)
                 .filter(patient -> patient.getLabs().stream()
                         .anyMatch(existingLab -> Objects.equals(existingLab.getId(), labId)))
-                .orElseThrow(() -> new RuntimeException("Patient not found for the specified lab"));
+                .orElseThrow(() -> NotFoundException.LAB_PATIENT);
+
+        // the visits and their billings are removed with the patient, so their revenue leaves the rollup first
+        for (VisitEntity visit : patientEntity.getVisits()) {
+            revenueRollupService.unrecord(visit.getBilling());
+        }
 
         // Delete the patient
         patientRepository.delete(patientEntity);
@@ -0,0 +1,157 @@
+package tiameds.com.tiameds.services.lab;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import tiameds.com.tiameds.dto.lab.RevenueReportDTO;
+import tiameds.com.tiameds.entity.BillingEntity;
+import tiameds.com.tiameds.repository.LabRevenueDailyRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the per lab, day and payment method revenue rows and answers the revenue reports from them.
+ * Writers call {@link #record} / {@link #unrecord} inside the transaction that writes the billing, so the
+ * rollup commits or rolls back together with it.
+ */
+@Slf4j
+@Service
+public class RevenueRollupService {
+
+    private static final String UNKNOWN_METHOD = "UNKNOWN";
+
+    private final LabRevenueDailyRepository labRevenueDailyRepository;
+
+    public RevenueRollupService(LabRevenueDailyRepository labRevenueDailyRepository) {
+        this.labRevenueDailyRepository = labRevenueDailyRepository;
+    }
+
+    // adds a newly written billing, or the new state of an updated one
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(BillingEntity billing) {
+        apply(billing, 1);
+    }
+
+    // takes out a billing before it is updated or deleted
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void unrecord(BillingEntity billing) {
+        apply(billing, -1);
+    }
+
+    private void apply(BillingEntity billing, int sign) {
+        if (billing == null || billing.getLab() == null) {
+            return;
+        }
+        labRevenueDailyRepository.addToDay(
+                billing.getLab().getId(),
+                revenueDate(billing),
+                billing.getPaymentMethod() != null ? billing.getPaymentMethod() : UNKNOWN_METHOD,
+                sign,
+                signed(billing.getTotalAmount(), sign),
+                signed(billing.getDiscount(), sign),
+                signed(billing.getGstAmount(), sign),
+                signed(billing.getCgstAmount(), sign),
+                signed(billing.getSgstAmount(), sign),
+                signed(billing.getIgstAmount(), sign),
+                signed(billing.getNetAmount(), sign));
+    }
+
+    private static BigDecimal signed(BigDecimal amount, int sign) {
+        if (amount == null) {
+            return BigDecimal.ZERO;
+        }
+        return sign < 0 ? amount.negate() : amount;
+    }
+
+    // same rule as the billing_revenue_date SQL function (V7), so incremental updates, rebuilds and filters agree
+    static LocalDate revenueDate(BillingEntity billing) {
+        String paymentDate = billing.getPaymentDate();
+        if (paymentDate != null && paymentDate.length() >= 10) {
+            try {
+                return LocalDate.parse(paymentDate.substring(0, 10));
+            } catch (DateTimeParseException ignored) {
+                // fall back to the creation day
+            }
+        }
+        // the creation timestamp is set when the billing is saved, which record and unrecord rely on
+        if (billing.getCreatedAt() == null) {
+            throw new IllegalStateException("Billing " + billing.getId() + " has not been saved yet");
+        }
+        return billing.getCreatedAt().toLocalDate();
+    }
+
+    /**
+     * Recomputes the revenue rows of one lab from its billings.
+     *
+     * @return the number of rows written
+     */
+    @Transactional
+    public int rebuildLab(long labId) {
+        labRevenueDailyRepository.lockRebuilds();
+        labRevenueDailyRepository.deleteByLabId(labId);
+        return labRevenueDailyRepository.rebuildLab(labId);
+    }
+
+    /**
+     * Recomputes the revenue rows of every lab, e.g. after a data fix or import that bypassed the services.
+     *
+     * @return the number of rows written
+     */
+    @Transactional
+    public int rebuildAll() {
+        labRevenueDailyRepository.lockRebuilds();
+        labRevenueDailyRepository.deleteAllRows();
+        return labRevenueDailyRepository.rebuildAll();
+    }
+
+    // billings written before the rollup existed; their labs were assigned by migrations V4 and V5
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void buildIfEmpty() {
+        // nodes starting together wait for each other here; the later ones find the table filled
+        labRevenueDailyRepository.lockRebuilds();
+        if (labRevenueDailyRepository.count() == 0) {
+            int rows = rebuildAll();
+            if (rows > 0) {
+                log.info("Built {} revenue rollup rows from existing billings", rows);
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<RevenueReportDTO> getDailyRevenue(long labId, LocalDate from, LocalDate to) {
+        return toReport(labRevenueDailyRepository.findDaily(labId, from, to));
+    }
+
+    @Transactional(readOnly = true)
+    public List<RevenueReportDTO> getMonthlyRevenue(long labId, LocalDate from, LocalDate to) {
+        return toReport(labRevenueDailyRepository.findMonthly(labId, from, to));
+    }
+
+    @Transactional(readOnly = true)
+    public List<RevenueReportDTO> getRevenueByPaymentMethod(long labId, LocalDate from, LocalDate to) {
+        return toReport(labRevenueDailyRepository.findByPaymentMethod(labId, from, to));
+    }
+
+    private List<RevenueReportDTO> toReport(List<LabRevenueDailyRepository.RevenueView> rows) {
+        return rows.stream()
+                .map(row -> new RevenueReportDTO(
+                        row.getPeriod(),
+                        row.getBillingCount() != null ? row.getBillingCount() : 0,
+                        row.getTotalAmount(),
+                        row.getDiscount(),
+                        row.getGstAmount(),
+                        row.getCgstAmount(),
+                        row.getSgstAmount(),
+                        row.getIgstAmount(),
+                        row.getNetAmount()))
+                .collect(Collectors.toList());
+    }
+}
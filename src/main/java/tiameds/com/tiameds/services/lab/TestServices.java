@@ -1,103 +1,289 @@
 package tiameds.com.tiameds.services.lab;
 
-import jakarta.transaction.Transactional;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import tiameds.com.tiameds.dto.lab.CsvImportReportDTO;
+import tiameds.com.tiameds.dto.lab.TestDTO;
 import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.entity.LabCatalogKey;
 import tiameds.com.tiameds.entity.Test;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
+import tiameds.com.tiameds.repository.LabCatalogKeyRepository;
+import tiameds.com.tiameds.repository.TestCatalogJdbcRepository;
 import tiameds.com.tiameds.repository.TestRepository;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
+import tiameds.com.tiameds.utils.TestCatalogSnapshots;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class TestServices {
 
+    private static final List<String> CSV_HEADERS = List.of("Category Name", "LabTest Name", "Price(INR)");
+    private static final int MAX_REPORTED_ERRORS = 500;
+
     private final TestRepository testRepository;
+    private final TestCatalogJdbcRepository testCatalogJdbcRepository;
+    private final LabCatalogKeyRepository labCatalogKeyRepository;
+    private final TestCatalogSnapshots testCatalogSnapshots;
+    private final TransactionTemplate transactionTemplate;
+    private final int importBatchSize;
 
-    public TestServices(TestRepository testRepository) {
+    public TestServices(TestRepository testRepository,
+                        TestCatalogJdbcRepository testCatalogJdbcRepository,
+                        LabCatalogKeyRepository labCatalogKeyRepository,
+                        TestCatalogSnapshots testCatalogSnapshots,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${spring.test-import.batch-size:500}") int importBatchSize) {
         this.testRepository = testRepository;
+        this.testCatalogJdbcRepository = testCatalogJdbcRepository;
+        this.labCatalogKeyRepository = labCatalogKeyRepository;
+        this.testCatalogSnapshots = testCatalogSnapshots;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.importBatchSize = Math.max(1, importBatchSize);
     }
 
+    /**
+     * Adds a test to the lab. The name is checked with one probe of the lab's name keys and claimed in the
+     * same transaction, so the lab's tests are never loaded and two concurrent adds cannot both succeed.
+     *
+     * @throws BadRequestException if the lab already has a test with the name
+     */
     @Transactional
-    public List<Test> uploadCSV(MultipartFile file, Lab lab) throws Exception {
-        // List to store tests to be saved
-        List<Test> tests = new ArrayList<>();
+    public Test addTest(Lab lab, TestDTO testDTO) {
+        String nameKey = nameKey(testDTO);
+        if (labCatalogKeyRepository.existsByLabIdAndCatalogAndNameKey(lab.getId(), CatalogResponseCache.TESTS, nameKey)) {
+            throw BadRequestException.TEST_EXISTS;
+        }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            // Parse CSV file with headers
-            CSVParser csvParser = new CSVParser(reader, CSVFormat.DEFAULT.withFirstRecordAsHeader());
+        // Create a new Test entity from the DTO
+        Test test = new Test();
+        test.setCategory(testDTO.getCategory());
+        test.setName(testDTO.getName());
+        test.setPrice(testDTO.getPrice());
+        test.getLabs().add(lab);
+
+        testRepository.save(test);
+        testCatalogJdbcRepository.linkTest(lab.getId(), test.getId());
+        try {
+            labCatalogKeyRepository.claim(lab.getId(), CatalogResponseCache.TESTS, nameKey, test.getId());
+        } catch (DataIntegrityViolationException e) {
+            throw BadRequestException.TEST_EXISTS;
+        }
+        return test;
+    }
+
+    /**
+     * Updates a test of the lab. The test's name key is moved in every lab listing it, in the same transaction
+     * as the save, so a failed save cannot leave the key out of step with the name.
+     *
+     * @throws NotFoundException   if there is no such test
+     * @throws BadRequestException if the test is not in the lab, the name is blank or one of its labs has the name
+     */
+    @Transactional
+    public Test updateTest(long labId, long testId, TestDTO testDTO) {
+        Test test = testRepository.findById(testId)
+                .orElseThrow(() -> NotFoundException.TEST);
+        if (!testRepository.existsInLab(testId, labId)) {
+            throw BadRequestException.TEST_NOT_IN_LAB;
+        }
+        String nameKey = nameKey(testDTO);
+
+        // Move the name key first, so a name taken in one of the test's labs is rejected before anything changes
+        try {
+            labCatalogKeyRepository.rekey(CatalogResponseCache.TESTS, testId, nameKey);
+        } catch (DataIntegrityViolationException e) {
+            throw BadRequestException.TEST_EXISTS;
+        }
+
+        test.setCategory(testDTO.getCategory());
+        test.setName(testDTO.getName());
+        test.setPrice(testDTO.getPrice());
+        testRepository.save(test);
+
+        // the test may be listed by other labs as well
+        testRepository.findLabIdsByTestId(testId).forEach(testCatalogSnapshots::catalogChanged);
+        return test;
+    }
+
+    /**
+     * Deletes a test of the lab, unlinking it from every lab listing it without loading their catalogs.
+     *
+     * @throws NotFoundException   if there is no such test
+     * @throws BadRequestException if the test is not in the lab
+     */
+    @Transactional
+    public void removeTest(long labId, long testId) {
+        if (!testRepository.existsById(testId)) {
+            throw NotFoundException.TEST;
+        }
+        if (!testRepository.existsInLab(testId, labId)) {
+            throw BadRequestException.TEST_NOT_IN_LAB;
+        }
+
+        // the test is deleted, so every lab listing it gets a new catalog
+        List<Long> labIds = testRepository.findLabIdsByTestId(testId);
+        testCatalogJdbcRepository.unlinkTest(testId, labIds);
+        testRepository.deleteById(testId);
+        labCatalogKeyRepository.release(CatalogResponseCache.TESTS, testId);
+        labIds.forEach(testCatalogSnapshots::catalogChanged);
+    }
+
+    // a null or blank name would claim a NULL key and be reported as a duplicate
+    private static String nameKey(TestDTO testDTO) {
+        String nameKey = LabCatalogKey.normalize(testDTO.getName());
+        if (nameKey == null || nameKey.isEmpty()) {
+            throw BadRequestException.TEST_NAME_REQUIRED;
+        }
+        return nameKey;
+    }
+
+    /**
+     * Imports a test catalog CSV (Category Name, LabTest Name, Price(INR)) into the lab. Records are read one at a
+     * time, checked against the names already in the lab and earlier in the file, and inserted in JDBC batches
+     * that commit one chunk at a time. Bad rows do not stop the import; they are listed in the report.
+     * The lab's catalog is marked as changed once any chunk committed, even if the import fails later on.
+     */
+    public CsvImportReportDTO uploadCSV(MultipartFile file, Lab lab) throws Exception {
+        CsvImportReportDTO report = new CsvImportReportDTO();
+        long labId = lab.getId();
+        try {
+            importRows(file, labId, report);
+        } finally {
+            if (report.getImported() > 0) {
+                testCatalogSnapshots.catalogChanged(labId);
+            }
+        }
+        return report;
+    }
+
+    private void importRows(MultipartFile file, long labId, CsvImportReportDTO report) throws Exception {
+        // names already in the lab; new names are added as rows are accepted so the file is deduped too
+        Set<String> nameKeys = testCatalogJdbcRepository.findTestNameKeys(labId);
+
+        CSVFormat format = CSVFormat.DEFAULT.withFirstRecordAsHeader()
+                .withTrim()
+                .withIgnoreEmptyLines();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8));
+             CSVParser csvParser = new CSVParser(reader, format)) {
+
+            List<String> missing = CSV_HEADERS.stream()
+                    .filter(header -> !csvParser.getHeaderMap().containsKey(header))
+                    .collect(Collectors.toList());
+            if (!missing.isEmpty()) {
+                throw new BadRequestException("Missing required columns in CSV: " + String.join(", ", missing));
+            }
+
+            List<TestCatalogJdbcRepository.TestRow> chunk = new ArrayList<>(importBatchSize);
+            List<Long> chunkLines = new ArrayList<>(importBatchSize);
 
             // Process each record in the CSV file
             for (CSVRecord record : csvParser) {
+                report.setTotalRows(report.getTotalRows() + 1);
+                // quoted values may span lines, so the record number is not the line; this is where the row ends
+                long line = csvParser.getCurrentLineNumber();
+
                 // Fetch and validate required fields
-                String category = record.get("Category Name");
-                String name = record.get("LabTest Name");
-                String priceString = record.get("Price(INR)");
+                String category = record.isSet("Category Name") ? record.get("Category Name") : null;
+                String name = record.isSet("LabTest Name") ? record.get("LabTest Name") : null;
+                String priceString = record.isSet("Price(INR)") ? record.get("Price(INR)") : null;
 
-                if (category == null || name == null || priceString == null) {
-                    throw new IllegalArgumentException("Missing required fields in CSV: " + record);
+                if (category == null || category.isEmpty() || name == null || name.isEmpty()
+                        || priceString == null || priceString.isEmpty()) {
+                    rejectRow(report, line, "Missing required fields");
+                    continue;
                 }
 
                 BigDecimal price;
                 try {
                     price = new BigDecimal(priceString);
                 } catch (NumberFormatException e) {
-                    throw new IllegalArgumentException("Invalid price format in CSV: " + priceString);
+                    rejectRow(report, line, "Invalid price format: " + priceString);
+                    continue;
+                }
+                if (price.signum() < 0) {
+                    rejectRow(report, line, "Price must not be negative: " + priceString);
+                    continue;
                 }
 
-                // Create and populate Test entity
-                Test test = new Test();
-                test.setCategory(category);
-                test.setName(name);
-                test.setPrice(price);
-                test.getLabs().add(lab);  // Ensure the test is added to the correct lab
-                lab.addTest(test);
-            }
-
-            // Save all tests to the database, associating them with the specified lab
-            return testRepository.saveAll(tests);
+                if (!nameKeys.add(LabCatalogKey.normalize(name))) {
+                    report.setDuplicates(report.getDuplicates() + 1);
+                    addError(report, line, "Duplicate test name: " + name);
+                    continue;
+                }
 
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Invalid data in CSV file: " + e.getMessage(), e);
-        } catch (Exception e) {
-            throw new RuntimeException("Error processing CSV file: " + e.getMessage(), e);
+                chunk.add(new TestCatalogJdbcRepository.TestRow(category, name, price));
+                chunkLines.add(line);
+                if (chunk.size() >= importBatchSize) {
+                    flushChunk(labId, chunk, chunkLines, nameKeys, report);
+                }
+            }
+            flushChunk(labId, chunk, chunkLines, nameKeys, report);
         }
     }
 
+    // inserts and commits one chunk; if the database rejects it, its rows are retried one by one so only the
+    // offending rows are reported, and the import goes on
+    private void flushChunk(long labId, List<TestCatalogJdbcRepository.TestRow> chunk, List<Long> chunkLines,
+                            Set<String> nameKeys, CsvImportReportDTO report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            insert(labId, chunk);
+            report.setImported(report.getImported() + chunk.size());
+        } catch (DataAccessException e) {
+            for (int i = 0; i < chunk.size(); i++) {
+                TestCatalogJdbcRepository.TestRow row = chunk.get(i);
+                try {
+                    insert(labId, List.of(row));
+                    report.setImported(report.getImported() + 1);
+                } catch (DataAccessException rowFailure) {
+                    // the name was not taken after all, so a later row of the file may still use it
+                    nameKeys.remove(LabCatalogKey.normalize(row.name()));
+                    rejectRow(report, chunkLines.get(i),
+                            "Rejected by the database: " + rowFailure.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
 
-    public ResponseEntity<?> downloadCSV(Lab lab) {
-        // Fetch all tests associated with the specified lab
-        List<Test> tests = testRepository.findByLabs(lab);
+    private void insert(long labId, List<TestCatalogJdbcRepository.TestRow> rows) {
+        transactionTemplate.executeWithoutResult(status -> testCatalogJdbcRepository.insertTests(labId, rows));
+    }
 
-        // Generate CSV content
-        StringBuilder csvContent = new StringBuilder();
-        csvContent.append("Category Name,LabTest Name,Price(INR)\n");
+    private void rejectRow(CsvImportReportDTO report, long line, String message) {
+        report.setFailed(report.getFailed() + 1);
+        addError(report, line, message);
+    }
 
-        for (Test test : tests) {
-            // Ensure proper formatting by escaping commas in values
-            csvContent.append("\"").append(test.getCategory().replace("\"", "\"\"")).append("\",");
-            csvContent.append("\"").append(test.getName().replace("\"", "\"\"")).append("\",");
-            csvContent.append("\"").append(test.getPrice()).append("\"\n");
+    // the report keeps the first MAX_REPORTED_ERRORS problems so a bad file cannot grow it without bound
+    private void addError(CsvImportReportDTO report, long line, String message) {
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new CsvImportReportDTO.RowError(line, message));
+        } else {
+            report.setErrorsTruncated(true);
         }
-
-        // Set the response headers for file download
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=" + lab.getName() + "_tests.csv");
-        headers.add("Content-Type", "text/csv; charset=UTF-8");
-
-        // Return the CSV content as a ResponseEntity
-        return ResponseEntity.ok()
-                .headers(headers)
-                .body(csvContent.toString());
     }
 
 }
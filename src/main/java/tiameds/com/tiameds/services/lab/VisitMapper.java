@@ -0,0 +1,96 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.springframework.stereotype.Component;
+import tiameds.com.tiameds.dto.lab.BillingDTO;
+import tiameds.com.tiameds.dto.lab.PatientDTO;
+import tiameds.com.tiameds.dto.lab.VisitDTO;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
+import tiameds.com.tiameds.repository.VisitRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Turns the flat visit rows of the visit listings into the nested PatientDTO / VisitDTO / BillingDTO shape
+ * the endpoints return.
+ */
+@Component
+public class VisitMapper {
+
+    private final VisitRepository visitRepository;
+
+    public VisitMapper(VisitRepository visitRepository) {
+        this.visitRepository = visitRepository;
+    }
+
+    /**
+     * Maps visit rows to PatientDTOs; test, package and insurance ids are loaded with one query each for all rows.
+     */
+    public List<PatientDTO> toPatientDTOs(List<VisitRowDTO> rows) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> visitIds = rows.stream().map(VisitRowDTO::getVisitId).collect(Collectors.toList());
+        Map<Long, List<Long>> testIds = groupLinks(visitRepository.findTestLinks(visitIds));
+        Map<Long, List<Long>> packageIds = groupLinks(visitRepository.findPackageLinks(visitIds));
+        Map<Long, List<Long>> insuranceIds = groupLinks(visitRepository.findInsuranceLinks(visitIds));
+
+        return rows.stream()
+                .map(row -> mapRowToPatientDTO(row,
+                        testIds.getOrDefault(row.getVisitId(), new ArrayList<>()),
+                        packageIds.getOrDefault(row.getVisitId(), new ArrayList<>()),
+                        insuranceIds.getOrDefault(row.getVisitId(), new ArrayList<>())))
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, List<Long>> groupLinks(List<VisitRepository.VisitLink> links) {
+        return links.stream().collect(Collectors.groupingBy(
+                VisitRepository.VisitLink::getVisitId,
+                Collectors.mapping(VisitRepository.VisitLink::getLinkedId, Collectors.toList())));
+    }
+
+    // Helper Method to Map a visit row to PatientDTO
+    private PatientDTO mapRowToPatientDTO(VisitRowDTO row, List<Long> testIds, List<Long> packageIds, List<Long> insuranceIds) {
+        PatientDTO patientDTO = new PatientDTO();
+        patientDTO.setFirstName(row.getFirstName());
+        patientDTO.setLastName(row.getLastName());
+        patientDTO.setEmail(row.getEmail());
+        patientDTO.setPhone(row.getPhone());
+        patientDTO.setAddress(row.getAddress());
+        patientDTO.setCity(row.getCity());
+        patientDTO.setState(row.getState());
+        patientDTO.setZip(row.getZip());
+        patientDTO.setBloodGroup(row.getBloodGroup());
+        patientDTO.setDateOfBirth(row.getDateOfBirth());
+
+        VisitDTO visitDTO = new VisitDTO();
+        visitDTO.setVisitDate(row.getVisitDate());
+        visitDTO.setVisitType(row.getVisitType());
+        visitDTO.setVisitStatus(row.getVisitStatus());
+        visitDTO.setVisitDescription(row.getVisitDescription());
+        visitDTO.setDoctorId(row.getDoctorId());
+        visitDTO.setTestIds(testIds);
+        visitDTO.setPackageIds(packageIds);
+        visitDTO.setInsuranceIds(insuranceIds);
+
+        BillingDTO billingDTO = new BillingDTO();
+        billingDTO.setTotalAmount(row.getTotalAmount());
+        billingDTO.setPaymentStatus(row.getPaymentStatus());
+        billingDTO.setPaymentMethod(row.getPaymentMethod());
+        billingDTO.setPaymentDate(row.getPaymentDate());
+        billingDTO.setDiscount(row.getDiscount());
+        billingDTO.setGstRate(row.getGstRate());
+        billingDTO.setGstAmount(row.getGstAmount());
+        billingDTO.setCgstAmount(row.getCgstAmount());
+        billingDTO.setSgstAmount(row.getSgstAmount());
+        billingDTO.setIgstAmount(row.getIgstAmount());
+        billingDTO.setNetAmount(row.getNetAmount());
+
+        visitDTO.setBilling(billingDTO);
+        patientDTO.setVisit(visitDTO);
+
+        return patientDTO;
+    }
+}
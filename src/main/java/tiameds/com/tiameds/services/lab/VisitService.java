@@ -1,22 +1,34 @@
 package tiameds.com.tiameds.services.lab;
 
-import org.springframework.http.HttpStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import tiameds.com.tiameds.dto.lab.BillingDTO;
 import tiameds.com.tiameds.dto.lab.PatientDTO;
 import tiameds.com.tiameds.dto.lab.VisitDTO;
+import tiameds.com.tiameds.dto.lab.VisitFilterDTO;
+import tiameds.com.tiameds.dto.lab.VisitPageDTO;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
 import tiameds.com.tiameds.entity.*;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.NotFoundException;
+import tiameds.com.tiameds.exception.UnauthorizedException;
 import tiameds.com.tiameds.repository.*;
-import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.CachedEntityLoader;
+import tiameds.com.tiameds.utils.LabAccessableFilter;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
 
 
+@Slf4j
 @Service
 public class VisitService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final PatientRepository patientRepository;
     private final LabRepository labRepository;
     private final TestRepository testRepository;
@@ -25,6 +37,10 @@ public class VisitService {
     private final InsuranceRepository insuranceRepository;
     private final BillingRepository billingRepository;
     private final VisitRepository visitRepository;
+    private final LabAccessableFilter labAccessableFilter;
+    private final RevenueRollupService revenueRollupService;
+    private final CachedEntityLoader cachedEntityLoader;
+    private final VisitMapper visitMapper;
 
     public VisitService(PatientRepository patientRepository,
                         LabRepository labRepository,
@@ -33,7 +49,11 @@ public class VisitService {
                         DoctorRepository doctorRepository,
                         InsuranceRepository insuranceRepository,
                         BillingRepository billingRepository,
-                        VisitRepository visitRepository) {
+                        VisitRepository visitRepository,
+                        LabAccessableFilter labAccessableFilter,
+                        RevenueRollupService revenueRollupService,
+                        CachedEntityLoader cachedEntityLoader,
+                        VisitMapper visitMapper) {
         this.patientRepository = patientRepository;
         this.labRepository = labRepository;
         this.testRepository = testRepository;
@@ -42,56 +62,51 @@ public class VisitService {
         this.insuranceRepository = insuranceRepository;
         this.billingRepository = billingRepository;
         this.visitRepository = visitRepository;
+        this.labAccessableFilter = labAccessableFilter;
+        this.revenueRollupService = revenueRollupService;
+        this.cachedEntityLoader = cachedEntityLoader;
+        this.visitMapper = visitMapper;
     }
 
     @Transactional
     public void addVisit(Long labId, Long patientId, VisitDTO visitDTO, Optional<User> currentUser) {
 
         // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
+        Lab lab = labRepository.findById(labId).orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the user is a member of the lab
-        if (!currentUser.get().getLabs().contains(labOptional.get())) {
-            ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
+        checkMember(labId, currentUser);
 
         // Check if the patient belongs to the lab
-        Optional<PatientEntity> patientEntity = patientRepository.findById(patientId)
-                .filter(patient -> patient.getLabs().contains(labOptional.get()));
-        if (patientEntity.isEmpty()) {
-            ApiResponseHelper.errorResponse("Patient not belong to the lab", HttpStatus.BAD_REQUEST);
-        }
+        PatientEntity patientEntity = patientRepository.findById(patientId)
+                .filter(patient -> patient.getLabs().contains(lab))
+                .orElseThrow(() -> BadRequestException.PATIENT_NOT_IN_LAB);
 
         // Check if the doctor exists
-        Optional<Doctors> doctorOptional = doctorRepository.findById(visitDTO.getDoctorId());
-        if (doctorOptional.isEmpty()) {
-            ApiResponseHelper.errorResponse("Doctor not found", HttpStatus.NOT_FOUND);
-        }
+        Doctors doctor = doctorRepository.findById(visitDTO.getDoctorId()).orElseThrow(() -> NotFoundException.DOCTOR);
 
         // Create the visit entity
         VisitEntity visit = new VisitEntity();
-        visit.setPatient(patientEntity.get());
+        visit.setPatient(patientEntity);
+        visit.setLab(lab);
         visit.setVisitDate(visitDTO.getVisitDate());
         visit.setVisitType(visitDTO.getVisitType());
         visit.setVisitStatus(visitDTO.getVisitStatus());
         visit.setVisitDescription(visitDTO.getVisitDescription());
-        visit.setDoctor(doctorOptional.get());
+        visit.setDoctor(doctor);
 
         // Set tests
-        Set<Test> tests = testRepository.findAllById(visitDTO.getTestIds()).stream().collect(Collectors.toSet());
+        Set<Test> tests = new HashSet<>(cachedEntityLoader.findAllById(Test.class, visitDTO.getTestIds()));
         visit.setTests(tests);
 
         // Set health packages
-        Set<HealthPackage> healthPackages = healthPackageRepository.findAllById(visitDTO.getPackageIds()).stream().collect(Collectors.toSet());
+        Set<HealthPackage> healthPackages = new HashSet<>(cachedEntityLoader.findAllById(HealthPackage.class, visitDTO.getPackageIds()));
         visit.setPackages(healthPackages);
 
         // Set insurances
-        List<InsuranceEntity> insurances = insuranceRepository.findAllById(visitDTO.getInsuranceIds().stream().map(Long::intValue).collect(Collectors.toList()));
-        if (insurances.stream().anyMatch(insurance -> !insurance.getLabs().contains(labOptional.get()))) {
-            ApiResponseHelper.errorResponse("Insurance not belong to the lab", HttpStatus.BAD_REQUEST);
+        List<InsuranceEntity> insurances = cachedEntityLoader.findAllById(InsuranceEntity.class, visitDTO.getInsuranceIds());
+        if (insurances.stream().anyMatch(insurance -> !insurance.getLabs().contains(lab))) {
+            throw BadRequestException.INSURANCE_NOT_IN_LAB;
         }
         visit.setInsurance(new HashSet<>(insurances));
 
@@ -109,7 +124,10 @@ public class VisitService {
         billingEntity.setIgstAmount(visitDTO.getBilling().getIgstAmount());
         billingEntity.setNetAmount(visitDTO.getBilling().getNetAmount());
 
+        billingEntity.setLab(lab);
+
         billingRepository.save(billingEntity);
+        revenueRollupService.record(billingEntity);
         visit.setBilling(billingEntity);
 
         // Save the visit
@@ -119,122 +137,112 @@ public class VisitService {
     }
 
 
-    // get list of patient visits of respective lab
-    public Object getVisits(Long labId, Optional<User> currentUser) {
-        // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
-
+    // get a page of the lab's visits, newest first, continuing after the given cursor
+    @Transactional(readOnly = true)
+    public VisitPageDTO getVisits(Long labId, Optional<User> currentUser, VisitFilterDTO filter) {
         // Check if the user is a member of the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(labOptional.get())) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
+        checkMember(labId, currentUser);
+
+        int size = filter.getSize() == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(filter.getSize(), MAX_PAGE_SIZE));
+
+        Specification<VisitEntity> spec = VisitSpecifications.inLab(labId);
+        if (filter.getFrom() != null) {
+            spec = spec.and(VisitSpecifications.visitedFrom(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            spec = spec.and(VisitSpecifications.visitedTo(filter.getTo()));
+        }
+        if (filter.getVisitStatus() != null && !filter.getVisitStatus().isBlank()) {
+            spec = spec.and(VisitSpecifications.hasStatus(filter.getVisitStatus()));
+        }
+        if (filter.getVisitType() != null && !filter.getVisitType().isBlank()) {
+            spec = spec.and(VisitSpecifications.hasType(filter.getVisitType()));
+        }
+        if (filter.getDoctorId() != null) {
+            spec = spec.and(VisitSpecifications.withDoctor(filter.getDoctorId()));
+        }
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            VisitCursor cursor = VisitCursor.decode(filter.getCursor());
+            spec = spec.and(VisitSpecifications.before(cursor.visitDate(), cursor.visitId()));
         }
 
-        // Get the list of visits
-        List<VisitEntity> visits = visitRepository.findAllByPatient_Labs(labOptional.get());
+        // one extra row tells whether another page exists, without a count query
+        List<VisitRowDTO> rows = visitRepository.findRows(spec, size + 1);
 
-        // Map visits to PatientDTO
-        List<PatientDTO> patientDTOList = visits.stream()
-                .map(this::mapVisitToPatientDTO)
-                .collect(Collectors.toList());
+        boolean hasMore = rows.size() > size;
+        if (hasMore) {
+            rows = rows.subList(0, size);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            VisitRowDTO last = rows.get(rows.size() - 1);
+            nextCursor = new VisitCursor(last.getVisitDate(), last.getVisitId()).encode();
+        }
 
-        return patientDTOList;
+        return new VisitPageDTO(visitMapper.toPatientDTOs(rows), nextCursor, hasMore);
     }
 
-    // Helper Method to Map VisitEntity to PatientDTO
-    private PatientDTO mapVisitToPatientDTO(VisitEntity visit) {
-        PatientDTO patientDTO = new PatientDTO();
-        patientDTO.setFirstName(visit.getPatient().getFirstName());
-        patientDTO.setLastName(visit.getPatient().getLastName());
-        patientDTO.setEmail(visit.getPatient().getEmail());
-        patientDTO.setPhone(visit.getPatient().getPhone());
-        patientDTO.setAddress(visit.getPatient().getAddress());
-        patientDTO.setCity(visit.getPatient().getCity());
-        patientDTO.setState(visit.getPatient().getState());
-        patientDTO.setZip(visit.getPatient().getZip());
-        patientDTO.setBloodGroup(visit.getPatient().getBloodGroup());
-        patientDTO.setDateOfBirth(visit.getPatient().getDateOfBirth());
-
-        VisitDTO visitDTO = new VisitDTO();
-        visitDTO.setVisitDate(visit.getVisitDate());
-        visitDTO.setVisitType(visit.getVisitType());
-        visitDTO.setVisitStatus(visit.getVisitStatus());
-        visitDTO.setVisitDescription(visit.getVisitDescription());
-        visitDTO.setDoctorId(visit.getDoctor().getId());
-        visitDTO.setTestIds(visit.getTests().stream().map(Test::getId).collect(Collectors.toList()));
-        visitDTO.setPackageIds(visit.getPackages().stream().map(HealthPackage::getId).collect(Collectors.toList()));
-        visitDTO.setInsuranceIds(visit.getInsurance().stream().map(InsuranceEntity::getId).collect(Collectors.toList()));
-
-        BillingDTO billingDTO = new BillingDTO();
-        billingDTO.setTotalAmount(visit.getBilling().getTotalAmount());
-        billingDTO.setPaymentStatus(visit.getBilling().getPaymentStatus());
-        billingDTO.setPaymentMethod(visit.getBilling().getPaymentMethod());
-        billingDTO.setPaymentDate(visit.getBilling().getPaymentDate());
-        billingDTO.setDiscount(visit.getBilling().getDiscount());
-        billingDTO.setGstRate(visit.getBilling().getGstRate());
-        billingDTO.setGstAmount(visit.getBilling().getGstAmount());
-        billingDTO.setCgstAmount(visit.getBilling().getCgstAmount());
-        billingDTO.setSgstAmount(visit.getBilling().getSgstAmount());
-        billingDTO.setIgstAmount(visit.getBilling().getIgstAmount());
-        billingDTO.setNetAmount(visit.getBilling().getNetAmount());
-
-        visitDTO.setBilling(billingDTO);
-        patientDTO.setVisit(visitDTO);
-
-        return patientDTO;
-    }
+    // opaque position of the last visit of a page
+    private record VisitCursor(LocalDate visitDate, Long visitId) {
 
+        String encode() {
+            String raw = visitDate + "|" + visitId;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static VisitCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new VisitCursor(LocalDate.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+    }
 
     @Transactional
     public void updateVisit(Long labId, Long visitId, VisitDTO visitDTO, Optional<User> currentUser) {
 
         // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
+        Lab lab = labRepository.findById(labId).orElseThrow(() -> NotFoundException.LAB);
 
         // Check if the user is a member of the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(labOptional.get())) {
-            ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
+        checkMember(labId, currentUser);
 
-        VisitEntity visit = visitRepository.findById(visitId)
-                .filter(visitEntity -> visitEntity.getPatient().getLabs().contains(labOptional.get()))
-                .orElseThrow(() -> new IllegalArgumentException("Visit not found or does not belong to the lab"));
-
-
-        Optional<Doctors> doctorOptional = doctorRepository.findById(visitDTO.getDoctorId());
-        if (doctorOptional.isEmpty()) {
-            ApiResponseHelper.errorResponse("Doctor not found", HttpStatus.NOT_FOUND);
+        VisitEntity visit = visitRepository.findInLab(visitId, labId).orElseThrow(() -> NotFoundException.LAB_VISIT);
+        // visits of patients shared between labs may predate lab_id; they belong to the lab they are edited in
+        if (visit.getLab() == null) {
+            visit.setLab(lab);
         }
 
+        Doctors doctor = doctorRepository.findById(visitDTO.getDoctorId()).orElseThrow(() -> NotFoundException.DOCTOR);
+
         // Update the visit
         visit.setVisitDate(visitDTO.getVisitDate());
         visit.setVisitType(visitDTO.getVisitType());
         visit.setVisitStatus(visitDTO.getVisitStatus());
         visit.setVisitDescription(visitDTO.getVisitDescription());
-        visit.setDoctor(doctorOptional.get());
+        visit.setDoctor(doctor);
 
         // Set tests
-        Set<Test> tests = testRepository.findAllById(visitDTO.getTestIds()).stream().collect(Collectors.toSet());
+        Set<Test> tests = new HashSet<>(cachedEntityLoader.findAllById(Test.class, visitDTO.getTestIds()));
         visit.setTests(tests);
 
         // Set health packages
-        Set<HealthPackage> healthPackages = healthPackageRepository.findAllById(visitDTO.getPackageIds()).stream().collect(Collectors.toSet());
+        Set<HealthPackage> healthPackages = new HashSet<>(cachedEntityLoader.findAllById(HealthPackage.class, visitDTO.getPackageIds()));
         visit.setPackages(healthPackages);
 
         // Set insurances
-        List<InsuranceEntity> insurances = insuranceRepository.findAllById(visitDTO.getInsuranceIds().stream().map(Long::intValue).collect(Collectors.toList()));
-        if (insurances.stream().anyMatch(insurance -> !insurance.getLabs().contains(labOptional.get()))) {
-            ApiResponseHelper.errorResponse("Insurance not belong to the lab", HttpStatus.BAD_REQUEST);
+        List<InsuranceEntity> insurances = cachedEntityLoader.findAllById(InsuranceEntity.class, visitDTO.getInsuranceIds());
+        if (insurances.stream().anyMatch(insurance -> !insurance.getLabs().contains(lab))) {
+            throw BadRequestException.INSURANCE_NOT_IN_LAB;
         }
         visit.setInsurance(new HashSet<>(insurances));
 
-        // Handle billing information
+        // Handle billing information; the old amounts leave the revenue rollup before they are overwritten
         BillingEntity billingEntity = visit.getBilling();
+        revenueRollupService.unrecord(billingEntity);
         billingEntity.setTotalAmount(visitDTO.getBilling().getTotalAmount());
         billingEntity.setPaymentStatus(visitDTO.getBilling().getPaymentStatus());
         billingEntity.setPaymentMethod(visitDTO.getBilling().getPaymentMethod());
@@ -248,7 +256,10 @@ public class VisitService {
         billingEntity.setIgstAmount(visitDTO.getBilling().getIgstAmount());
         billingEntity.setNetAmount(visitDTO.getBilling().getNetAmount());
 
+        billingEntity.setLab(lab);
+
         billingRepository.save(billingEntity);
+        revenueRollupService.record(billingEntity);
         visit.setBilling(billingEntity);
         // Save the visit
         visitRepository.save(visit);
@@ -257,91 +268,58 @@ public class VisitService {
 
 
     // delete the visit
+    @Transactional
     public void deleteVisit(Long labId, Long visitId, Optional<User> currentUser) {
         // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
+        if (!labRepository.existsById(labId)) {
+            throw NotFoundException.LAB;
         }
 
         // Check if the user is a member of the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(labOptional.get())) {
-            ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
+        checkMember(labId, currentUser);
 
-        // Check if the visit exists
-        Optional<VisitEntity> visitOptional = visitRepository.findById(visitId);
-        if (visitOptional.isEmpty()) {
-            ApiResponseHelper.errorResponse("Visit not found", HttpStatus.NOT_FOUND);
-        }
-
-        VisitEntity visit = visitRepository.findById(visitId)
-                .filter(visitEntity -> visitEntity.getPatient().getLabs().contains(labOptional.get()))
-                .orElseThrow(() -> new IllegalArgumentException("Visit not found or does not belong to the lab"));
+        // Check if the visit exists and belongs to the lab
+        VisitEntity visit = visitRepository.findInLab(visitId, labId).orElseThrow(() -> NotFoundException.LAB_VISIT);
 
+        // the billing is removed with the visit
+        revenueRollupService.unrecord(visit.getBilling());
         visitRepository.delete(visit);
     }
 
 
     // get the visit details
-    public Object getVisit(Long labId, Long visitId, Optional<User> currentUser) {
-        // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
-
+    @Transactional(readOnly = true)
+    public PatientDTO getVisit(Long labId, Long visitId, Optional<User> currentUser) {
         // Check if the user is a member of the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(labOptional.get())) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
+        checkMember(labId, currentUser);
 
-        // Check if the visit exists
-        Optional<VisitEntity> visitOptional = visitRepository.findById(visitId);
-        if (visitOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Visit not found", HttpStatus.NOT_FOUND);
+        // Load the visit only if its patient belongs to the lab
+        List<VisitRowDTO> rows = visitRepository.findRowByVisitIdAndLabId(visitId, labId);
+        if (rows.isEmpty()) {
+            throw NotFoundException.LAB_VISIT;
         }
 
-        VisitEntity visit = visitRepository.findById(visitId)
-                .filter(visitEntity -> visitEntity.getPatient().getLabs().contains(labOptional.get()))
-                .orElseThrow(() -> new IllegalArgumentException("Visit not found or does not belong to the lab"));
-
-
         // Map visit to PatientDTO
-        PatientDTO patientDTO = mapVisitToPatientDTO(visit);
-
-        return patientDTO;
+        return visitMapper.toPatientDTOs(rows).get(0);
     }
 
-    public Object getVisitByPatient(Long labId, Long patientId, Optional<User> currentUser) {
-        // Check if the lab exists
-        Optional<Lab> labOptional = labRepository.findById(labId);
-        if (labOptional.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Lab not found", HttpStatus.NOT_FOUND);
-        }
-
+    @Transactional(readOnly = true)
+    public List<PatientDTO> getVisitByPatient(Long labId, Long patientId, Optional<User> currentUser) {
         // Check if the user is a member of the lab
-        if (currentUser.isEmpty() || !currentUser.get().getLabs().contains(labOptional.get())) {
-            return ApiResponseHelper.errorResponse("User is not a member of this lab", HttpStatus.UNAUTHORIZED);
-        }
+        checkMember(labId, currentUser);
 
         // Check if the patient belongs to the lab
-        Optional<PatientEntity> patientEntity = patientRepository.findById(patientId)
-                .filter(patient -> patient.getLabs().contains(labOptional.get()));
-        if (patientEntity.isEmpty()) {
-            return ApiResponseHelper.errorResponse("Patient not belong to the lab", HttpStatus.BAD_REQUEST);
+        if (!patientRepository.existsByPatientIdAndLabsId(patientId, labId)) {
+            throw BadRequestException.PATIENT_NOT_IN_LAB;
         }
 
+        // Get the patient's visits and map them to PatientDTO
+        return visitMapper.toPatientDTOs(visitRepository.findRowsByPatientId(patientId));
+    }
 
-        // Get the list of visits
-        List<VisitEntity> visits = visitRepository.findAllByPatient(patientEntity.get());
-
-        // Map visits to PatientDTO
-        List<PatientDTO> patientDTOList = visits.stream()
-                .map(this::mapVisitToPatientDTO)
-                .collect(Collectors.toList());
-
-        return patientDTOList;
+    private void checkMember(Long labId, Optional<User> currentUser) {
+        if (currentUser.isEmpty() || !labAccessableFilter.checkAccess(labId, currentUser.get()).isGranted()) {
+            throw UnauthorizedException.NOT_MEMBER;
+        }
     }
 }
-
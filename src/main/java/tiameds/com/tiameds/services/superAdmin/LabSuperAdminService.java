@@ -1,25 +1,38 @@
 package tiameds.com.tiameds.services.superAdmin;
 
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tiameds.com.tiameds.config.SecondLevelCacheConfig;
+import tiameds.com.tiameds.dto.lab.CacheRegionStatsDTO;
 import tiameds.com.tiameds.dto.lab.LabListDTO;
 import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.exception.NotFoundException;
 import tiameds.com.tiameds.repository.LabRepository;
 import tiameds.com.tiameds.utils.ApiResponseHelper;
+import tiameds.com.tiameds.utils.LabAccessableFilter;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
 public class LabSuperAdminService {
 
     private final LabRepository labRepository;
+    private final LabAccessableFilter labAccessableFilter;
+    private final SessionFactory sessionFactory;
 
-    public LabSuperAdminService(LabRepository labRepository) {
+    public LabSuperAdminService(LabRepository labRepository, LabAccessableFilter labAccessableFilter, EntityManagerFactory entityManagerFactory) {
         this.labRepository = labRepository;
+        this.labAccessableFilter = labAccessableFilter;
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
     }
 
+    @Transactional(readOnly = true)
     public List<LabListDTO> getLabs() {
         return labRepository.findAll().stream()
                 .map(lab -> new LabListDTO(
@@ -35,18 +48,33 @@ public class LabSuperAdminService {
                 .collect(Collectors.toList());
     }
 
+    // hit/miss counters of every second-level cache region since startup
+    public List<CacheRegionStatsDTO> getSecondLevelCacheStats() {
+        Statistics statistics = sessionFactory.getStatistics();
+        return SecondLevelCacheConfig.REGIONS.stream()
+                .map(region -> {
+                    CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+                    long hits = regionStatistics.getHitCount();
+                    long misses = regionStatistics.getMissCount();
+                    return new CacheRegionStatsDTO(
+                            region,
+                            hits,
+                            misses,
+                            regionStatistics.getPutCount(),
+                            regionStatistics.getElementCountInMemory(),
+                            hits + misses == 0 ? 0 : (double) hits / (hits + misses)
+                    );
+                })
+                .collect(Collectors.toList());
+    }
 
 
-    public void updateLabStatus(long labId, LabListDTO labListDTO) {
-        Optional<Lab> labOptional = labRepository.findById(labId);
 
-        if (labOptional.isEmpty()) {
-            throw new RuntimeException("Lab not found"); // Throw an exception for better handling
-        }
-
-        Lab labToUpdate = labOptional.get();
+    public void updateLabStatus(long labId, LabListDTO labListDTO) {
+        Lab labToUpdate = labRepository.findById(labId).orElseThrow(() -> NotFoundException.LAB);
         labToUpdate.setIsActive(labListDTO.getIsActive());
         labRepository.save(labToUpdate);
+        labAccessableFilter.labStatusChanged(labId, Boolean.TRUE.equals(labToUpdate.getIsActive()));
     }
 
 
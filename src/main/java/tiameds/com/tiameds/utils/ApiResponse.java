@@ -1,13 +1,23 @@
 package tiameds.com.tiameds.utils;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 
+/**
+ * The envelope of every JSON response. The fields are written in this order, by the bean serializer Jackson
+ * caches for the class, so building one costs a single small object.
+ */
 @Getter
 @AllArgsConstructor
 @NoArgsConstructor
+@JsonPropertyOrder({"status", "message", "data"})
 public class ApiResponse <T>{
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+
     private String status;
     private String message;
     private T data;
@@ -0,0 +1,52 @@
+package tiameds.com.tiameds.utils;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Fills cache misses on the calling thread instead of inside the cache's atomic compute.
+ * <p>
+ * {@code ConcurrentHashMap.computeIfAbsent} and Caffeine's {@code Cache.get(key, loader)} run the loader while
+ * holding a lock of the map, so a query there blocks every other key of the bin and pins a virtual thread to its
+ * carrier. Here the cache only holds a future: the first caller of a key loads the value and completes it, callers
+ * arriving meanwhile wait on that future, and a key invalidated while its load is running is not filled again
+ * when the load finishes.
+ */
+public final class CacheLoads {
+
+    private CacheLoads() {
+    }
+
+    /**
+     * @param cache  the cache; invalidate it through {@link AsyncCache#asMap()} or {@link AsyncCache#synchronous()}
+     * @param key    the key to look up
+     * @param loader loads the value of a missing key; what it throws is rethrown and nothing is cached
+     * @return the cached or freshly loaded value
+     */
+    public static <K, V> V get(AsyncCache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> future = cache.get(key, (k, executor) -> created);
+        if (future == created) {
+            try {
+                created.complete(loader.apply(key));
+            } catch (RuntimeException | Error e) {
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package tiameds.com.tiameds.utils;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Loads entities by ID from the persistence context and the second-level cache, querying the database only
+ * for the IDs found in neither. {@code findAllById} of the repositories always runs a query.
+ */
+@Component
+public class CachedEntityLoader {
+
+    private final EntityManager entityManager;
+
+    public CachedEntityLoader(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * @return the entities that exist, in no particular order; unknown IDs are left out
+     */
+    public <T> List<T> findAllById(Class<T> type, Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return entityManager.unwrap(Session.class)
+                .byMultipleIds(type)
+                .enableOrderedReturn(false)
+                .multiLoad(new ArrayList<>(ids));
+    }
+}
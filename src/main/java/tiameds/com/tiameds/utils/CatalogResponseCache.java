@@ -0,0 +1,159 @@
+package tiameds.com.tiameds.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tiameds.com.tiameds.repository.LabCatalogVersionRepository;
+
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+
+/**
+ * Serialized responses of the per-lab catalog endpoints, with a strong ETag built from the catalog's
+ * {@link tiameds.com.tiameds.entity.LabCatalogVersion}. A request whose If-None-Match still matches gets a
+ * 304 without touching Hibernate or Jackson; any other request gets the cached bytes.
+ * <p>
+ * Writers call {@link #catalogChanged} after changing a catalog. It bumps the version in their
+ * transaction, drops this node's entry after commit and tells the other nodes through {@link LabStatusChannel}.
+ */
+@Component
+public class CatalogResponseCache implements LabStatusChannel.Subscriber {
+
+    public static final String TESTS = "tests";
+    public static final String PACKAGES = "packages";
+    public static final String DOCTORS = "doctors";
+    public static final String INSURANCE = "insurance";
+
+    private final LabCatalogVersionRepository labCatalogVersionRepository;
+    private final LabStatusChannel labStatusChannel;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate snapshotTransaction;
+
+    // filled through CacheLoads, so the snapshot transaction and serialization run outside the map's locks
+    private final AsyncCache<CatalogKey, CachedResponse> responses = Caffeine.newBuilder().buildAsync();
+
+    public CatalogResponseCache(LabCatalogVersionRepository labCatalogVersionRepository,
+                                LabStatusChannel labStatusChannel,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager) {
+        this.labCatalogVersionRepository = labCatalogVersionRepository;
+        this.labStatusChannel = labStatusChannel;
+        this.objectMapper = objectMapper;
+        // the version and the content are read from one snapshot, so an ETag never labels other content
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setReadOnly(true);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        labStatusChannel.subscribe(this);
+    }
+
+    /**
+     * Answers a catalog GET from the cache, building and caching the response first if needed.
+     *
+     * @param labId       the ID of the lab
+     * @param catalog     one of {@link #TESTS}, {@link #PACKAGES}, {@link #DOCTORS}, {@link #INSURANCE}
+     * @param ifNoneMatch the request's If-None-Match header, may be null
+     * @param body        builds the response body (the usual envelope) when the catalog is not cached
+     * @return 304 if the client's copy is current, otherwise 200 with the JSON bytes
+     */
+    public ResponseEntity<?> respond(long labId, String catalog, String ifNoneMatch, Supplier<Object> body) {
+        CatalogKey key = new CatalogKey(labId, catalog);
+        CachedResponse cached = CacheLoads.get(responses, key, k -> load(k, body));
+        if (matches(ifNoneMatch, cached.tag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(cached.etag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(cached.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cached.body());
+    }
+
+    private CachedResponse load(CatalogKey key, Supplier<Object> body) {
+        return snapshotTransaction.execute(status -> {
+            long version = labCatalogVersionRepository.findVersion(key.labId(), key.catalog()).orElse(0L);
+            try {
+                byte[] bytes = objectMapper.writeValueAsBytes(body.get());
+                return new CachedResponse(key.labId() + "-" + key.catalog() + "-" + version, bytes);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    // If-None-Match uses the weak comparison, so W/ prefixes are ignored
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        return ETag.parse(ifNoneMatch).stream()
+                .anyMatch(candidate -> candidate.isWildcard() || candidate.tag().equals(tag));
+    }
+
+    /**
+     * Records a change of the lab's catalog: bumps its version in the current transaction, drops the cached
+     * response once it commits (right away outside of one) and tells the other nodes.
+     */
+    public void catalogChanged(long labId, String catalog) {
+        labCatalogVersionRepository.bump(labId, catalog);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(labId, catalog);
+                }
+            });
+        } else {
+            evict(labId, catalog);
+        }
+        labStatusChannel.publishCatalogChange(labId, catalog);
+    }
+
+    /**
+     * Drops this node's cached response of the catalog.
+     */
+    public void evict(long labId, String catalog) {
+        responses.asMap().remove(new CatalogKey(labId, catalog));
+    }
+
+    @Override
+    public void onCatalogChanged(long labId, String catalog) {
+        evict(labId, catalog);
+    }
+
+    @Override
+    public void onLabStatus(long labId, Boolean active) {
+        if (active == null) {
+            responses.asMap().keySet().removeIf(key -> key.labId() == labId);
+        }
+    }
+
+    @Override
+    public void onResync() {
+        responses.asMap().clear();
+    }
+
+    private record CatalogKey(long labId, String catalog) {
+    }
+
+    private record CachedResponse(String tag, byte[] body) {
+
+        String etag() {
+            return "\"" + tag + "\"";
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package tiameds.com.tiameds.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the authenticated {@link tiameds.com.tiameds.entity.User} of the current request into a
+ * controller method parameter. The user is the one resolved by the JWT filter, so the token is not
+ * parsed again; with a claims token the user is taken from the principal cache when first asked for.
+ * <p>
+ * The parameter may be declared as {@code User} or {@code Optional<User>}.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
@@ -0,0 +1,42 @@
+package tiameds.com.tiameds.utils;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.UnauthorizedException;
+
+import java.util.Optional;
+
+/**
+ * Resolves {@link CurrentUser} parameters from the principal placed in the security context by the JWT filter.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final UserAuthService userAuthService;
+
+    public CurrentUserArgumentResolver(UserAuthService userAuthService) {
+        this.userAuthService = userAuthService;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && (parameter.getParameterType() == User.class || parameter.getParameterType() == Optional.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Optional<User> currentUser = userAuthService.getCurrentUser();
+        if (parameter.getParameterType() == Optional.class) {
+            return currentUser;
+        }
+        // thrown during argument resolution, past the security filters, so GlobalExceptionHandler answers the 401
+        return currentUser.orElseThrow(() -> UnauthorizedException.USER_NOT_FOUND);
+    }
+}
@@ -1,24 +1,60 @@
 package tiameds.com.tiameds.utils;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import tiameds.com.tiameds.services.auth.TokenPrincipal;
 
 import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtUtil {
 
+    // claims of the claims-rich tokens; plain tokens only have the subject
+    private static final String TYPE = "typ";
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+    private static final String USER_ID = "uid";
+    private static final String ROLES = "roles";
+    private static final String MODULES = "modules";
+    private static final String LABS = "labs";
+    private static final String VERSION = "ver";
+
+    private static final long PLAIN_TOKEN_TTL_MILLIS = 1000 * 60 * 60 * 10;
+
     @Value("${spring.jwt.secret}")
     private String SECRET_KEY;
 
+    @Value("${spring.jwt.claims.access-ttl:5m}")
+    private Duration accessTtl;
+
+    @Value("${spring.jwt.claims.refresh-ttl:10h}")
+    private Duration refreshTtl;
+
+    // the key and parser are immutable and thread-safe, build them once instead of per call
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        this.signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        return signingKey;
     }
 
     public String extractUsername(String token) {
@@ -30,21 +66,102 @@ public class JwtUtil {
         return extractAllClaims(token).getExpiration();
     }
 
+    /**
+     * Verifies the signature of the token and returns its claims. Callers that need several
+     * values from the same token should call this once and read them from the returned claims.
+     *
+     * @param token the compact JWT string (without the "Bearer " prefix)
+     * @return the verified claims
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, tampered with or expired
+     */
+    public Claims parseToken(String token) {
+        return extractAllClaims(token);
+    }
+
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token).getBody();
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return isTokenExpired(extractAllClaims(token));
+    }
+
+    public boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
     public String generateToken(String username) {
         Map<String, Object> claims = new HashMap<>();
-        return createToken(claims, username);
+        return createToken(claims, username, PLAIN_TOKEN_TTL_MILLIS);
+    }
+
+    /**
+     * Issues a short-lived access token carrying the roles, modules, labs and token version of the user.
+     */
+    public String generateAccessToken(TokenPrincipal principal) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(TYPE, ACCESS);
+        claims.put(USER_ID, principal.userId());
+        claims.put(ROLES, principal.roles());
+        claims.put(MODULES, principal.moduleIds());
+        claims.put(LABS, principal.labIds());
+        claims.put(VERSION, principal.version());
+        return createToken(claims, principal.username(), accessTtl.toMillis());
+    }
+
+    /**
+     * Issues the token exchanged for a new access token; it cannot be used to call the API itself.
+     */
+    public String generateRefreshToken(TokenPrincipal principal) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(TYPE, REFRESH);
+        claims.put(USER_ID, principal.userId());
+        return createToken(claims, principal.username(), refreshTtl.toMillis());
+    }
+
+    public boolean isRefreshToken(Claims claims) {
+        return REFRESH.equals(claims.get(TYPE, String.class));
+    }
+
+    /**
+     * @return the user ID of a refresh token, or null for any other token
+     */
+    public Long extractRefreshUserId(Claims claims) {
+        return isRefreshToken(claims) ? toLong(claims.get(USER_ID)) : null;
+    }
+
+    /**
+     * @return the principal described by a claims-rich access token, or null for a plain or refresh token
+     */
+    public TokenPrincipal toPrincipal(Claims claims) {
+        if (!ACCESS.equals(claims.get(TYPE, String.class))) {
+            return null;
+        }
+        return new TokenPrincipal(
+                toLong(claims.get(USER_ID)),
+                claims.getSubject(),
+                toSet(claims.get(ROLES), String::valueOf),
+                toSet(claims.get(MODULES), JwtUtil::toLong),
+                toSet(claims.get(LABS), JwtUtil::toLong),
+                toLong(claims.get(VERSION)),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null);
+    }
+
+    // JSON numbers come back as Integer or Long depending on their size
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static <T> Set<T> toSet(Object value, Function<Object, T> mapper) {
+        if (!(value instanceof Collection<?> values)) {
+            return Set.of();
+        }
+        return values.stream().map(mapper).collect(Collectors.toUnmodifiableSet());
     }
 
-    private String createToken(Map<String, Object> claims, String subject) {
-        return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(new Date(System.currentTimeMillis())).setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 10)).signWith(getSigningKey()).compact();
+    private String createToken(Map<String, Object> claims, String subject, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        return Jwts.builder().setClaims(claims).setSubject(subject).setIssuedAt(new Date(now)).setExpiration(new Date(now + ttlMillis)).signWith(getSigningKey()).compact();
     }
 
     public Boolean validateToken(String token) {
@@ -0,0 +1,42 @@
+package tiameds.com.tiameds.utils;
+
+import org.springframework.http.HttpStatus;
+import tiameds.com.tiameds.exception.ApiException;
+
+/**
+ * Outcome of checking whether a user may work on a lab.
+ */
+public enum LabAccess {
+
+    GRANTED(HttpStatus.OK, null),
+    LAB_NOT_FOUND(HttpStatus.NOT_FOUND, "Lab not found"),
+    LAB_INACTIVE(HttpStatus.UNAUTHORIZED, "Lab is not accessible"),
+    NOT_MEMBER(HttpStatus.UNAUTHORIZED, "User is not a member of this lab");
+
+    private final HttpStatus status;
+    private final String message;
+    private final ApiException exception;
+
+    LabAccess(HttpStatus status, String message) {
+        this.status = status;
+        this.message = message;
+        this.exception = message != null ? new ApiException(status, message) : null;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    // shared by every request denied for this reason, null for GRANTED
+    public ApiException getException() {
+        return exception;
+    }
+
+    public boolean isGranted() {
+        return this == GRANTED;
+    }
+}
@@ -1,16 +1,42 @@
 package tiameds.com.tiameds.utils;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.entity.User;
 import tiameds.com.tiameds.repository.LabRepository;
+import tiameds.com.tiameds.services.auth.TokenPrincipal;
+import tiameds.com.tiameds.services.auth.TokenVersions;
+
+import java.time.Duration;
 
 @Service
-public class LabAccessableFilter {
+public class LabAccessableFilter implements LabStatusChannel.Subscriber {
 
     private final LabRepository labRepository;
+    private final LabStatusRegistry labStatusRegistry;
+    private final LabStatusChannel labStatusChannel;
+    private final TokenVersions tokenVersions;
+
+    // answers of checkAccess keyed by lab and user, loaded through CacheLoads outside the cache's locks
+    private final AsyncCache<AccessKey, LabAccess> accessCache;
 
-    public LabAccessableFilter(LabRepository labRepository) {
+    public LabAccessableFilter(LabRepository labRepository,
+                               LabStatusRegistry labStatusRegistry,
+                               LabStatusChannel labStatusChannel,
+                               TokenVersions tokenVersions,
+                               @Value("${spring.lab-access-cache.ttl:5m}") Duration ttl,
+                               @Value("${spring.lab-access-cache.max-size:50000}") long maxSize) {
         this.labRepository = labRepository;
+        this.labStatusRegistry = labStatusRegistry;
+        this.labStatusChannel = labStatusChannel;
+        this.tokenVersions = tokenVersions;
+        this.accessCache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .buildAsync();
+        labStatusChannel.subscribe(this);
     }
 
     /**
@@ -20,8 +46,119 @@ public class LabAccessableFilter {
      * @return true if the lab exists and is active, false otherwise
      */
     public boolean isLabAccessible(Long labId) {
-        return labRepository.findById(labId)
-                .filter(Lab::getIsActive)
-                .isPresent();
+        return labId != null && Boolean.TRUE.equals(labStatusRegistry.getStatus(labId));
+    }
+
+    /**
+     * Checks that the lab exists, is active and has the user as a member. The lab status comes from the
+     * registry, membership from a single query whose answer is cached until the membership changes.
+     *
+     * @param labId the ID of the lab
+     * @param user  the authenticated user
+     * @return {@link LabAccess#GRANTED} or the reason access is denied
+     */
+    public LabAccess checkAccess(Long labId, User user) {
+        if (labId == null || user == null) {
+            return LabAccess.NOT_MEMBER;
+        }
+        Boolean active = labStatusRegistry.getStatus(labId);
+        if (active == null) {
+            return LabAccess.LAB_NOT_FOUND;
+        }
+        if (!active) {
+            return LabAccess.LAB_INACTIVE;
+        }
+        return CacheLoads.get(accessCache, new AccessKey(labId, user.getId()), this::loadAccess);
+    }
+
+    /**
+     * Same as {@link #checkAccess(Long, User)} for a claims token, whose lab list answers the membership.
+     * Memberships changed since the token was issued are caught by {@link TokenVersions} in the JWT filter.
+     */
+    public LabAccess checkAccess(Long labId, TokenPrincipal principal) {
+        if (labId == null || principal == null) {
+            return LabAccess.NOT_MEMBER;
+        }
+        Boolean active = labStatusRegistry.getStatus(labId);
+        if (active == null) {
+            return LabAccess.LAB_NOT_FOUND;
+        }
+        if (!active) {
+            return LabAccess.LAB_INACTIVE;
+        }
+        return principal.isMemberOf(labId) ? LabAccess.GRANTED : LabAccess.NOT_MEMBER;
+    }
+
+    private LabAccess loadAccess(AccessKey key) {
+        return labRepository.findLabAccess(key.labId(), key.userId())
+                .map(view -> {
+                    if (!Boolean.TRUE.equals(view.getActive())) {
+                        return LabAccess.LAB_INACTIVE;
+                    }
+                    return Boolean.TRUE.equals(view.getMember()) ? LabAccess.GRANTED : LabAccess.NOT_MEMBER;
+                })
+                .orElse(LabAccess.LAB_NOT_FOUND);
+    }
+
+    /**
+     * Records a lab being created, activated, deactivated or deleted on this node and announces it to
+     * the other instances.
+     *
+     * @param labId  the ID of the lab
+     * @param active the new flag, or null if the lab was deleted
+     */
+    public void labStatusChanged(long labId, Boolean active) {
+        onLabStatus(labId, active);
+        labStatusChannel.publish(labId, active);
+    }
+
+    @Override
+    public void onLabStatus(long labId, Boolean active) {
+        if (active == null) {
+            labStatusRegistry.remove(labId);
+        } else {
+            labStatusRegistry.put(labId, active);
+        }
+        evictLab(labId);
+    }
+
+    @Override
+    public void onResync() {
+        labStatusRegistry.reload();
+        accessCache.asMap().clear();
+    }
+
+    // another instance added the user to or removed them from a lab, or deleted them
+    @Override
+    public void onUserChanged(long userId, Long version) {
+        accessCache.asMap().keySet().removeIf(key -> key.userId().equals(userId));
+    }
+
+    /**
+     * Drops cached answers for every user of the lab.
+     */
+    public void evictLab(Long labId) {
+        accessCache.asMap().keySet().removeIf(key -> key.labId().equals(labId));
+    }
+
+    /**
+     * Drops the cached answer for one user of the lab after the user was added to or removed from it, and
+     * bumps the token version of the user so their claims tokens are checked against the database again.
+     * The bump also makes the other instances drop their answers for the user.
+     */
+    public void evictMember(Long labId, Long userId) {
+        accessCache.asMap().remove(new AccessKey(labId, userId));
+        tokenVersions.bump(userId);
+    }
+
+    /**
+     * Drops cached answers of the user for every lab, e.g. after the user was deleted.
+     */
+    public void evictUser(Long userId) {
+        accessCache.asMap().keySet().removeIf(key -> key.userId().equals(userId));
+        tokenVersions.bump(userId);
+    }
+
+    private record AccessKey(Long labId, Long userId) {
     }
 }
@@ -0,0 +1,297 @@
+package tiameds.com.tiameds.utils;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts lab status, lab catalog and user changes between application instances over Postgres LISTEN/NOTIFY.
+ * <p>
+ * Status payloads are {@code <labId>:<active|inactive|deleted>}, catalog payloads {@code <labId>:<catalog>}
+ * and user payloads {@code <userId>[:<token version>]} or {@code all}, each on a channel of their own.
+ * A background thread keeps one connection listening on the channels and hands every change to the
+ * subscribers; after a reconnect it asks them to resync, since notifications sent while disconnected are lost.
+ */
+@Slf4j
+@Component
+public class LabStatusChannel {
+
+    private static final String CHANNEL = "lab_status";
+    private static final String CATALOG_CHANNEL = "lab_catalog";
+    private static final String USER_CHANNEL = "user_tokens";
+    private static final String DELETED = "deleted";
+    private static final String ALL_USERS = "all";
+
+    public interface Subscriber {
+        /**
+         * @param labId  the changed lab
+         * @param active the new flag, or null if the lab was deleted
+         */
+        default void onLabStatus(long labId, Boolean active) {
+        }
+
+        /**
+         * @param labId   the lab whose catalog changed
+         * @param catalog which catalog changed, e.g. {@code tests}
+         */
+        default void onCatalogChanged(long labId, String catalog) {
+        }
+
+        /**
+         * @param userId  the user whose roles, modules or lab memberships changed, or who was deleted
+         * @param version the user's new token version, null if unknown, e.g. while claims tokens are disabled
+         */
+        default void onUserChanged(long userId, Long version) {
+        }
+
+        /**
+         * Every user changed, e.g. because a role or module definition did.
+         */
+        default void onAllUsersChanged() {
+        }
+
+        void onResync();
+    }
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final long pollMillis;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public LabStatusChannel(DataSource dataSource,
+                            JdbcTemplate jdbcTemplate,
+                            @Value("${spring.lab-status.notify.enabled:true}") boolean enabled,
+                            @Value("${spring.lab-status.notify.poll-millis:250}") long pollMillis) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.pollMillis = pollMillis;
+    }
+
+    public void subscribe(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Announces a change to every instance. Inside a transaction Postgres delivers it on commit.
+     *
+     * @param labId  the changed lab
+     * @param active the new flag, or null if the lab was deleted
+     */
+    public void publish(long labId, Boolean active) {
+        if (!enabled) {
+            return;
+        }
+        String payload = labId + ":" + (active == null ? DELETED : active ? "active" : "inactive");
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CHANNEL, payload);
+        } catch (Exception e) {
+            // other nodes fall back to their resync on reconnect; this node is already up to date
+            log.warn("Could not publish lab status change {}", payload, e);
+        }
+    }
+
+    /**
+     * Announces a change of one of the lab's catalogs to every instance. Inside a transaction Postgres
+     * delivers it on commit.
+     */
+    public void publishCatalogChange(long labId, String catalog) {
+        if (!enabled) {
+            return;
+        }
+        String payload = labId + ":" + catalog;
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, CATALOG_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("Could not publish lab catalog change {}", payload, e);
+        }
+    }
+
+    /**
+     * Announces a change of a user's roles, modules or lab memberships to every instance. Inside a transaction
+     * Postgres delivers it on commit.
+     *
+     * @param userId  the changed user
+     * @param version the user's new token version, or null if unknown
+     */
+    public void publishUserChange(long userId, Long version) {
+        publishUser(version == null ? String.valueOf(userId) : userId + ":" + version);
+    }
+
+    /**
+     * Announces that every user changed to every instance. Inside a transaction Postgres delivers it on commit.
+     */
+    public void publishAllUsersChanged() {
+        publishUser(ALL_USERS);
+    }
+
+    private void publishUser(String payload) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, USER_CHANNEL, payload);
+        } catch (Exception e) {
+            log.warn("Could not publish user change {}", payload, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "lab-status-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                    statement.execute("LISTEN " + CATALOG_CHANNEL);
+                    statement.execute("LISTEN " + USER_CHANNEL);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                if (reconnect) {
+                    for (Subscriber subscriber : subscribers) {
+                        notify(subscriber, "resync", Subscriber::onResync);
+                    }
+                }
+                reconnect = true;
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getName(), notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Lab status listener lost its connection, retrying: {}", e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands one notification to the subscribers. A subscriber that fails is logged and skipped, so neither
+     * the other subscribers nor the later notifications are lost; only connection failures reach the
+     * reconnect loop of the listener.
+     */
+    void deliver(String channel, String payload) {
+        try {
+            if (CATALOG_CHANNEL.equals(channel)) {
+                dispatchCatalog(payload);
+            } else if (USER_CHANNEL.equals(channel)) {
+                dispatchUser(payload);
+            } else {
+                dispatch(payload);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not handle {} notification {}", channel, payload, e);
+        }
+    }
+
+    private void notify(Subscriber subscriber, String payload, Consumer<Subscriber> call) {
+        try {
+            call.accept(subscriber);
+        } catch (RuntimeException e) {
+            log.error("{} failed to handle lab notification {}", subscriber.getClass().getSimpleName(), payload, e);
+        }
+    }
+
+    private void dispatch(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            log.warn("Ignoring malformed lab status payload {}", payload);
+            return;
+        }
+        try {
+            long labId = Long.parseLong(payload.substring(0, separator));
+            String state = payload.substring(separator + 1);
+            Boolean active = DELETED.equals(state) ? null : "active".equals(state);
+            for (Subscriber subscriber : subscribers) {
+                notify(subscriber, payload, target -> target.onLabStatus(labId, active));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed lab status payload {}", payload);
+        }
+    }
+
+    private void dispatchCatalog(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            log.warn("Ignoring malformed lab catalog payload {}", payload);
+            return;
+        }
+        try {
+            long labId = Long.parseLong(payload.substring(0, separator));
+            String catalog = payload.substring(separator + 1);
+            for (Subscriber subscriber : subscribers) {
+                notify(subscriber, payload, target -> target.onCatalogChanged(labId, catalog));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed lab catalog payload {}", payload);
+        }
+    }
+
+    private void dispatchUser(String payload) {
+        if (ALL_USERS.equals(payload)) {
+            for (Subscriber subscriber : subscribers) {
+                notify(subscriber, payload, Subscriber::onAllUsersChanged);
+            }
+            return;
+        }
+        int separator = payload.indexOf(':');
+        try {
+            long userId = Long.parseLong(separator < 0 ? payload : payload.substring(0, separator));
+            Long version = separator < 0 ? null : Long.valueOf(payload.substring(separator + 1));
+            for (Subscriber subscriber : subscribers) {
+                notify(subscriber, payload, target -> target.onUserChanged(userId, version));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed user payload {}", payload);
+        }
+    }
+}
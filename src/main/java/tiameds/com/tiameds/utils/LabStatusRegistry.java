@@ -0,0 +1,72 @@
+package tiameds.com.tiameds.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import tiameds.com.tiameds.repository.LabRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy of every lab's active flag, so the per-request accessibility check does not read the lab.
+ * Loaded when the application starts and kept current by {@link LabAccessableFilter#labStatusChanged}
+ * on this node and by {@link LabStatusChannel} notifications from the other nodes.
+ */
+@Slf4j
+@Component
+public class LabStatusRegistry {
+
+    private final LabRepository labRepository;
+
+    // lab id -> active flag; labs missing here are looked up once and then cached
+    private final Map<Long, Boolean> statuses = new ConcurrentHashMap<>();
+
+    public LabStatusRegistry(LabRepository labRepository) {
+        this.labRepository = labRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+        log.info("Lab status registry loaded with {} labs", statuses.size());
+    }
+
+    /**
+     * Replaces the registry content with the current database state, e.g. after notifications may have been missed.
+     */
+    public void reload() {
+        Map<Long, Boolean> loaded = new ConcurrentHashMap<>();
+        labRepository.findAllStatuses().forEach(view -> loaded.put(view.getId(), Boolean.TRUE.equals(view.getActive())));
+        statuses.keySet().retainAll(loaded.keySet());
+        statuses.putAll(loaded);
+    }
+
+    /**
+     * @param labId the ID of the lab
+     * @return the active flag of the lab, or null if the lab does not exist
+     */
+    public Boolean getStatus(long labId) {
+        Boolean active = statuses.get(labId);
+        if (active != null) {
+            return active;
+        }
+        // created on another node and not announced yet, or does not exist
+        return labRepository.findIsActiveById(labId)
+                .map(flag -> {
+                    boolean value = Boolean.TRUE.equals(flag);
+                    statuses.putIfAbsent(labId, value);
+                    return value;
+                })
+                .orElse(null);
+    }
+
+    public void put(long labId, boolean active) {
+        statuses.put(labId, active);
+    }
+
+    public void remove(long labId) {
+        statuses.remove(labId);
+    }
+}
@@ -0,0 +1,24 @@
+package tiameds.com.tiameds.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller or handler method whose {@code {labId}} path variable must point to an existing,
+ * active lab the current user is a member of. The check is done by
+ * {@link tiameds.com.tiameds.filter.LabAccessInterceptor} before the handler runs, so the handler
+ * does not need to repeat it.
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequireLabAccess {
+
+    /**
+     * Name of the path variable holding the lab ID.
+     */
+    String value() default "labId";
+}
@@ -0,0 +1,23 @@
+package tiameds.com.tiameds.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how many SQL statements a handler method may run per request, security lookups included.
+ * With {@code spring.sql-stats.enabled}, {@link tiameds.com.tiameds.filter.SqlStatementFilter} logs and counts
+ * requests over the budget.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface SqlBudget {
+
+    /**
+     * Maximum number of statements; a JDBC batch counts as one.
+     */
+    int statements();
+}
@@ -0,0 +1,69 @@
+package tiameds.com.tiameds.utils;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * Adds the statements executed through the proxied DataSource to the {@link SqlStatementStats} of the
+ * current request. Rows of a query are counted as the result set is read.
+ */
+public class SqlStatementListener implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final String STARTED = "sqlStatsStarted";
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (SqlStatementStats.current() != null) {
+            execInfo.addCustomValue(STARTED, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        SqlStatementStats stats = SqlStatementStats.current();
+        Long started = execInfo.getCustomValue(STARTED, Long.class);
+        if (stats == null || started == null) {
+            return;
+        }
+        stats.statementExecuted(System.nanoTime() - started, updatedRows(execInfo.getResult()));
+    }
+
+    private static long updatedRows(Object result) {
+        if (result instanceof Integer count) {
+            return Math.max(count, 0);
+        }
+        if (result instanceof Long count) {
+            return Math.max(count, 0);
+        }
+        long rows = 0;
+        if (result instanceof int[] counts) {
+            // rewritten batches report SUCCESS_NO_INFO (-2) per row
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (executionContext.getTarget() instanceof ResultSet
+                && Boolean.TRUE.equals(executionContext.getResult())
+                && "next".equals(executionContext.getMethod().getName())) {
+            SqlStatementStats stats = SqlStatementStats.current();
+            if (stats != null) {
+                stats.rowRead();
+            }
+        }
+    }
+}
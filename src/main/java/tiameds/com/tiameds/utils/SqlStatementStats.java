@@ -0,0 +1,56 @@
+package tiameds.com.tiameds.utils;
+
+/**
+ * Statements, rows and database time of the current HTTP request. {@link tiameds.com.tiameds.filter.SqlStatementFilter}
+ * opens one per request on the request thread; {@link SqlStatementListener} adds every JDBC call made on that
+ * thread to it. Work handed to other threads, e.g. streamed downloads, is not counted.
+ */
+public final class SqlStatementStats {
+
+    private static final ThreadLocal<SqlStatementStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rows;
+    private long nanos;
+
+    public static SqlStatementStats begin() {
+        SqlStatementStats stats = new SqlStatementStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @return the stats of the request running on this thread, or null outside a request
+     */
+    public static SqlStatementStats current() {
+        return CURRENT.get();
+    }
+
+    void statementExecuted(long elapsedNanos, long affectedRows) {
+        statements++;
+        nanos += elapsedNanos;
+        rows += affectedRows;
+    }
+
+    void rowRead() {
+        rows++;
+    }
+
+    // statements sent to the database; a JDBC batch counts once
+    public int getStatements() {
+        return statements;
+    }
+
+    // rows read from result sets plus rows reported by updates
+    public long getRows() {
+        return rows;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+}
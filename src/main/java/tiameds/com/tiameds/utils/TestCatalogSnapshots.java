@@ -0,0 +1,97 @@
+package tiameds.com.tiameds.utils;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tiameds.com.tiameds.dto.lab.TestDTO;
+import tiameds.com.tiameds.repository.TestRepository;
+
+import java.util.List;
+
+/**
+ * Immutable per-lab copies of the test catalog, sorted by id and already mapped to {@link TestDTO}.
+ * <p>
+ * Readers get the current list with a plain map lookup. Writers never modify a list: after their
+ * transaction commits the lab's list is reloaded and swapped in as a whole, and the other nodes are told
+ * through {@link LabStatusChannel} to drop theirs. The serialized tests response is built from the snapshot,
+ * so it is dropped again after the snapshot was replaced.
+ */
+@Component
+public class TestCatalogSnapshots implements LabStatusChannel.Subscriber {
+
+    private final TestRepository testRepository;
+    private final CatalogResponseCache catalogResponseCache;
+
+    // filled through CacheLoads, so the catalog query runs outside the map's locks
+    private final AsyncCache<Long, List<TestDTO>> snapshots = Caffeine.newBuilder().buildAsync();
+
+    public TestCatalogSnapshots(TestRepository testRepository, LabStatusChannel labStatusChannel,
+                                CatalogResponseCache catalogResponseCache) {
+        this.testRepository = testRepository;
+        this.catalogResponseCache = catalogResponseCache;
+        labStatusChannel.subscribe(this);
+    }
+
+    /**
+     * @param labId the ID of the lab
+     * @return the lab's tests sorted by id; the list must not be modified
+     */
+    public List<TestDTO> get(long labId) {
+        return CacheLoads.get(snapshots, labId, this::load);
+    }
+
+    private List<TestDTO> load(long labId) {
+        return List.copyOf(testRepository.findCatalogByLabId(labId));
+    }
+
+    /**
+     * Replaces the lab's snapshot once the current transaction commits, or right away outside of one,
+     * and tells the other nodes.
+     *
+     * @param labId the lab whose tests were added, changed or removed
+     */
+    public void catalogChanged(long labId) {
+        // packages embed their tests, so their response changes as well
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.TESTS);
+        catalogResponseCache.catalogChanged(labId, CatalogResponseCache.PACKAGES);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    replace(labId);
+                }
+            });
+        } else {
+            replace(labId);
+        }
+    }
+
+    private void replace(long labId) {
+        // dropping the entry also discards a load of the lab that is still running, so an older list cannot win
+        snapshots.asMap().remove(labId);
+        get(labId);
+        catalogResponseCache.evict(labId, CatalogResponseCache.TESTS);
+    }
+
+    @Override
+    public void onCatalogChanged(long labId, String catalog) {
+        if (CatalogResponseCache.TESTS.equals(catalog)) {
+            snapshots.asMap().remove(labId);
+            catalogResponseCache.evict(labId, CatalogResponseCache.TESTS);
+        }
+    }
+
+    @Override
+    public void onLabStatus(long labId, Boolean active) {
+        if (active == null) {
+            snapshots.asMap().remove(labId);
+        }
+    }
+
+    @Override
+    public void onResync() {
+        snapshots.asMap().clear();
+    }
+}
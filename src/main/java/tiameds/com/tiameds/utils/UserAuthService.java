@@ -1,9 +1,13 @@
 package tiameds.com.tiameds.utils;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import tiameds.com.tiameds.entity.User;
-import tiameds.com.tiameds.services.auth.UserService;
+import tiameds.com.tiameds.services.auth.MyUserDetails;
+import tiameds.com.tiameds.services.auth.TokenPrincipal;
+import tiameds.com.tiameds.services.auth.UserDetailsServiceImpl;
 
 
 import java.util.Optional;
@@ -11,26 +15,46 @@ import java.util.Optional;
 @Service
 public class UserAuthService {
 
-    private final JwtUtil jwtUtils;
-    private final UserService userService;
+    private final UserDetailsServiceImpl userDetailsService;
 
-    @Autowired
-    public UserAuthService(JwtUtil jwtUtils, UserService userService) {
-        this.jwtUtils = jwtUtils;
-        this.userService = userService;
+    public UserAuthService(UserDetailsServiceImpl userDetailsService) {
+        this.userDetailsService = userDetailsService;
     }
 
-    public Optional<User> authenticateUser(String token) {
-        // Validate token format
-        if (!token.startsWith("Bearer ")) {
+    /**
+     * Returns the user authenticated by the JWT filter for the current request.
+     * The token has already been verified; with a plain token the user was loaded by the filter, with a
+     * claims token it is taken from the principal cache now, so only handlers that need the user pay for it.
+     *
+     * @return the current user, or empty if the request is not authenticated
+     */
+    public Optional<User> getCurrentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
             return Optional.empty();
         }
+        if (authentication.getPrincipal() instanceof MyUserDetails userDetails) {
+            return Optional.of(userDetails.getUser());
+        }
+        if (authentication.getPrincipal() instanceof TokenPrincipal principal) {
+            try {
+                return Optional.of(((MyUserDetails) userDetailsService.loadUserByUsername(principal.username())).getUser());
+            } catch (UsernameNotFoundException e) {
+                return Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
 
-        // Extract the username from the token
-        String currentUsername = jwtUtils.extractUsername(token.substring(7));
-
-        // Fetch user details using the username
-        return userService.findByUsername(currentUsername);
+    /**
+     * @return the principal of a claims token, or empty if the request was authenticated otherwise or not at all
+     */
+    public Optional<TokenPrincipal> getTokenPrincipal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof TokenPrincipal principal) {
+            return Optional.of(principal);
+        }
+        return Optional.empty();
     }
 
 }
@@ -0,0 +1,306 @@
+-- Schema as Hibernate created it with ddl-auto: update. Every statement is conditional, so this runs both on an
+-- empty database and on one that was created by Hibernate before migrations took over (baseline-version: 0).
+
+-- users, roles and modules
+
+CREATE TABLE IF NOT EXISTS users
+(
+    user_id     bigint       NOT NULL PRIMARY KEY,
+    username    varchar(255) NOT NULL UNIQUE,
+    password    varchar(255) NOT NULL,
+    is_verified boolean      NOT NULL,
+    email       varchar(255) NOT NULL UNIQUE,
+    first_name  varchar(255) NOT NULL,
+    last_name   varchar(255) NOT NULL,
+    phone       varchar(255),
+    address     varchar(255),
+    city        varchar(255),
+    state       varchar(255),
+    zip         varchar(255),
+    country     varchar(255),
+    enabled     boolean      NOT NULL,
+    created_at  timestamp(6),
+    updated_at  timestamp(6),
+    created_by  bigint REFERENCES users (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS roles
+(
+    role_id    integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       varchar(255) NOT NULL UNIQUE,
+    created_at timestamp(6),
+    updated_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS modules
+(
+    module_id  bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       varchar(255) NOT NULL UNIQUE,
+    created_at timestamp(6),
+    updated_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS users_roles
+(
+    user_id bigint  NOT NULL REFERENCES users (user_id),
+    role_id integer NOT NULL REFERENCES roles (role_id),
+    PRIMARY KEY (user_id, role_id)
+);
+
+CREATE TABLE IF NOT EXISTS users_modules
+(
+    user_id   bigint NOT NULL REFERENCES users (user_id),
+    module_id bigint NOT NULL REFERENCES modules (module_id),
+    PRIMARY KEY (user_id, module_id)
+);
+
+-- labs and their catalogs
+
+CREATE TABLE IF NOT EXISTS labs
+(
+    lab_id      bigint       NOT NULL PRIMARY KEY,
+    name        varchar(255) NOT NULL,
+    address     varchar(255) NOT NULL,
+    city        varchar(255) NOT NULL,
+    state       varchar(255) NOT NULL,
+    description varchar(255) NOT NULL,
+    is_active   boolean      NOT NULL,
+    created_at  timestamp(6),
+    updated_at  timestamp(6),
+    created_by  bigint REFERENCES users (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS lab_members
+(
+    lab_id  bigint NOT NULL REFERENCES labs (lab_id),
+    user_id bigint NOT NULL REFERENCES users (user_id),
+    PRIMARY KEY (lab_id, user_id)
+);
+
+CREATE TABLE IF NOT EXISTS tests
+(
+    test_id    bigint         NOT NULL PRIMARY KEY,
+    category   varchar(255)   NOT NULL,
+    name       varchar(255)   NOT NULL,
+    price      numeric(38, 2) NOT NULL,
+    created_at timestamp(6),
+    updated_at timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS lab_tests
+(
+    lab_id  bigint NOT NULL REFERENCES labs (lab_id),
+    test_id bigint NOT NULL REFERENCES tests (test_id),
+    PRIMARY KEY (lab_id, test_id)
+);
+
+CREATE TABLE IF NOT EXISTS health_packages
+(
+    package_id   bigint           NOT NULL PRIMARY KEY,
+    package_name varchar(255)     NOT NULL,
+    price        double precision NOT NULL,
+    created_at   timestamp(6),
+    updated_at   timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS package_tests
+(
+    package_id bigint NOT NULL REFERENCES health_packages (package_id),
+    test_id    bigint NOT NULL REFERENCES tests (test_id),
+    PRIMARY KEY (package_id, test_id)
+);
+
+CREATE TABLE IF NOT EXISTS lab_packages
+(
+    lab_id     bigint NOT NULL REFERENCES labs (lab_id),
+    package_id bigint NOT NULL REFERENCES health_packages (package_id),
+    PRIMARY KEY (lab_id, package_id)
+);
+
+CREATE TABLE IF NOT EXISTS doctors
+(
+    doctor_id            bigint       NOT NULL PRIMARY KEY,
+    name                 varchar(255) NOT NULL,
+    email                varchar(255),
+    speciality           varchar(255) NOT NULL,
+    qualification        varchar(255) NOT NULL,
+    hospital_affiliation varchar(255) NOT NULL,
+    license_number       varchar(255),
+    phone                varchar(255) NOT NULL,
+    address              varchar(255) NOT NULL,
+    city                 varchar(255) NOT NULL,
+    state                varchar(255) NOT NULL,
+    country              varchar(255) NOT NULL,
+    created_at           timestamp(6),
+    updated_at           timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS lab_doctors
+(
+    lab_id    bigint NOT NULL REFERENCES labs (lab_id),
+    doctor_id bigint NOT NULL REFERENCES doctors (doctor_id),
+    PRIMARY KEY (lab_id, doctor_id)
+);
+
+CREATE TABLE IF NOT EXISTS insurance
+(
+    insurance_id   bigint           NOT NULL PRIMARY KEY,
+    name           varchar(255)     NOT NULL,
+    description    varchar(255)     NOT NULL,
+    price          double precision NOT NULL,
+    duration       integer          NOT NULL,
+    coverage_limit double precision,
+    coverage_type  varchar(255),
+    status         varchar(255),
+    provider       varchar(255),
+    created_at     varchar(255),
+    updated_at     varchar(255)
+);
+
+CREATE TABLE IF NOT EXISTS lab_insurance
+(
+    lab_id       bigint NOT NULL REFERENCES labs (lab_id),
+    insurance_id bigint NOT NULL REFERENCES insurance (insurance_id),
+    PRIMARY KEY (lab_id, insurance_id)
+);
+
+-- patients, visits and billing
+
+CREATE TABLE IF NOT EXISTS patients
+(
+    patient_id    bigint NOT NULL PRIMARY KEY,
+    first_name    varchar(255),
+    last_name     varchar(255),
+    email         varchar(255),
+    phone         varchar(255),
+    address       varchar(255),
+    city          varchar(255),
+    state         varchar(255),
+    zip           varchar(255),
+    blood_group   varchar(255),
+    date_of_birth date,
+    created_at    timestamp(6),
+    updated_at    timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS lab_patients
+(
+    patient_id bigint NOT NULL REFERENCES patients (patient_id),
+    lab_id     bigint NOT NULL REFERENCES labs (lab_id),
+    PRIMARY KEY (patient_id, lab_id)
+);
+
+CREATE TABLE IF NOT EXISTS billing
+(
+    billing_id     bigint         NOT NULL PRIMARY KEY,
+    total_amount   numeric(38, 2) NOT NULL,
+    payment_status varchar(255)   NOT NULL,
+    payment_method varchar(255)   NOT NULL,
+    payment_date   varchar(255)   NOT NULL,
+    discount       numeric(38, 2) NOT NULL,
+    gst_rate       numeric(38, 2) NOT NULL,
+    gst_amount     numeric(38, 2) NOT NULL,
+    cgst_amount    numeric(38, 2) NOT NULL,
+    sgst_amount    numeric(38, 2) NOT NULL,
+    igst_amount    numeric(38, 2) NOT NULL,
+    net_amount     numeric(38, 2) NOT NULL,
+    created_at     timestamp(6),
+    updated_at     timestamp(6)
+);
+
+CREATE TABLE IF NOT EXISTS patient_visits
+(
+    visit_id          bigint       NOT NULL PRIMARY KEY,
+    visit_date        date         NOT NULL,
+    visit_type        varchar(255) NOT NULL,
+    visit_status      varchar(255) NOT NULL,
+    visit_description varchar(255),
+    patient_id        bigint       NOT NULL REFERENCES patients (patient_id),
+    billing_id        bigint UNIQUE REFERENCES billing (billing_id),
+    doctor_id         bigint       NOT NULL REFERENCES doctors (doctor_id),
+    created_at        timestamp(6),
+    updated_at        timestamp(6)
+);
+
+-- lab of a billing and of a visit, added after the tables first went live
+ALTER TABLE billing ADD COLUMN IF NOT EXISTS lab_id bigint REFERENCES labs (lab_id);
+ALTER TABLE patient_visits ADD COLUMN IF NOT EXISTS lab_id bigint REFERENCES labs (lab_id);
+
+CREATE INDEX IF NOT EXISTS idx_billing_lab_id ON billing (lab_id, billing_id);
+CREATE INDEX IF NOT EXISTS idx_billing_lab_status_id ON billing (lab_id, payment_status, billing_id);
+CREATE INDEX IF NOT EXISTS idx_billing_lab_payment_date ON billing (lab_id, payment_date);
+CREATE INDEX IF NOT EXISTS idx_patient_visits_lab_date_id ON patient_visits (lab_id, visit_date, visit_id);
+CREATE INDEX IF NOT EXISTS idx_patient_visits_lab_doctor_date_id ON patient_visits (lab_id, doctor_id, visit_date, visit_id);
+
+CREATE TABLE IF NOT EXISTS patient_visit_tests
+(
+    visit_id bigint NOT NULL REFERENCES patient_visits (visit_id),
+    test_id  bigint NOT NULL REFERENCES tests (test_id),
+    PRIMARY KEY (visit_id, test_id)
+);
+
+CREATE TABLE IF NOT EXISTS patient_visit_packages
+(
+    visit_id   bigint NOT NULL REFERENCES patient_visits (visit_id),
+    package_id bigint NOT NULL REFERENCES health_packages (package_id),
+    PRIMARY KEY (visit_id, package_id)
+);
+
+CREATE TABLE IF NOT EXISTS visit_insurance
+(
+    visit_id     bigint NOT NULL REFERENCES patient_visits (visit_id),
+    insurance_id bigint NOT NULL REFERENCES insurance (insurance_id),
+    PRIMARY KEY (visit_id, insurance_id)
+);
+
+-- derived tables
+
+CREATE TABLE IF NOT EXISTS lab_revenue_daily
+(
+    revenue_id     bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    lab_id         bigint         NOT NULL REFERENCES labs (lab_id),
+    revenue_date   date           NOT NULL,
+    payment_method varchar(255)   NOT NULL,
+    billing_count  bigint         NOT NULL,
+    total_amount   numeric(38, 2) NOT NULL,
+    discount       numeric(38, 2) NOT NULL,
+    gst_amount     numeric(38, 2) NOT NULL,
+    cgst_amount    numeric(38, 2) NOT NULL,
+    sgst_amount    numeric(38, 2) NOT NULL,
+    igst_amount    numeric(38, 2) NOT NULL,
+    net_amount     numeric(38, 2) NOT NULL,
+    CONSTRAINT uk_lab_revenue_daily_lab_date_method UNIQUE (lab_id, revenue_date, payment_method)
+);
+
+CREATE TABLE IF NOT EXISTS lab_catalog_versions
+(
+    catalog_version_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    lab_id             bigint       NOT NULL,
+    catalog            varchar(255) NOT NULL,
+    version            bigint       NOT NULL,
+    CONSTRAINT uk_lab_catalog_versions_lab_catalog UNIQUE (lab_id, catalog)
+);
+
+CREATE TABLE IF NOT EXISTS lab_catalog_keys
+(
+    catalog_key_id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    lab_id         bigint       NOT NULL,
+    catalog        varchar(255) NOT NULL,
+    name_key       varchar(255) NOT NULL,
+    item_id        bigint       NOT NULL,
+    CONSTRAINT uk_lab_catalog_keys_lab_catalog_key UNIQUE (lab_id, catalog, name_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_lab_catalog_keys_catalog_item ON lab_catalog_keys (catalog, item_id);
+
+-- ID sequences (pooled, see IdSequences); they are moved past existing rows on startup
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS labs_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS tests_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS health_packages_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS doctors_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS insurance_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS patients_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS billing_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS patient_visits_seq START WITH 1 INCREMENT BY 50;
@@ -0,0 +1,46 @@
+-- Indexes for the lab-scoped access paths of the repositories. Join tables only had their primary key, which
+-- serves lookups from its first column; the reverse direction and the FK columns of deletes scanned the table.
+
+-- catalog join tables, looked up from the item side (findLabIdsBy*, Test/Doctors/HealthPackage/Insurance.labs,
+-- ON DELETE checks); (lab_id, item_id) is already covered by the primary keys
+CREATE INDEX IF NOT EXISTS idx_lab_tests_test_lab ON lab_tests (test_id, lab_id);
+CREATE INDEX IF NOT EXISTS idx_lab_doctors_doctor_lab ON lab_doctors (doctor_id, lab_id);
+CREATE INDEX IF NOT EXISTS idx_lab_packages_package_lab ON lab_packages (package_id, lab_id);
+CREATE INDEX IF NOT EXISTS idx_lab_insurance_insurance_lab ON lab_insurance (insurance_id, lab_id);
+CREATE INDEX IF NOT EXISTS idx_package_tests_test_package ON package_tests (test_id, package_id);
+
+-- memberships from the user side (LabRepository.findLabsByUserId, UserRepository.existsByIdAndLabsId)
+CREATE INDEX IF NOT EXISTS idx_lab_members_user_lab ON lab_members (user_id, lab_id);
+
+-- patients of a lab (PatientRepository.findAllByLabsId, patient CSV export); the primary key starts with patient_id
+CREATE INDEX IF NOT EXISTS idx_lab_patients_lab_patient ON lab_patients (lab_id, patient_id);
+
+-- visit links from the linked side, for deletes of tests, packages and insurance
+CREATE INDEX IF NOT EXISTS idx_patient_visit_tests_test_visit ON patient_visit_tests (test_id, visit_id);
+CREATE INDEX IF NOT EXISTS idx_patient_visit_packages_package_visit ON patient_visit_packages (package_id, visit_id);
+CREATE INDEX IF NOT EXISTS idx_visit_insurance_insurance_visit ON visit_insurance (insurance_id, visit_id);
+
+-- visit history of a patient, newest first (VisitRepository.findRowsByPatientId, findByPatientId)
+CREATE INDEX IF NOT EXISTS idx_patient_visits_patient_date_id ON patient_visits (patient_id, visit_date, visit_id);
+
+-- visits of a doctor, for doctor deletes
+CREATE INDEX IF NOT EXISTS idx_patient_visits_doctor ON patient_visits (doctor_id);
+
+-- duplicate probes (existsByPhone, existsByEmail, findByEmail, existsByName, existsByPackageName)
+CREATE INDEX IF NOT EXISTS idx_patients_phone ON patients (phone);
+CREATE INDEX IF NOT EXISTS idx_patients_email ON patients (email);
+CREATE INDEX IF NOT EXISTS idx_doctors_email ON doctors (email);
+CREATE INDEX IF NOT EXISTS idx_labs_name ON labs (name);
+CREATE INDEX IF NOT EXISTS idx_health_packages_package_name ON health_packages (package_name);
+
+-- insurance by name within a lab (InsuranceRepository.existsByNameAndLabId)
+CREATE INDEX IF NOT EXISTS idx_insurance_name ON insurance (name);
+
+-- labs and users created by a user (findByCreatedBy)
+CREATE INDEX IF NOT EXISTS idx_labs_created_by ON labs (created_by);
+CREATE INDEX IF NOT EXISTS idx_users_created_by ON users (created_by);
+
+-- revenue rebuild of one lab reads every billing of the lab; the rollup columns are carried in the index
+CREATE INDEX IF NOT EXISTS idx_billing_lab_revenue ON billing (lab_id, payment_method)
+    INCLUDE (payment_date, created_at, total_amount, discount, gst_amount, cgst_amount, sgst_amount, igst_amount,
+             net_amount);
@@ -0,0 +1,3 @@
+-- Bumped whenever the roles, modules or lab memberships of a user change. Claims-rich access tokens carry the
+-- version they were issued with, so an instance that saw the change stops trusting the older tokens.
+ALTER TABLE users ADD COLUMN IF NOT EXISTS token_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,28 @@
+-- Visits registered before patient_visits.lab_id existed take the lab of their patient. That is only certain for
+-- patients linked to a single lab; visits of patients shared between labs keep a NULL lab and are reported, so
+-- they can be assigned by hand instead of showing up in another lab's pages and exports.
+UPDATE patient_visits v
+SET lab_id = lp.lab_id
+FROM (SELECT patient_id, min(lab_id) AS lab_id
+      FROM lab_patients
+      GROUP BY patient_id
+      HAVING count(*) = 1) lp
+WHERE v.lab_id IS NULL
+  AND v.patient_id = lp.patient_id;
+
+DO $$
+DECLARE
+    unassigned bigint;
+    sample     text;
+BEGIN
+    SELECT count(*), string_agg(visit_id::text, ', ' ORDER BY visit_id) FILTER (WHERE rn <= 100)
+    INTO unassigned, sample
+    FROM (SELECT visit_id, row_number() OVER (ORDER BY visit_id) AS rn
+          FROM patient_visits
+          WHERE lab_id IS NULL) missing;
+    IF unassigned > 0 THEN
+        RAISE WARNING '% visits were left without a lab because their patient belongs to several labs or none, '
+            'first ones: %', unassigned, sample;
+    END IF;
+END
+$$;
@@ -0,0 +1,7 @@
+-- Billings registered before billing.lab_id existed take the lab of their visit, assigned by V4.
+UPDATE billing b
+SET lab_id = v.lab_id
+FROM patient_visits v
+WHERE b.lab_id IS NULL
+  AND v.billing_id = b.billing_id
+  AND v.lab_id IS NOT NULL;
@@ -0,0 +1,16 @@
+-- Name keys of tests and email keys of doctors linked to a lab before lab_catalog_keys existed. Of duplicates
+-- already in a lab, the lowest ID keeps the key.
+INSERT INTO lab_catalog_keys (lab_id, catalog, name_key, item_id)
+SELECT lt.lab_id, 'tests', lower(trim(t.name)), t.test_id
+FROM lab_tests lt
+         JOIN tests t ON t.test_id = lt.test_id
+ORDER BY t.test_id
+ON CONFLICT (lab_id, catalog, name_key) DO NOTHING;
+
+INSERT INTO lab_catalog_keys (lab_id, catalog, name_key, item_id)
+SELECT ld.lab_id, 'doctors', lower(trim(d.email)), d.doctor_id
+FROM lab_doctors ld
+         JOIN doctors d ON d.doctor_id = ld.doctor_id
+WHERE d.email IS NOT NULL
+ORDER BY d.doctor_id
+ON CONFLICT (lab_id, catalog, name_key) DO NOTHING;
@@ -0,0 +1,25 @@
+-- The day a billing counts for: the ISO date at the start of payment_date (yyyy-MM-dd, optionally followed by a
+-- time), or the creation day when payment_date is missing or not a valid date. The revenue rollup and the billing
+-- list filters both use it, so a billing is reported and filtered under the same day.
+-- RevenueRollupService.revenueDate applies the same rule to incremental updates.
+CREATE OR REPLACE FUNCTION billing_revenue_date(payment_date varchar, created_at timestamp)
+    RETURNS date
+    LANGUAGE plpgsql
+    IMMUTABLE
+AS
+$$
+BEGIN
+    IF payment_date ~ '^[0-9]{4}-[0-9]{2}-[0-9]{2}' THEN
+        RETURN make_date(substring(payment_date, 1, 4)::int, substring(payment_date, 6, 2)::int,
+                         substring(payment_date, 9, 2)::int);
+    END IF;
+    RETURN created_at::date;
+EXCEPTION
+    WHEN datetime_field_overflow OR invalid_datetime_format THEN
+        RETURN created_at::date;
+END
+$$;
+
+-- the billing list filters on the revenue day instead of comparing payment_date as text
+DROP INDEX IF EXISTS idx_billing_lab_payment_date;
+CREATE INDEX IF NOT EXISTS idx_billing_lab_revenue_date ON billing (lab_id, billing_revenue_date(payment_date, created_at));
@@ -0,0 +1,142 @@
+package tiameds.com.tiameds.controller.lab;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import tiameds.com.tiameds.dto.lab.TestDTO;
+import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.exception.GlobalExceptionHandler;
+import tiameds.com.tiameds.repository.LabCatalogVersionRepository;
+import tiameds.com.tiameds.repository.LabRepository;
+import tiameds.com.tiameds.repository.TestRepository;
+import tiameds.com.tiameds.services.lab.TestServices;
+import tiameds.com.tiameds.utils.CatalogResponseCache;
+import tiameds.com.tiameds.utils.LabStatusChannel;
+import tiameds.com.tiameds.utils.TestCatalogSnapshots;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TestControllerTest {
+
+    private static final String CURRENT_ETAG = "\"1-tests-3\"";
+
+    private final LabRepository labRepository = mock(LabRepository.class);
+    private final TestRepository testRepository = mock(TestRepository.class);
+    private final TestServices testServices = mock(TestServices.class);
+    private final LabCatalogVersionRepository labCatalogVersionRepository = mock(LabCatalogVersionRepository.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        LabStatusChannel labStatusChannel = new LabStatusChannel(null, null, false, 250);
+        CatalogResponseCache catalogResponseCache = new CatalogResponseCache(labCatalogVersionRepository,
+                labStatusChannel, Jackson2ObjectMapperBuilder.json().build(), mock(PlatformTransactionManager.class));
+        TestCatalogSnapshots testCatalogSnapshots = new TestCatalogSnapshots(testRepository, labStatusChannel,
+                catalogResponseCache);
+        mockMvc = MockMvcBuilders.standaloneSetup(new TestController(labRepository, testRepository, testServices,
+                        null, testCatalogSnapshots, catalogResponseCache))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        when(labCatalogVersionRepository.findVersion(1L, CatalogResponseCache.TESTS)).thenReturn(Optional.of(3L));
+        when(testRepository.findCatalogByLabId(1L)).thenReturn(List.of(test(10, "CBC")));
+    }
+
+    @Test
+    void firstRequestGetsBodyAndEtag() throws Exception {
+        mockMvc.perform(get("/admin/lab/1/tests"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, CURRENT_ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.data[0].name").value("CBC"));
+    }
+
+    @Test
+    void matchingIfNoneMatchGetsNotModified() throws Exception {
+        for (String ifNoneMatch : List.of(CURRENT_ETAG, "W/" + CURRENT_ETAG, "\"1-tests-2\", " + CURRENT_ETAG, "*")) {
+            mockMvc.perform(get("/admin/lab/1/tests").header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, CURRENT_ETAG))
+                    .andExpect(content().bytes(new byte[0]));
+        }
+        // built once, answered from the cache afterwards
+        verify(testRepository, times(1)).findCatalogByLabId(1L);
+    }
+
+    @Test
+    void otherIfNoneMatchGetsBody() throws Exception {
+        for (String ifNoneMatch : List.of("\"1-tests-2\"", "1-tests-3", "\"2-tests-3\", W/\"1-tests-30\"", " ")) {
+            mockMvc.perform(get("/admin/lab/1/tests").header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, CURRENT_ETAG))
+                    .andExpect(jsonPath("$.data[0].name").value("CBC"));
+        }
+    }
+
+    @Test
+    void addedTestEvictsCachedResponse() throws Exception {
+        mockMvc.perform(get("/admin/lab/1/tests"))
+                .andExpect(header().string(HttpHeaders.ETAG, CURRENT_ETAG));
+
+        Lab lab = new Lab();
+        lab.setId(1L);
+        tiameds.com.tiameds.entity.Test added = new tiameds.com.tiameds.entity.Test();
+        added.setId(11);
+        added.setName("LFT");
+        when(labRepository.findById(1L)).thenReturn(Optional.of(lab));
+        when(testServices.addTest(eq(lab), any(TestDTO.class))).thenReturn(added);
+        when(labCatalogVersionRepository.findVersion(1L, CatalogResponseCache.TESTS)).thenReturn(Optional.of(4L));
+        when(testRepository.findCatalogByLabId(1L)).thenReturn(List.of(test(10, "CBC"), test(11, "LFT")));
+
+        mockMvc.perform(post("/admin/lab/1/add")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"LFT\"}"))
+                .andExpect(status().isCreated());
+
+        verify(labCatalogVersionRepository).bump(1L, CatalogResponseCache.TESTS);
+        mockMvc.perform(get("/admin/lab/1/tests").header(HttpHeaders.IF_NONE_MATCH, CURRENT_ETAG))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-tests-4\""))
+                .andExpect(jsonPath("$.data[1].name").value("LFT"));
+    }
+
+    @Test
+    void testOfAnotherLabGetsErrorEnvelope() throws Exception {
+        tiameds.com.tiameds.entity.Test other = new tiameds.com.tiameds.entity.Test();
+        other.setId(12);
+        when(labRepository.existsById(1L)).thenReturn(true);
+        when(testRepository.findById(12L)).thenReturn(Optional.of(other));
+        when(testRepository.existsInLab(12L, 1L)).thenReturn(false);
+
+        mockMvc.perform(get("/admin/lab/1/test/12"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("error"))
+                .andExpect(jsonPath("$.message").value(BadRequestException.TEST_NOT_IN_LAB.getMessage()));
+    }
+
+    private static TestDTO test(long id, String name) {
+        return new TestDTO(id, "Blood", name, new BigDecimal("250.00"), null, null);
+    }
+}
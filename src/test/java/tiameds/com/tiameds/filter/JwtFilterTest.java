@@ -0,0 +1,84 @@
+package tiameds.com.tiameds.filter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.repository.UserRepository;
+import tiameds.com.tiameds.services.auth.TokenPrincipal;
+import tiameds.com.tiameds.services.auth.TokenVersions;
+import tiameds.com.tiameds.services.auth.UserDetailsServiceImpl;
+import tiameds.com.tiameds.services.auth.UserService;
+import tiameds.com.tiameds.utils.JwtUtil;
+import tiameds.com.tiameds.utils.LabStatusChannel;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JwtFilterTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final LabStatusChannel labStatusChannel = new LabStatusChannel(null, null, false, 250);
+    private final TokenVersions tokenVersions = new TokenVersions(userRepository, labStatusChannel, true,
+            Duration.ofMinutes(5));
+    private final UserDetailsServiceImpl userDetailsService = new UserDetailsServiceImpl(userRepository, tokenVersions,
+            labStatusChannel, Duration.ofMinutes(5), 100);
+    private final UserService userService = new UserService(userRepository, null, null, userDetailsService);
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private final JwtFilter jwtFilter = new JwtFilter();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(jwtUtil, "SECRET_KEY", "0123456789abcdef0123456789abcdef");
+        ReflectionTestUtils.setField(jwtUtil, "accessTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+        ReflectionTestUtils.setField(jwtFilter, "userDetailsService", userDetailsService);
+        ReflectionTestUtils.setField(jwtFilter, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(jwtFilter, "tokenVersions", tokenVersions);
+
+        User user = new User();
+        user.setId(9L);
+        user.setUsername("asha");
+        when(userRepository.findById(9L)).thenReturn(Optional.of(user));
+        // as after the delete is flushed: the bump finds no row
+        when(userRepository.incrementTokenVersion(anyLong())).thenReturn(Optional.empty());
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void tokenIssuedBeforeDeletionIsRejectedAfterwards() throws Exception {
+        String token = jwtUtil.generateAccessToken(new TokenPrincipal(9L, "asha", Set.of("ADMIN"), Set.of(),
+                Set.of(1L), 3L, Instant.now()));
+        assertThat(authenticate(token)).isTrue();
+
+        userService.deleteUser(9L);
+
+        assertThat(authenticate(token)).isFalse();
+    }
+
+    private boolean authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/lab/1/visits");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+        jwtFilter.doFilter(request, new MockHttpServletResponse(), chain);
+        assertThat(chain.getRequest()).isNotNull();
+        return SecurityContextHolder.getContext().getAuthentication() != null;
+    }
+}
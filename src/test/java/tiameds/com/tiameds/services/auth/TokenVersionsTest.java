@@ -0,0 +1,50 @@
+package tiameds.com.tiameds.services.auth;
+
+import org.junit.jupiter.api.Test;
+import tiameds.com.tiameds.repository.UserRepository;
+import tiameds.com.tiameds.utils.LabStatusChannel;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TokenVersionsTest {
+
+    private final TokenVersions tokenVersions = new TokenVersions(mock(UserRepository.class),
+            new LabStatusChannel(null, null, false, 250), true, Duration.ofMinutes(5));
+
+    @Test
+    void bumpOnAnotherInstanceDistrustsOlderTokens() {
+        TokenPrincipal issued = principal(9L, 3L, Instant.now().minusSeconds(5));
+        assertThat(tokenVersions.isCurrent(issued)).isTrue();
+
+        tokenVersions.onUserChanged(9L, 4L);
+
+        assertThat(tokenVersions.isCurrent(issued)).isFalse();
+        assertThat(tokenVersions.isCurrent(principal(9L, 4L, Instant.now()))).isTrue();
+        assertThat(tokenVersions.isCurrent(principal(10L, 3L, Instant.now().minusSeconds(5)))).isTrue();
+    }
+
+    @Test
+    void deletionOnAnotherInstanceDistrustsEveryToken() {
+        tokenVersions.onUserChanged(9L, Long.MAX_VALUE);
+
+        assertThat(tokenVersions.isCurrent(principal(9L, 40L, Instant.now()))).isFalse();
+    }
+
+    @Test
+    void roleChangeOnAnotherInstanceDistrustsTokensIssuedBefore() {
+        TokenPrincipal issued = principal(9L, 3L, Instant.now().minusSeconds(5));
+
+        tokenVersions.onAllUsersChanged();
+
+        assertThat(tokenVersions.isCurrent(issued)).isFalse();
+    }
+
+    private static TokenPrincipal principal(long userId, long version, Instant issuedAt) {
+        return new TokenPrincipal(userId, "user" + userId, Set.of(), Set.of(), Set.of(1L), version, issuedAt);
+    }
+}
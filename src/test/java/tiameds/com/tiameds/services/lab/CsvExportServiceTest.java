@@ -0,0 +1,44 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tiameds.com.tiameds.exception.TooManyRequestsException;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CsvExportServiceTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final CsvExportService csvExportService = new CsvExportService(dataSource,
+            mock(PlatformTransactionManager.class), 1000, 1, Duration.ofSeconds(30), Duration.ofMinutes(1),
+            Duration.ofMinutes(10));
+
+    @Test
+    void exportBeyondLimitIsRefused() {
+        assertThat(csvExportService.exportTests(1L, "lab", false).getBody()).isNotNull();
+
+        assertThatThrownBy(() -> csvExportService.exportPatients(1L, "lab", false))
+                .isSameAs(TooManyRequestsException.CSV_EXPORTS_BUSY);
+    }
+
+    @Test
+    void failedExportGivesItsPermitBack() throws Exception {
+        when(dataSource.getConnection()).thenThrow(new SQLException("database down"));
+
+        StreamingResponseBody failed = csvExportService.exportTests(1L, "lab", false).getBody();
+        assertThatThrownBy(() -> failed.writeTo(new ByteArrayOutputStream()))
+                .isInstanceOf(CannotGetJdbcConnectionException.class);
+
+        assertThat(csvExportService.exportVisits(1L, "lab", false).getBody()).isNotNull();
+    }
+}
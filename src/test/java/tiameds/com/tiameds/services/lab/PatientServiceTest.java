@@ -0,0 +1,96 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import tiameds.com.tiameds.entity.BillingEntity;
+import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.entity.PatientEntity;
+import tiameds.com.tiameds.entity.VisitEntity;
+import tiameds.com.tiameds.exception.NotFoundException;
+import tiameds.com.tiameds.repository.LabRepository;
+import tiameds.com.tiameds.repository.LabRevenueDailyRepository;
+import tiameds.com.tiameds.repository.PatientRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PatientServiceTest {
+
+    private final LabRepository labRepository = mock(LabRepository.class);
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final LabRevenueDailyRepository labRevenueDailyRepository = mock(LabRevenueDailyRepository.class);
+    private final PatientService patientService = new PatientService(labRepository, null, null, patientRepository,
+            null, null, null, null, new RevenueRollupService(labRevenueDailyRepository), null);
+
+    @Test
+    void deletingPatientTakesItsBillingsOutOfTheRollup() {
+        Lab lab = lab(1L);
+        Lab otherLab = lab(2L);
+        PatientEntity patient = new PatientEntity();
+        patient.getLabs().add(lab);
+        patient.getLabs().add(otherLab);
+        patient.setVisits(new LinkedHashSet<>(List.of(
+                visit(lab, "2024-03-05", "CASH", "100.00"),
+                visit(otherLab, "2024-03-06 10:15", "CARD", "250.00"),
+                new VisitEntity())));
+        when(labRepository.findById(1L)).thenReturn(Optional.of(lab));
+        when(patientRepository.findById(7L)).thenReturn(Optional.of(patient));
+
+        patientService.deletePatient(7L, 1L);
+
+        InOrder order = inOrder(labRevenueDailyRepository, patientRepository);
+        order.verify(labRevenueDailyRepository).addToDay(eq(1L), eq(LocalDate.of(2024, 3, 5)), eq("CASH"), eq(-1L),
+                eq(new BigDecimal("-100.00")), any(), any(), any(), any(), any(), any());
+        order.verify(labRevenueDailyRepository).addToDay(eq(2L), eq(LocalDate.of(2024, 3, 6)), eq("CARD"), eq(-1L),
+                eq(new BigDecimal("-250.00")), any(), any(), any(), any(), any(), any());
+        order.verify(patientRepository).delete(patient);
+        order.verifyNoMoreInteractions();
+    }
+
+    @Test
+    void patientOfAnotherLabIsNotDeleted() {
+        Lab lab = lab(1L);
+        PatientEntity patient = new PatientEntity();
+        patient.getLabs().add(lab(2L));
+        patient.getVisits().add(visit(lab, "2024-03-05", "CASH", "100.00"));
+        when(labRepository.findById(1L)).thenReturn(Optional.of(lab));
+        when(patientRepository.findById(7L)).thenReturn(Optional.of(patient));
+
+        assertThatThrownBy(() -> patientService.deletePatient(7L, 1L)).isSameAs(NotFoundException.LAB_PATIENT);
+
+        verify(labRevenueDailyRepository, never()).addToDay(anyLong(), any(),
+                anyString(), anyLong(), any(), any(), any(), any(), any(), any(), any());
+        verify(patientRepository, never()).delete(any());
+    }
+
+    private static Lab lab(long id) {
+        Lab lab = new Lab();
+        lab.setId(id);
+        return lab;
+    }
+
+    private static VisitEntity visit(Lab lab, String paymentDate, String paymentMethod, String totalAmount) {
+        BillingEntity billing = new BillingEntity();
+        billing.setLab(lab);
+        billing.setPaymentDate(paymentDate);
+        billing.setPaymentMethod(paymentMethod);
+        billing.setTotalAmount(new BigDecimal(totalAmount));
+        VisitEntity visit = new VisitEntity();
+        visit.setBilling(billing);
+        return visit;
+    }
+}
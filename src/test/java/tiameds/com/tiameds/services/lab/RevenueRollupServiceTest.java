@@ -0,0 +1,42 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.junit.jupiter.api.Test;
+import tiameds.com.tiameds.entity.BillingEntity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RevenueRollupServiceTest {
+
+    @Test
+    void paymentDayWhenGiven() {
+        assertThat(RevenueRollupService.revenueDate(billing("2024-03-01T10:15:00", LocalDateTime.of(2024, 2, 29, 23, 50))))
+                .isEqualTo(LocalDate.of(2024, 3, 1));
+    }
+
+    @Test
+    void creationDayWithoutUsablePaymentDate() {
+        // created before midnight and recorded or unrecorded on a later day: still the creation day, as in a rebuild
+        LocalDateTime createdAt = LocalDateTime.of(2024, 2, 29, 23, 50);
+
+        assertThat(RevenueRollupService.revenueDate(billing(null, createdAt))).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(RevenueRollupService.revenueDate(billing("soon", createdAt))).isEqualTo(LocalDate.of(2024, 2, 29));
+        assertThat(RevenueRollupService.revenueDate(billing("2024-13-01", createdAt))).isEqualTo(LocalDate.of(2024, 2, 29));
+    }
+
+    @Test
+    void unsavedBillingHasNoRevenueDay() {
+        assertThatThrownBy(() -> RevenueRollupService.revenueDate(billing(null, null)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static BillingEntity billing(String paymentDate, LocalDateTime createdAt) {
+        BillingEntity billing = new BillingEntity();
+        billing.setPaymentDate(paymentDate);
+        billing.setCreatedAt(createdAt);
+        return billing;
+    }
+}
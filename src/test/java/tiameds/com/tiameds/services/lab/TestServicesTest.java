@@ -0,0 +1,153 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import tiameds.com.tiameds.dto.lab.CsvImportReportDTO;
+import tiameds.com.tiameds.dto.lab.TestDTO;
+import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.exception.BadRequestException;
+import tiameds.com.tiameds.repository.LabCatalogKeyRepository;
+import tiameds.com.tiameds.repository.TestCatalogJdbcRepository;
+import tiameds.com.tiameds.repository.TestRepository;
+import tiameds.com.tiameds.utils.TestCatalogSnapshots;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TestServicesTest {
+
+    private static final String HEADER = "Category Name,LabTest Name,Price(INR)\n";
+
+    private final TestRepository testRepository = mock(TestRepository.class);
+    private final TestCatalogJdbcRepository testCatalogJdbcRepository = mock(TestCatalogJdbcRepository.class);
+    private final LabCatalogKeyRepository labCatalogKeyRepository = mock(LabCatalogKeyRepository.class);
+    private final TestCatalogSnapshots testCatalogSnapshots = mock(TestCatalogSnapshots.class);
+    private final TestServices testServices = new TestServices(testRepository, testCatalogJdbcRepository,
+            labCatalogKeyRepository, testCatalogSnapshots, mock(PlatformTransactionManager.class), 2);
+    private final Lab lab = new Lab();
+    private final List<String> committed = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        lab.setId(1L);
+        when(testCatalogJdbcRepository.findTestNameKeys(1L)).thenReturn(new HashSet<>());
+        // the database rejects the first "Taken" row, e.g. because another request claimed the name meanwhile
+        doAnswer(invocation -> {
+            List<TestCatalogJdbcRepository.TestRow> rows = invocation.getArgument(1);
+            if (rows.contains(new TestCatalogJdbcRepository.TestRow("Blood", "Taken", new BigDecimal("50")))) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            rows.forEach(row -> committed.add(row.name()));
+            return null;
+        }).when(testCatalogJdbcRepository).insertTests(anyLong(), anyList());
+    }
+
+    @Test
+    void rejectedRowDoesNotTakeItsChunkDown() throws Exception {
+        CsvImportReportDTO report = testServices.uploadCSV(csv(HEADER
+                + "Blood,CBC,100\n"
+                + "Blood,\"Lipid\nProfile\",300\n"
+                + "Blood,Taken,50\n"
+                + "Blood,LFT,200\n"
+                + "Blood,Taken,60\n"
+                + "Blood,KFT,abc\n"), lab);
+
+        assertThat(report.getTotalRows()).isEqualTo(6);
+        assertThat(report.getImported()).isEqualTo(4);
+        assertThat(report.getFailed()).isEqualTo(2);
+        assertThat(report.getDuplicates()).isZero();
+        assertThat(report.getErrors())
+                .extracting(CsvImportReportDTO.RowError::getLine, error -> error.getMessage().split(":")[0])
+                .containsExactly(tuple(5L, "Rejected by the database"), tuple(8L, "Invalid price format"));
+        assertThat(committed).containsExactly("CBC", "Lipid\nProfile", "LFT", "Taken");
+        verify(testCatalogSnapshots).catalogChanged(1L);
+    }
+
+    @Test
+    void catalogChangedWhenImportFailsAfterCommittedChunk() {
+        assertThatThrownBy(() -> testServices.uploadCSV(csv(HEADER
+                + "Blood,CBC,100\n"
+                + "Blood,LFT,200\n"
+                + "Blood,\"KFT,300\n"), lab));
+
+        verify(testCatalogSnapshots).catalogChanged(1L);
+    }
+
+    @Test
+    void catalogUnchangedWhenNothingImported() throws Exception {
+        CsvImportReportDTO report = testServices.uploadCSV(csv(HEADER + "Blood,Taken,50\n"), lab);
+
+        assertThat(report.getFailed()).isEqualTo(1);
+        verify(testCatalogSnapshots, never()).catalogChanged(eq(1L));
+    }
+
+    @Test
+    void missingColumnsAreABadRequest() {
+        assertThatThrownBy(() -> testServices.uploadCSV(csv("Category Name,Price(INR)\nBlood,100\n"), lab))
+                .isInstanceOf(BadRequestException.class)
+                .hasMessage("Missing required columns in CSV: LabTest Name");
+    }
+
+    @Test
+    void blankNameIsRejectedBeforeTheKeyMoves() {
+        tiameds.com.tiameds.entity.Test test = new tiameds.com.tiameds.entity.Test();
+        when(testRepository.findById(10L)).thenReturn(Optional.of(test));
+        when(testRepository.existsInLab(10L, 1L)).thenReturn(true);
+
+        for (String name : Arrays.asList(null, "", "  ")) {
+            assertThatThrownBy(() -> testServices.updateTest(1L, 10L, new TestDTO(10L, "Blood", name, BigDecimal.TEN, null, null)))
+                    .isSameAs(BadRequestException.TEST_NAME_REQUIRED);
+        }
+        verify(labCatalogKeyRepository, never()).rekey(anyString(), anyLong(), any());
+        verify(testRepository, never()).save(any());
+    }
+
+    @Test
+    void takenNameIsRejectedBeforeTheSave() {
+        tiameds.com.tiameds.entity.Test test = new tiameds.com.tiameds.entity.Test();
+        when(testRepository.findById(10L)).thenReturn(Optional.of(test));
+        when(testRepository.existsInLab(10L, 1L)).thenReturn(true);
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(labCatalogKeyRepository).rekey("tests", 10L, "lft");
+
+        assertThatThrownBy(() -> testServices.updateTest(1L, 10L, new TestDTO(10L, "Blood", " LFT", BigDecimal.TEN, null, null)))
+                .isSameAs(BadRequestException.TEST_EXISTS);
+        verify(testRepository, never()).save(any());
+    }
+
+    @Test
+    void testOfAnotherLabIsNotUpdated() {
+        when(testRepository.findById(10L)).thenReturn(Optional.of(new tiameds.com.tiameds.entity.Test()));
+
+        assertThatThrownBy(() -> testServices.updateTest(1L, 10L, new TestDTO(10L, "Blood", "LFT", BigDecimal.TEN, null, null)))
+                .isSameAs(BadRequestException.TEST_NOT_IN_LAB);
+        verify(labCatalogKeyRepository, never()).rekey(anyString(), anyLong(), any());
+    }
+
+    private static MockMultipartFile csv(String content) {
+        return new MockMultipartFile("file", "tests.csv", "text/csv", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
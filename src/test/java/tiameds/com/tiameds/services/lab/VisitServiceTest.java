@@ -0,0 +1,97 @@
+package tiameds.com.tiameds.services.lab;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tiameds.com.tiameds.dto.lab.BillingDTO;
+import tiameds.com.tiameds.dto.lab.PatientDTO;
+import tiameds.com.tiameds.dto.lab.VisitDTO;
+import tiameds.com.tiameds.dto.lab.VisitFilterDTO;
+import tiameds.com.tiameds.dto.lab.VisitRowDTO;
+import tiameds.com.tiameds.entity.BillingEntity;
+import tiameds.com.tiameds.entity.Doctors;
+import tiameds.com.tiameds.entity.Lab;
+import tiameds.com.tiameds.entity.PatientEntity;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.entity.VisitEntity;
+import tiameds.com.tiameds.repository.BillingRepository;
+import tiameds.com.tiameds.repository.DoctorRepository;
+import tiameds.com.tiameds.repository.LabRepository;
+import tiameds.com.tiameds.repository.VisitRepository;
+import tiameds.com.tiameds.utils.CachedEntityLoader;
+import tiameds.com.tiameds.utils.LabAccess;
+import tiameds.com.tiameds.utils.LabAccessableFilter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VisitServiceTest {
+
+    private final LabRepository labRepository = mock(LabRepository.class);
+    private final DoctorRepository doctorRepository = mock(DoctorRepository.class);
+    private final VisitRepository visitRepository = mock(VisitRepository.class);
+    private final LabAccessableFilter labAccessableFilter = mock(LabAccessableFilter.class);
+    private final VisitService visitService = new VisitService(null, labRepository, null, null, doctorRepository,
+            null, mock(BillingRepository.class), visitRepository, labAccessableFilter,
+            mock(RevenueRollupService.class), mock(CachedEntityLoader.class), new VisitMapper(visitRepository));
+
+    private final Lab lab = new Lab();
+    private final User user = new User();
+    private final VisitEntity visit = new VisitEntity();
+
+    @BeforeEach
+    void setUp() {
+        lab.setId(1L);
+        Doctors doctor = new Doctors();
+        doctor.setId(5L);
+        PatientEntity patient = new PatientEntity();
+        patient.setFirstName("Asha");
+        patient.getLabs().add(lab);
+        // registered before lab_id existed, for a patient of more than one lab
+        visit.setVisitId(7L);
+        visit.setPatient(patient);
+        visit.setDoctor(doctor);
+        visit.setBilling(new BillingEntity());
+
+        when(labRepository.findById(1L)).thenReturn(Optional.of(lab));
+        when(labAccessableFilter.checkAccess(1L, user)).thenReturn(LabAccess.GRANTED);
+        when(doctorRepository.findById(5L)).thenReturn(Optional.of(doctor));
+        when(visitRepository.findInLab(7L, 1L)).thenReturn(Optional.of(visit));
+        // the lab-scoped listing only returns visits whose lab_id is the lab, as VisitSpecifications.inLab does
+        when(visitRepository.findRows(any(), anyInt())).thenAnswer(invocation ->
+                visit.getLab() != null && visit.getLab().getId() == 1L ? List.of(row(visit)) : List.of());
+    }
+
+    @Test
+    void updatedVisitWithoutLabShowsUpInTheLabListing() {
+        assertThat(visitService.getVisits(1L, Optional.of(user), new VisitFilterDTO()).getVisits()).isEmpty();
+
+        visitService.updateVisit(1L, 7L, visitDTO("follow-up"), Optional.of(user));
+
+        assertThat(visit.getLab()).isSameAs(lab);
+        List<PatientDTO> visits = visitService.getVisits(1L, Optional.of(user), new VisitFilterDTO()).getVisits();
+        assertThat(visits).extracting(patient -> patient.getVisit().getVisitDescription()).containsExactly("follow-up");
+    }
+
+    private static VisitDTO visitDTO(String description) {
+        BillingDTO billing = new BillingDTO();
+        billing.setTotalAmount(new BigDecimal("100.00"));
+        billing.setNetAmount(new BigDecimal("100.00"));
+        return new VisitDTO(LocalDate.of(2024, 3, 1), "OUT_PATIENT", "ACTIVE", description, 5L,
+                List.of(), List.of(), List.of(), billing);
+    }
+
+    private static VisitRowDTO row(VisitEntity visit) {
+        return new VisitRowDTO(visit.getVisitId(), visit.getVisitDate(), visit.getVisitType(), visit.getVisitStatus(),
+                visit.getVisitDescription(), visit.getDoctor().getId(), visit.getPatient().getFirstName(), null, null,
+                null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null, null,
+                null);
+    }
+}
@@ -0,0 +1,63 @@
+package tiameds.com.tiameds.utils;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheLoadsTest {
+
+    private final AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+
+    @Test
+    void loadsOnceAndCaches() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(CacheLoads.get(cache, "a", key -> key + loads.incrementAndGet())).isEqualTo("a1");
+        assertThat(CacheLoads.get(cache, "a", key -> key + loads.incrementAndGet())).isEqualTo("a1");
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void failedLoadIsRethrownAndNotCached() {
+        IllegalStateException failure = new IllegalStateException("down");
+
+        assertThatThrownBy(() -> CacheLoads.get(cache, "a", key -> {
+            throw failure;
+        })).isSameAs(failure);
+        assertThat(CacheLoads.get(cache, "a", key -> "loaded")).isEqualTo("loaded");
+    }
+
+    @Test
+    void loadInvalidatedWhileRunningIsNotCached() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch invalidated = new CountDownLatch(1);
+        CompletableFuture<String> stale = CompletableFuture.supplyAsync(() -> CacheLoads.get(cache, "a", key -> {
+            loading.countDown();
+            await(invalidated);
+            return "old";
+        }));
+
+        loading.await();
+        cache.asMap().remove("a");
+        invalidated.countDown();
+
+        assertThat(stale.get()).isEqualTo("old");
+        assertThat(CacheLoads.get(cache, "a", key -> "new")).isEqualTo("new");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
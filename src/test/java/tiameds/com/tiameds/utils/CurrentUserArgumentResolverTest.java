@@ -0,0 +1,45 @@
+package tiameds.com.tiameds.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import tiameds.com.tiameds.entity.User;
+import tiameds.com.tiameds.exception.GlobalExceptionHandler;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CurrentUserArgumentResolverTest {
+
+    private final UserAuthService userAuthService = mock(UserAuthService.class);
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new MeController())
+            .setCustomArgumentResolvers(new CurrentUserArgumentResolver(userAuthService))
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+    @Test
+    void missingUserGetsUnauthorized() throws Exception {
+        // e.g. a claims token of a user deleted since it was issued
+        when(userAuthService.getCurrentUser()).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/me"))
+                .andExpect(status().isUnauthorized())
+                .andExpect(jsonPath("$.message").value("User not found"));
+    }
+
+    @RestController
+    static class MeController {
+
+        @GetMapping("/me")
+        String me(@CurrentUser User user) {
+            return user.getUsername();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package tiameds.com.tiameds.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LabStatusChannelTest {
+
+    private final LabStatusChannel channel = new LabStatusChannel(null, null, true, 250);
+
+    @Test
+    void failingSubscriberDoesNotStopDelivery() {
+        RecordingSubscriber failing = new RecordingSubscriber(true);
+        RecordingSubscriber healthy = new RecordingSubscriber(false);
+        channel.subscribe(failing);
+        channel.subscribe(healthy);
+
+        channel.deliver("lab_status", "1:inactive");
+        channel.deliver("lab_catalog", "1:tests");
+        channel.deliver("lab_status", "2:deleted");
+
+        assertThat(failing.events).containsExactly("status 1 false", "catalog 1 tests", "status 2 null");
+        assertThat(healthy.events).containsExactly("status 1 false", "catalog 1 tests", "status 2 null");
+    }
+
+    @Test
+    void malformedPayloadIsSkipped() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        channel.subscribe(subscriber);
+
+        channel.deliver("lab_status", "not-a-lab");
+        channel.deliver("lab_status", "x:active");
+        channel.deliver("lab_catalog", null);
+        channel.deliver("lab_status", "3:active");
+
+        assertThat(subscriber.events).containsExactly("status 3 true");
+    }
+
+    @Test
+    void userChangesReachSubscribers() {
+        RecordingSubscriber subscriber = new RecordingSubscriber(false);
+        channel.subscribe(subscriber);
+
+        channel.deliver("user_tokens", "9:4");
+        channel.deliver("user_tokens", "10");
+        channel.deliver("user_tokens", "x:4");
+        channel.deliver("user_tokens", "all");
+
+        assertThat(subscriber.events).containsExactly("user 9 4", "user 10 null", "all users");
+    }
+
+    private static class RecordingSubscriber implements LabStatusChannel.Subscriber {
+
+        private final boolean failing;
+        private final List<String> events = new ArrayList<>();
+
+        RecordingSubscriber(boolean failing) {
+            this.failing = failing;
+        }
+
+        @Override
+        public void onLabStatus(long labId, Boolean active) {
+            record("status " + labId + " " + active);
+        }
+
+        @Override
+        public void onCatalogChanged(long labId, String catalog) {
+            record("catalog " + labId + " " + catalog);
+        }
+
+        @Override
+        public void onUserChanged(long userId, Long version) {
+            record("user " + userId + " " + version);
+        }
+
+        @Override
+        public void onAllUsersChanged() {
+            record("all users");
+        }
+
+        @Override
+        public void onResync() {
+            record("resync");
+        }
+
+        private void record(String event) {
+            events.add(event);
+            if (failing) {
+                throw new IllegalStateException("subscriber failed on " + event);
+            }
+        }
+    }
+}